@@ -0,0 +1,36 @@
+package com.myplanner.app;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.event.ActionEvent;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * recomputing of grid of days when month shown by calendar changes (MyCalendar.updateCalendar)
+ * runs headless - components are created but never shown
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CalendarBenchmark {
+    private MyCalendar calendar;
+    private ActionEvent refresh;
+
+    @Setup
+    public void setUp() {
+        calendar = new MyCalendar(null); // window is needed only when day is clicked
+        refresh = new ActionEvent(this, ActionEvent.ACTION_PERFORMED, "refresh");
+    }
+
+    /**
+     * event from other source than previous/next buttons only recomputes grid of current month
+     */
+    @Benchmark
+    public MyCalendar updateCalendar() {
+        calendar.actionPerformed(refresh);
+        return calendar;
+    }
+}
@@ -0,0 +1,212 @@
+package com.myplanner.app;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+/**
+ * compare two JMH results - score and allocated bytes per operation of every benchmark
+ * results are saved by "-rf json" or summarized from it (baselines keep only summary - raw samples are large)
+ * usage: CompareBaselines baseline.json current.json [threshold in percent, default 10]
+ * score is worse when confidence intervals (score ± error) of both results don't overlap,
+ * threshold is used only for results without error (allocated bytes, single iteration)
+ * exits with 1 when any benchmark got worse
+ * usage: CompareBaselines --summarize result.json summary.json
+ */
+public final class CompareBaselines {
+    private static final String ALLOCATION = "gc.alloc.rate.norm"; // bytes allocated per operation
+
+    private CompareBaselines() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("--summarize")) {
+            summarize(args[1], args[2]);
+            return;
+        }
+        if (args.length < 2) {
+            System.err.println("usage: CompareBaselines baseline.json current.json [threshold%]");
+            System.err.println("       CompareBaselines --summarize result.json summary.json");
+            System.exit(2);
+        }
+        Map<String, Result> baseline = load(args[0]);
+        Map<String, Result> current = load(args[1]);
+        double threshold = (args.length > 2 ? Double.parseDouble(args[2]) : 10) / 100;
+
+        int regressions = 0;
+        System.out.printf("%-80s %14s %14s %9s%n", "benchmark", "baseline", "current", "change");
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result before = baseline.get(entry.getKey());
+            Result after = entry.getValue();
+            if (before == null) {
+                System.out.printf("%-80s %14s %14.3f%n", entry.getKey(), "-", after.score);
+                continue;
+            }
+            boolean higherIsBetter = after.mode.equals("thrpt");
+            regressions += report(entry.getKey(), before.score, before.error, after.score, after.error, after.unit,
+                    higherIsBetter, threshold);
+            if (before.allocated != null && after.allocated != null) {
+                regressions += report("  " + ALLOCATION, before.allocated, Double.NaN, after.allocated, Double.NaN,
+                        "B/op", false, threshold);
+            }
+        }
+        System.out.println(regressions == 0 ? "no regressions" : regressions + " regression(s)");
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    /**
+     * result of one benchmark - the part of JMH result which is compared
+     */
+    private static final class Result {
+        final String benchmark; // without package
+        final String mode;
+        final Map<String, Object> params; // sorted by name
+        final double score;
+        final double error; // NaN when JMH couldn't compute it
+        final String unit;
+        final Double allocated; // bytes per operation, null when measured without "-prof gc"
+
+        Result(String benchmark, String mode, Map<String, Object> params, double score, double error, String unit,
+               Double allocated) {
+            this.benchmark = benchmark;
+            this.mode = mode;
+            this.params = params;
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+            this.allocated = allocated;
+        }
+
+        /**
+         * @param result result of benchmark saved by JMH
+         */
+        static Result ofJmh(JSONObject result) {
+            JSONObject primary = result.getJSONObject("primaryMetric");
+            return new Result(result.getString("benchmark").replace("com.myplanner.app.", ""),
+                    result.getString("mode"), params(result), primary.getDouble("score"),
+                    primary.optDouble("scoreError"), primary.getString("scoreUnit"), allocated(result));
+        }
+
+        /**
+         * @param result result of benchmark written by {@link #toJson()}
+         */
+        static Result ofSummary(JSONObject result) {
+            return new Result(result.getString("benchmark"), result.getString("mode"), params(result),
+                    result.getDouble("score"), result.optDouble("error"), result.getString("unit"),
+                    result.has(ALLOCATION) ? result.getDouble(ALLOCATION) : null);
+        }
+
+        private static Map<String, Object> params(JSONObject result) {
+            JSONObject params = result.optJSONObject("params");
+            return (params == null ? new TreeMap<>() : new TreeMap<>(params.toMap()));
+        }
+
+        /**
+         * @return allocated bytes per operation, null when result doesn't have it
+         */
+        private static Double allocated(JSONObject result) {
+            JSONObject secondary = result.optJSONObject("secondaryMetrics");
+            if (secondary == null) {
+                return null;
+            }
+            for (String key : secondary.keySet()) {
+                // older versions of JMH prefix names of profiler metrics by "·"
+                if (key.replace("·", "").equals(ALLOCATION)) {
+                    return secondary.getJSONObject(key).getDouble("score");
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return benchmark, mode and parameters
+         */
+        String key() {
+            StringBuilder key = new StringBuilder(benchmark).append(" [").append(mode).append(']');
+            for (Map.Entry<String, Object> param : params.entrySet()) {
+                key.append(' ').append(param.getKey()).append('=').append(param.getValue());
+            }
+            return key.toString();
+        }
+
+        /**
+         * @return one line of json, keys are always in the same order (diffs of baselines stay readable)
+         */
+        String toJson() {
+            StringJoiner json = new StringJoiner(", ", "{", "}");
+            json.add("\"benchmark\": " + JSONObject.quote(benchmark));
+            json.add("\"mode\": " + JSONObject.quote(mode));
+            if (!params.isEmpty()) {
+                StringJoiner values = new StringJoiner(", ", "{", "}");
+                params.forEach((name, value) -> values.add(JSONObject.quote(name) + ": " + JSONObject.quote(value.toString())));
+                json.add("\"params\": " + values);
+            }
+            json.add("\"score\": " + JSONObject.numberToString(score));
+            if (!Double.isNaN(error)) {
+                json.add("\"error\": " + JSONObject.numberToString(error));
+            }
+            json.add("\"unit\": " + JSONObject.quote(unit));
+            if (allocated != null) {
+                json.add("\"" + ALLOCATION + "\": " + JSONObject.numberToString(allocated));
+            }
+            return json.toString();
+        }
+    }
+
+    /**
+     * @param beforeError error of score before (half of confidence interval), NaN when it isn't known
+     * @param afterError  error of score after, NaN when it isn't known
+     * @return 1 when score got worse by more than errors of both scores together,
+     * or by more than threshold when neither score has error
+     */
+    private static int report(String name, double before, double beforeError, double after, double afterError,
+                              String unit, boolean higherIsBetter, double threshold) {
+        double change = (before == 0 ? 0 : (after - before) / before);
+        double worse = (higherIsBetter ? before - after : after - before);
+        boolean regression;
+        if (Double.isNaN(beforeError) && Double.isNaN(afterError)) {
+            regression = (higherIsBetter ? -change : change) > threshold;
+        } else {
+            // intervals score ± error don't overlap
+            regression = worse > (Double.isNaN(beforeError) ? 0 : beforeError) + (Double.isNaN(afterError) ? 0 : afterError);
+        }
+        System.out.printf("%-80s %14.3f %14.3f %+8.1f%% %s%s%n", name, before, after, change * 100, unit,
+                regression ? "  <-- worse" : "");
+        return regression ? 1 : 0;
+    }
+
+    /**
+     * write summary of JMH result (or of other summary) - one benchmark per line
+     */
+    private static void summarize(String from, String to) throws IOException {
+        StringJoiner summary = new StringJoiner("," + System.lineSeparator() + "  ",
+                "[" + System.lineSeparator() + "  ", System.lineSeparator() + "]" + System.lineSeparator());
+        for (Result result : load(from).values()) {
+            summary.add(result.toJson());
+        }
+        Files.write(Paths.get(to), summary.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param path result saved by JMH or its summary
+     * @return results by benchmark, mode and parameters
+     */
+    private static Map<String, Result> load(String path) throws IOException {
+        JSONArray results = new JSONArray(new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8));
+        Map<String, Result> byKey = new LinkedHashMap<>();
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject json = results.getJSONObject(i);
+            Result result = (json.has("primaryMetric") ? Result.ofJmh(json) : Result.ofSummary(json));
+            byKey.put(result.key(), result);
+        }
+        return byKey;
+    }
+}
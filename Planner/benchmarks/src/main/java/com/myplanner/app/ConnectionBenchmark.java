@@ -0,0 +1,123 @@
+package com.myplanner.app;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * both implementations of Connection against local stand-ins:
+ * ConnectionViaPHP against {@link PhpStandIn}, ConnectionToLocalDatabase against in-memory H2 database in MySQL mode
+ * latency is sampled, so percentiles are reported next to throughput
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// without TCP_NODELAY small responses of stand-in wait for delayed ACK (~40 ms), php server doesn't do that
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class ConnectionBenchmark {
+    private static final String DB_URL = "jdbc:h2:mem:planner;MODE=MySQL;DB_CLOSE_DELAY=-1;NON_KEYWORDS=YEAR,MONTH,DAY";
+
+    @Param({"SERVER", "LOCAL_DATABASE"})
+    String backend; // name of Backend (enum isn't visible to generated code)
+
+    @Param({"10", "1000"})
+    int plans;
+
+    private PhpStandIn server;
+    private Connection connection;
+    private Plan sample; // plan whose day and month are requested
+
+    @Setup
+    public void setUp() throws Exception {
+        List<Plan> data = new ArrayList<>();
+        PlanDecoder.decodePlans(new ByteArrayInputStream(Payloads.plans(plans)), data::add);
+        sample = data.get(0);
+
+        Backend selected = Backend.valueOf(backend);
+        Properties config = new Properties();
+        if (selected == Backend.SERVER) {
+            server = new PhpStandIn(plans);
+            config.setProperty("SERVER_ADDRESS", server.address());
+        } else {
+            fillDatabase(DB_URL, data);
+            config.setProperty("DB_DRIVER", "org.h2.Driver");
+            config.setProperty("DB_URL", DB_URL);
+            config.setProperty("DB_USER", "sa");
+            config.setProperty("DB_PASSWORD", "");
+        }
+        Path file = Files.createTempFile("planner-benchmark", ".properties");
+        file.toFile().deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file.toFile())) {
+            config.store(out, "stand-in for " + backend);
+        }
+        System.setProperty("planner.config", file.toString());
+        connection = selected.connect();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * create table of plans in H2 database (as it was before migrations) and insert given plans
+     */
+    static void fillDatabase(String url, List<Plan> data) throws SQLException {
+        try (java.sql.Connection con = DriverManager.getConnection(url, "sa", "")) {
+            try (Statement st = con.createStatement()) {
+                st.executeUpdate("CREATE TABLE calendar (id INT PRIMARY KEY, name VARCHAR(255) NOT NULL,"
+                        + " year INT NOT NULL, month INT NOT NULL, day INT NOT NULL, time TIME)");
+            }
+            try (PreparedStatement insert = con.prepareStatement(
+                    "INSERT INTO calendar (id, name, year, month, day, time) VALUES (?, ?, ?, ?, ?, ?)")) {
+                for (Plan plan : data) {
+                    insert.setInt(1, plan.getId());
+                    insert.setString(2, plan.getName());
+                    insert.setInt(3, plan.getYear());
+                    insert.setInt(4, plan.getMonth());
+                    insert.setInt(5, plan.getDay());
+                    if (plan.getTime().equals("")) insert.setNull(6, Types.TIME);
+                    else insert.setTime(6, Time.valueOf(plan.getTime() + ":00"));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+    }
+
+    @Benchmark
+    public Plan[] getPlansOnDay() throws ConnectionException {
+        return connection.getPlansOnDay(sample.getYear(), sample.getMonth(), sample.getDay());
+    }
+
+    @Benchmark
+    public Plan[] getPlansInRange() throws ConnectionException {
+        LocalDate first = LocalDate.of(sample.getYear(), sample.getMonth(), 1);
+        return connection.getPlansInRange(first, first.plusMonths(1).minusDays(1));
+    }
+
+    @Benchmark
+    public PlanSummary getSummary() throws ConnectionException {
+        return connection.getSummary();
+    }
+}
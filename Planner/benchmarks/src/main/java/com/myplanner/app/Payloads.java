@@ -0,0 +1,72 @@
+package com.myplanner.app;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * recorded-like responses of php scripts used by benchmarks
+ */
+final class Payloads {
+    private static final String[] WORDS = {"meeting", "lunch", "dentist", "gym", "call", "exam", "trip", "birthday"};
+
+    private Payloads() {
+    }
+
+    /**
+     * @param count number of plans
+     * @return response of getData.php (json_encode of rows of calendar table) with given number of plans
+     */
+    static byte[] plans(int count) {
+        Random random = new Random(count);
+        StringBuilder json = new StringBuilder(count * 90);
+        json.append('[');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i + 1)
+                    .append(",\"name\":\"").append(WORDS[random.nextInt(WORDS.length)]).append(' ').append(i).append('"')
+                    .append(",\"year\":").append(2020 + random.nextInt(5))
+                    .append(",\"month\":").append(1 + random.nextInt(12))
+                    .append(",\"day\":").append(1 + random.nextInt(28))
+                    .append(",\"time\":");
+            if (random.nextInt(4) == 0) {
+                json.append("null");
+            } else {
+                json.append('"').append(String.format("%02d:%02d:00", random.nextInt(24), random.nextInt(60))).append('"');
+            }
+            json.append('}');
+        }
+        json.append(']');
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param count number of plans
+     * @return response of getYears.php for plans returned by {@link #plans(int)}
+     */
+    static byte[] years(int count) {
+        StringBuilder json = new StringBuilder("[");
+        int years = Math.min(count, 5);
+        for (int i = 0; i < years; i++) {
+            json.append(i > 0 ? "," : "").append("{\"year\":").append(2020 + i).append('}');
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param count number of plans
+     * @return response of getSummary.php (plans spread evenly over months of years returned by {@link #years(int)})
+     */
+    static byte[] summary(int count) {
+        StringBuilder json = new StringBuilder("[");
+        int months = Math.min(count, 5 * 12);
+        for (int i = 0; i < months; i++) {
+            json.append(i > 0 ? "," : "")
+                    .append("{\"year\":").append(2020 + i / 12)
+                    .append(",\"month\":").append(i % 12 + 1)
+                    .append(",\"count\":").append(count / months + (i < count % months ? 1 : 0)).append('}');
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
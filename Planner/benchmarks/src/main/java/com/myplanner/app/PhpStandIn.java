@@ -0,0 +1,584 @@
+package com.myplanner.app;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * local http server answering requests of ConnectionViaPHP instead of php scripts
+ * scripts work with in-memory table of plans and answer in the same json shapes as php scripts
+ * (getData, getRange, getPage, getYears, getSummary, getDayCounts, getId, reserveIds, insert, update, deldata, batch),
+ * so client is measured on one machine without network and database
+ * every request can be delayed, failed or sent slowly (see {@link Faults})
+ */
+final class PhpStandIn implements AutoCloseable {
+    private static final Pattern NUMBER = Pattern.compile("^[0-9]+$");
+    private static final Pattern NAME = Pattern.compile("^[0-9A-Za-z ]+$");
+    private static final Pattern TIME = Pattern.compile("^[0-9]+:[0-9]+$");
+    private static final Pattern DATE = Pattern.compile("^[0-9]{4}-[0-9]{2}-[0-9]{2}$");
+    private static final Pattern LIMIT = Pattern.compile("^[0-9]{1,4}$");
+    private static final Pattern KEY = Pattern.compile("^-?[0-9]+(,-?[0-9]+){4}$");
+
+    // order of calendar rows in responses: year, month, day, time (all-day plans first), id
+    private static final Comparator<Row> ORDER = Comparator.<Row>comparingInt(r -> r.year)
+            .thenComparingInt(r -> r.month).thenComparingInt(r -> r.day)
+            .thenComparingInt(Row::minuteOfDay).thenComparingInt(r -> r.id);
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final Map<Integer, Row> table = new HashMap<>(); // id -> row of calendar table, guarded by this
+    private int nextId = 1; // counter of id_sequence, guarded by this
+    private int version; // the last version of change (counter of versions in id_sequence), guarded by this
+    private final Map<Integer, Integer> deleted = new HashMap<>(); // id -> version of deleting (calendar_deleted), guarded by this
+    private volatile Faults faults = new Faults();
+
+    /**
+     * injected misbehaviour of server, applied to every request independently
+     */
+    static final class Faults {
+        long latency;      // ms before response is started
+        long jitter;       // up to this many ms are randomly added to latency
+        double errorRate;  // probability (0 - 1) that request fails with status 500
+        int dripBytes;     // when > 0, body is sent in chunks of this size ...
+        long dripDelay;    // ... with this many ms between them
+
+        Faults latency(long millis, long jitter) {
+            this.latency = millis;
+            this.jitter = jitter;
+            return this;
+        }
+
+        Faults errorRate(double rate) {
+            this.errorRate = rate;
+            return this;
+        }
+
+        Faults drip(int bytes, long delay) {
+            this.dripBytes = bytes;
+            this.dripDelay = delay;
+            return this;
+        }
+    }
+
+    /**
+     * one row of calendar table
+     */
+    private static final class Row {
+        final int id;
+        final String name;
+        final int year;
+        final int month;
+        final int day;
+        final String time; // hh:mm:ss or null for all-day plan
+        final int version; // version of the last change of row
+
+        Row(int id, String name, int year, int month, int day, String time, int version) {
+            this.id = id;
+            this.name = name;
+            this.year = year;
+            this.month = month;
+            this.day = day;
+            this.time = time;
+            this.version = version;
+        }
+
+        int minuteOfDay() {
+            return time == null ? -1
+                    : Integer.parseInt(time.substring(0, 2)) * 60 + Integer.parseInt(time.substring(3, 5));
+        }
+
+        void appendTo(StringBuilder json) {
+            json.append("{\"id\":").append(id)
+                    .append(",\"name\":").append(JSONObject.quote(name))
+                    .append(",\"year\":").append(year)
+                    .append(",\"month\":").append(month)
+                    .append(",\"day\":").append(day)
+                    .append(",\"time\":").append(time == null ? "null" : JSONObject.quote(time)).append('}');
+        }
+    }
+
+    /**
+     * response of one script
+     */
+    private static final class Response {
+        final int status;
+        final String contentType;
+        final byte[] body;
+
+        Response(int status, String contentType, String body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body.getBytes(StandardCharsets.UTF_8);
+        }
+
+        static Response json(String body) {
+            return new Response(200, "application/json", body);
+        }
+
+        static Response text(String body) {
+            return new Response(200, "text/html", body);
+        }
+
+        /**
+         * @return answer of json_response() of php scripts
+         */
+        static Response status(String error) {
+            return json(error == null ? "{\"ok\":true}" : "{\"ok\":false,\"error\":" + JSONObject.quote(error) + "}");
+        }
+    }
+
+    private interface Script {
+        Response run(Map<String, String> query, byte[] body);
+    }
+
+    /**
+     * start server on free port of loopback with given number of plans in table
+     * @param plans number of plans (same plans as {@link Payloads#plans(int)})
+     */
+    PhpStandIn(int plans) throws IOException {
+        load(Payloads.plans(plans));
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        script("getData.php", (query, body) -> getData(query));
+        script("getRange.php", (query, body) -> getRange(query));
+        script("getPage.php", (query, body) -> getPage(query));
+        script("getYears.php", (query, body) -> getYears());
+        script("getSummary.php", (query, body) -> getSummary());
+        script("getDayCounts.php", (query, body) -> getDayCounts(query));
+        script("getChanges.php", (query, body) -> getChanges(query));
+        script("getId.php", (query, body) -> getId());
+        script("reserveIds.php", (query, body) -> reserveIds(query));
+        script("insert.php", (query, body) -> insert(query));
+        script("update.php", (query, body) -> update(query));
+        script("deldata.php", (query, body) -> delete(query));
+        script("batch.php", (query, body) -> batch(body));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return address of server in form used by SERVER_ADDRESS in configuration
+     */
+    String address() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * @param faults misbehaviour of following requests (requests which are running aren't affected)
+     */
+    void setFaults(Faults faults) {
+        this.faults = faults;
+    }
+
+    /**
+     * @return number of plans in table
+     */
+    synchronized int size() {
+        return table.size();
+    }
+
+    private synchronized void load(byte[] json) throws IOException {
+        try {
+            PlanDecoder.decodePlans(new ByteArrayInputStream(json), plan -> put(plan.getId(), plan.getName(),
+                    plan.getYear(), plan.getMonth(), plan.getDay(), plan.getTime()));
+        } catch (ConnectionException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * @param time time in form hh:mm, empty for all-day plan
+     */
+    private synchronized void put(int id, String name, int year, int month, int day, String time) {
+        table.put(id, new Row(id, name, year, month, day, time.isEmpty() ? null : pad(time) + ":00", ++version));
+        nextId = Math.max(nextId, id + 1);
+    }
+
+    /**
+     * delete row and keep its tombstone
+     */
+    private synchronized void remove(int id) {
+        table.remove(id);
+        deleted.put(id, ++version);
+    }
+
+    private static String pad(String time) {
+        String[] parts = time.split(":");
+        return String.format("%02d:%02d", Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    private void script(String name, Script script) {
+        server.createContext("/" + name, exchange -> {
+            try {
+                Map<String, String> query = parse(exchange.getRequestURI().getRawQuery());
+                byte[] body = exchange.getRequestBody().readAllBytes();
+                Faults current = faults;
+                pause(current.latency + (current.jitter > 0 ? ThreadLocalRandom.current().nextLong(current.jitter + 1) : 0));
+                Response response = (ThreadLocalRandom.current().nextDouble() < current.errorRate)
+                        ? new Response(500, "text/plain", "Injected failure of " + name)
+                        : script.run(query, body);
+                respond(exchange, response, current);
+            } catch (RuntimeException e) {
+                // the same as catch block of php scripts
+                respond(exchange, new Response(500, "text/plain", String.valueOf(e.getMessage())), faults);
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    private static Map<String, String> parse(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            params.put(key, eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    /**
+     * @return value of parameter, default when it is missing or doesn't match pattern (like safe_get of php scripts)
+     */
+    private static String get(Map<String, String> query, String name, Pattern check) {
+        String value = query.get(name);
+        return (value == null || (check != null && !check.matcher(value).find())) ? "" : value;
+    }
+
+    private static void respond(HttpExchange exchange, Response response, Faults faults) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", response.contentType);
+        if (faults.dripBytes <= 0) {
+            exchange.sendResponseHeaders(response.status, response.body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response.body);
+            }
+            return;
+        }
+        exchange.sendResponseHeaders(response.status, 0); // chunked
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int start = 0; start < response.body.length; start += faults.dripBytes) {
+                if (start > 0) {
+                    pause(faults.dripDelay);
+                }
+                out.write(response.body, start, Math.min(faults.dripBytes, response.body.length - start));
+                out.flush();
+            }
+        }
+    }
+
+    private static void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return rows matching filter in order of php scripts, "null" when there is none (json_encode of empty result)
+     */
+    private synchronized Response select(Predicate<Row> filter, int limit) {
+        List<Row> rows = new ArrayList<>();
+        for (Row row : table.values()) {
+            if (filter.test(row)) {
+                rows.add(row);
+            }
+        }
+        if (rows.isEmpty() || limit == 0) {
+            return Response.json("null");
+        }
+        rows.sort(ORDER);
+        StringBuilder json = new StringBuilder(rows.size() * 90).append('[');
+        for (int i = 0; i < rows.size() && i < limit; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            rows.get(i).appendTo(json);
+        }
+        return Response.json(json.append(']').toString());
+    }
+
+    private static Predicate<Row> search(Map<String, String> query) {
+        String name = query.getOrDefault("name", "").toLowerCase(Locale.ROOT); // LOCATE ignores case (collation)
+        String year = get(query, "year", NUMBER);
+        String month = get(query, "month", NUMBER);
+        String day = get(query, "day", NUMBER);
+        return row -> row.name.toLowerCase(Locale.ROOT).contains(name)
+                && (year.isEmpty() || row.year == Integer.parseInt(year))
+                && (month.isEmpty() || row.month == Integer.parseInt(month))
+                && (day.isEmpty() || row.day == Integer.parseInt(day));
+    }
+
+    private Response getData(Map<String, String> query) {
+        return select(search(query), Integer.MAX_VALUE);
+    }
+
+    private Response getRange(Map<String, String> query) {
+        String from = get(query, "from", DATE);
+        String to = get(query, "to", DATE);
+        if (from.isEmpty() || to.isEmpty()) {
+            return Response.status("Range of dates was invalid.");
+        }
+        int first = Integer.parseInt(from.replace("-", ""));
+        int last = Integer.parseInt(to.replace("-", ""));
+        return select(row -> {
+            int date = row.year * 10000 + row.month * 100 + row.day;
+            return first <= date && date <= last;
+        }, Integer.MAX_VALUE);
+    }
+
+    private Response getPage(Map<String, String> query) {
+        String limit = get(query, "limit", LIMIT);
+        String after = get(query, "after", KEY);
+        if (limit.isEmpty()) {
+            return Response.status("Size of page was invalid.");
+        }
+        Predicate<Row> filter = search(query);
+        if (!after.isEmpty()) {
+            String[] parts = after.split(",");
+            Row key = new Row(Integer.parseInt(parts[4]), "", Integer.parseInt(parts[0]),
+                    Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), null, 0);
+            int minute = Integer.parseInt(parts[3]);
+            Comparator<Row> order = Comparator.<Row>comparingInt(r -> r.year).thenComparingInt(r -> r.month)
+                    .thenComparingInt(r -> r.day);
+            filter = filter.and(row -> {
+                int c = order.compare(row, key);
+                if (c == 0) {
+                    c = Integer.compare(row.minuteOfDay(), minute);
+                }
+                return c > 0 || (c == 0 && row.id > key.id);
+            });
+        }
+        return select(filter, Integer.parseInt(limit));
+    }
+
+    private synchronized Response getYears() {
+        TreeMap<Integer, Integer> years = new TreeMap<>();
+        table.values().forEach(row -> years.merge(row.year, 1, Integer::sum));
+        if (years.isEmpty()) {
+            return Response.json("null");
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (int year : years.keySet()) {
+            json.append(json.length() > 1 ? "," : "").append("{\"year\":").append(year).append('}');
+        }
+        return Response.json(json.append(']').toString());
+    }
+
+    private synchronized Response getSummary() {
+        TreeMap<Integer, Integer> months = new TreeMap<>(); // year * 12 + month - 1 -> count
+        table.values().forEach(row -> months.merge(row.year * 12 + row.month - 1, 1, Integer::sum));
+        if (months.isEmpty()) {
+            return Response.json("null");
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (Map.Entry<Integer, Integer> entry : months.entrySet()) {
+            json.append(json.length() > 1 ? "," : "")
+                    .append("{\"year\":").append(entry.getKey() / 12)
+                    .append(",\"month\":").append(entry.getKey() % 12 + 1)
+                    .append(",\"count\":").append(entry.getValue()).append('}');
+        }
+        return Response.json(json.append(']').toString());
+    }
+
+    private synchronized Response getDayCounts(Map<String, String> query) {
+        String year = get(query, "year", NUMBER);
+        String month = get(query, "month", NUMBER);
+        if (year.isEmpty() || month.isEmpty()) {
+            return Response.status("Year and month are required.");
+        }
+        TreeMap<Integer, Integer> days = new TreeMap<>();
+        table.values().stream()
+                .filter(row -> row.year == Integer.parseInt(year) && row.month == Integer.parseInt(month))
+                .forEach(row -> days.merge(row.day, 1, Integer::sum));
+        if (days.isEmpty()) {
+            return Response.json("null");
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (Map.Entry<Integer, Integer> entry : days.entrySet()) {
+            json.append(json.length() > 1 ? "," : "")
+                    .append("{\"day\":").append(entry.getKey())
+                    .append(",\"count\":").append(entry.getValue()).append('}');
+        }
+        return Response.json(json.append(']').toString());
+    }
+
+    /**
+     * current version with rows changed after given version and tombstones (each up to limit, not merged)
+     */
+    private synchronized Response getChanges(Map<String, String> query) {
+        String since = get(query, "since", NUMBER);
+        String limit = get(query, "limit", LIMIT);
+        int max = (limit.isEmpty() ? 1001 : Integer.parseInt(limit));
+        if (max < 1) {
+            return Response.status("Limit of changes was invalid.");
+        }
+        StringBuilder json = new StringBuilder("{\"version\":").append(version).append(",\"changes\":[");
+        if (!since.isEmpty()) {
+            int after = Integer.parseInt(since);
+            StringBuilder changes = new StringBuilder();
+            table.values().stream()
+                    .filter(row -> row.version > after)
+                    .sorted(Comparator.comparingInt(row -> row.version))
+                    .limit(max)
+                    .forEach(row -> {
+                        changes.append(changes.length() > 0 ? "," : "")
+                                .append("{\"id\":").append(row.id)
+                                .append(",\"version\":").append(row.version)
+                                .append(",\"deleted\":0,\"name\":").append(JSONObject.quote(row.name))
+                                .append(",\"year\":").append(row.year)
+                                .append(",\"month\":").append(row.month)
+                                .append(",\"day\":").append(row.day)
+                                .append(",\"time\":").append(row.time == null ? "null" : JSONObject.quote(row.time))
+                                .append('}');
+                    });
+            deleted.entrySet().stream()
+                    .filter(entry -> entry.getValue() > after)
+                    .sorted(Map.Entry.comparingByValue())
+                    .limit(max)
+                    .forEach(entry -> changes.append(changes.length() > 0 ? "," : "")
+                            .append("{\"id\":").append(entry.getKey())
+                            .append(",\"version\":").append(entry.getValue())
+                            .append(",\"deleted\":1}"));
+            json.append(changes);
+        }
+        return Response.json(json.append("]}").toString());
+    }
+
+    private synchronized Response getId() {
+        int max = table.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1);
+        return Response.json("{\"MAX(id)\":" + (max < 0 ? "null" : String.valueOf(max)) + "}");
+    }
+
+    private synchronized Response reserveIds(Map<String, String> query) {
+        String count = get(query, "count", NUMBER);
+        if (count.isEmpty() || Integer.parseInt(count) == 0) {
+            return Response.status("Count of ids was invalid.");
+        }
+        int first = nextId;
+        nextId += Integer.parseInt(count);
+        return Response.json("{\"first\":" + first + "}");
+    }
+
+    private synchronized Response insert(Map<String, String> query) {
+        String name = get(query, "name", NAME);
+        String id = get(query, "id", NUMBER);
+        String year = get(query, "year", NUMBER);
+        String time = get(query, "time", TIME);
+        if (name.isEmpty() || id.isEmpty() || year.isEmpty()) {
+            return Response.status("Id, name or time was invalid.");
+        }
+        if (table.containsKey(Integer.parseInt(id))) {
+            return Response.status("Query error: Duplicate entry '" + id + "' for key 'PRIMARY'");
+        }
+        put(Integer.parseInt(id), name, Integer.parseInt(year), number(get(query, "month", NUMBER)),
+                number(get(query, "day", NUMBER)), time);
+        return Response.status(null);
+    }
+
+    private synchronized Response update(Map<String, String> query) {
+        String id = get(query, "id", NUMBER);
+        if (id.isEmpty() || !table.containsKey(Integer.parseInt(id))) {
+            return Response.text("Done"); // UPDATE of missing row changes nothing
+        }
+        try {
+            String time = query.getOrDefault("time", "");
+            if (!time.isEmpty() && !TIME.matcher(time).find()) {
+                return Response.text("Error updating record: Incorrect time value: '" + time + "'");
+            }
+            put(Integer.parseInt(id), query.getOrDefault("name", ""), Integer.parseInt(query.get("year")),
+                    Integer.parseInt(query.get("month")), Integer.parseInt(query.get("day")), time);
+        } catch (NumberFormatException | NullPointerException e) {
+            return Response.text("Error updating record: Incorrect integer value");
+        }
+        return Response.text("Done");
+    }
+
+    private synchronized Response delete(Map<String, String> query) {
+        String id = get(query, "id", NUMBER);
+        if (id.isEmpty()) {
+            return new Response(500, "text/html", "");
+        }
+        remove(Integer.parseInt(id));
+        return Response.text("Record deleted successfully");
+    }
+
+    private synchronized Response batch(byte[] body) {
+        JSONArray changes;
+        try {
+            changes = new JSONArray(new String(body, StandardCharsets.UTF_8));
+        } catch (JSONException e) {
+            return Response.status("Changes were invalid.");
+        }
+        // whole batch is checked first, so it is applied completely or not at all (like transaction of script)
+        for (int i = 0; i < changes.length(); i++) {
+            JSONObject change = changes.optJSONObject(i);
+            if (change == null || !(change.opt("id") instanceof Integer)) {
+                return Response.status("Changes were invalid.");
+            }
+            String type = change.optString("type");
+            if (!type.equals("add") && !type.equals("update") && !type.equals("delete")
+                    || (!type.equals("delete") && !validPlan(change))) {
+                return Response.status("Changes were invalid.");
+            }
+            if (type.equals("add") && table.containsKey(change.getInt("id"))) {
+                return Response.status("Query error: Duplicate entry '" + change.getInt("id") + "' for key 'PRIMARY'");
+            }
+        }
+        for (int i = 0; i < changes.length(); i++) {
+            JSONObject change = changes.getJSONObject(i);
+            int id = change.getInt("id");
+            if (change.getString("type").equals("delete")) {
+                remove(id);
+            } else if (change.getString("type").equals("add") || table.containsKey(id)) {
+                put(id, change.getString("name"), change.getInt("year"), change.getInt("month"),
+                        change.getInt("day"), change.getString("time"));
+            }
+        }
+        return Response.status(null);
+    }
+
+    private static boolean validPlan(JSONObject change) {
+        return change.opt("name") instanceof String && !change.getString("name").isEmpty()
+                && change.opt("year") instanceof Integer && change.opt("month") instanceof Integer
+                && change.opt("day") instanceof Integer && change.opt("time") instanceof String
+                && (change.getString("time").isEmpty() || TIME.matcher(change.getString("time")).find());
+    }
+
+    private static int number(String value) {
+        return value.isEmpty() ? 0 : Integer.parseInt(value);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,80 @@
+package com.myplanner.app;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Time;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * creating of plans and validation of values entered by user (setValuesIfValid, AddingNew.getDate)
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlanBenchmark {
+    private final Time time = Time.valueOf("10:30:00");
+    private final Plan plan = new Plan();
+
+    // values are read from fields, so they aren't folded into constants
+    private String name = "meeting", text = "10:30:00", shortTime = "10:30", wrongTime = "25:61";
+    private int year = 2024, month = 2, day = 29, wrongDay = 30;
+    private String dotted = "29.2.2024", slashed = "29/2/2024", wrongDate = "2024-02-29";
+
+    @Benchmark
+    public Plan constructFromText() {
+        return new Plan(1, name, text, year, month, day);
+    }
+
+    @Benchmark
+    public Plan constructFromTime() {
+        return new Plan(1, name, time, year, month, day);
+    }
+
+    @Benchmark
+    public boolean setValuesValid() {
+        return plan.setValuesIfValid(name, shortTime, year, month, day);
+    }
+
+    @Benchmark
+    public boolean setValuesInvalidDate() {
+        return plan.setValuesIfValid(name, shortTime, year, month, wrongDay);
+    }
+
+    @Benchmark
+    public boolean setValuesInvalidTime() {
+        return plan.setValuesIfValid(name, wrongTime, year, month, day);
+    }
+
+    /**
+     * date in first accepted format
+     */
+    @Benchmark
+    public LocalDate getDateDotted() {
+        return AddingNew.getDate(dotted);
+    }
+
+    /**
+     * date in second accepted format - first format fails before
+     */
+    @Benchmark
+    public LocalDate getDateSlashed() {
+        return AddingNew.getDate(slashed);
+    }
+
+    /**
+     * date in no accepted format - both formats fail
+     */
+    @Benchmark
+    public Object getDateInvalid() {
+        try {
+            return AddingNew.getDate(wrongDate);
+        } catch (DateTimeException e) {
+            return e;
+        }
+    }
+}
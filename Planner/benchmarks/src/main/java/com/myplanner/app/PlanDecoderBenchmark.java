@@ -0,0 +1,77 @@
+package com.myplanner.app;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * decoding of getData.php responses - streaming PlanDecoder (to plans and to batch) against the former split-by-"{" parsing
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlanDecoderBenchmark {
+    @Param({"10", "1000", "100000"})
+    int plans;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = Payloads.plans(plans);
+    }
+
+    @Benchmark
+    public int streaming(Blackhole blackhole) throws IOException, ConnectionException {
+        return PlanDecoder.decodePlans(new ByteArrayInputStream(payload), blackhole::consume);
+    }
+
+    /**
+     * decoding to columnar batch - no plan object per row
+     */
+    @Benchmark
+    public PlanBatch batch() throws IOException, ConnectionException {
+        return PlanDecoder.decodeBatch(new ByteArrayInputStream(payload));
+    }
+
+    @Benchmark
+    public int legacy(Blackhole blackhole) throws IOException {
+        List<Plan> decoded = legacyDecode(new ByteArrayInputStream(payload));
+        decoded.forEach(blackhole::consume);
+        return decoded.size();
+    }
+
+    /**
+     * former ConnectionViaPHP.getData and getPlansList - whole body is read to string,
+     * split by "{" and every fragment is parsed by JSONObject
+     */
+    static List<Plan> legacyDecode(InputStream inputStream) throws IOException {
+        StringBuilder response = new StringBuilder();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(inputStream))) {
+            String currentLine;
+            while ((currentLine = in.readLine()) != null)
+                response.append(currentLine);
+        }
+
+        String[] res = response.toString().split("\\{");
+        res = Arrays.copyOfRange(res, 1, res.length);
+
+        List<Plan> plans = new ArrayList<>();
+        for (String line : res) {
+            final JSONObject obj = new JSONObject("{" + line.substring(0, line.length() - 1));
+            plans.add(new Plan(obj.getInt("id"), obj.getString("name"),
+                    (obj.isNull("time") ? "" : (String) obj.get("time")), obj.getInt("year"),
+                    obj.getInt("month"), obj.getInt("day")));
+        }
+        return plans;
+    }
+}
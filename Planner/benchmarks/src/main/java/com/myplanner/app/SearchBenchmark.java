@@ -0,0 +1,94 @@
+package com.myplanner.app;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getPlans (search by part of name and date) answered by database and by {@link IndexedConnection} over it
+ * database is in-memory H2 in MySQL mode, so difference is the query itself, not network
+ * every call searches other plan - H2 would give result of the same query again without running it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    @Param({"DATABASE", "INDEXED"})
+    String engine;
+
+    @Param({"1000", "100000"})
+    int plans;
+
+    private static final int SAMPLES = 64;
+
+    private Connection connection;
+    private final String[] names = new String[SAMPLES]; // parts of names of sampled plans
+    private final int[] years = new int[SAMPLES], months = new int[SAMPLES]; // dates of sampled plans
+    private int next; // sample searched by next call
+
+    @Setup
+    public void setUp() throws Exception {
+        List<Plan> data = new ArrayList<>();
+        PlanDecoder.decodePlans(new ByteArrayInputStream(Payloads.plans(plans)), data::add);
+        for (int i = 0; i < SAMPLES; i++) {
+            Plan sample = data.get((int) ((long) data.size() * i / SAMPLES));
+            names[i] = sample.getName().substring(1); // "unch 500" - not prefix of name
+            years[i] = sample.getYear();
+            months[i] = sample.getMonth();
+        }
+
+        String url = "jdbc:h2:mem:search" + plans + ";MODE=MySQL;DB_CLOSE_DELAY=-1;NON_KEYWORDS=YEAR,MONTH,DAY";
+        ConnectionBenchmark.fillDatabase(url, data);
+        Properties config = new Properties();
+        config.setProperty("DB_DRIVER", "org.h2.Driver");
+        config.setProperty("DB_URL", url);
+        config.setProperty("DB_USER", "sa");
+        config.setProperty("DB_PASSWORD", "");
+        Path file = Files.createTempFile("planner-benchmark", ".properties");
+        file.toFile().deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file.toFile())) {
+            config.store(out, "search in " + plans + " plans");
+        }
+        System.setProperty("planner.config", file.toString());
+
+        Connection database = new ConnectionToLocalDatabase();
+        connection = (engine.equals("INDEXED") ? new IndexedConnection(database) : database);
+        connection.getPlans("", -1, -1, -1); // indexes are loaded before measurement
+    }
+
+    /**
+     * part of name in all years (trigram index of names)
+     */
+    @Benchmark
+    public Plan[] byName() throws ConnectionException {
+        return connection.getPlans(names[next++ & (SAMPLES - 1)], -1, -1, -1);
+    }
+
+    /**
+     * all plans of one month (index of days)
+     */
+    @Benchmark
+    public Plan[] byMonth() throws ConnectionException {
+        int sample = next++ & (SAMPLES - 1);
+        return connection.getPlans("", years[sample], months[sample], -1);
+    }
+
+    /**
+     * short part of name in one year (too short for trigram, days of year are searched)
+     */
+    @Benchmark
+    public Plan[] byShortNameInYear() throws ConnectionException {
+        return connection.getPlans("gy", years[next++ & (SAMPLES - 1)], -1, -1);
+    }
+}
@@ -0,0 +1,118 @@
+package com.myplanner.app;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ConnectionViaPHP against {@link PhpStandIn} which misbehaves like slow or failing server
+ * - latency and jitter: how long requests wait and whether they keep inside timeout of client
+ * - error rate: how fast failed requests are reported
+ * - slow-drip: whether timeout covers also body which is received slowly
+ * outcomes of requests are counted (ok / failed / timedOut), so throughput isn't read without them
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class StandInBenchmark {
+    private static final int PLANS = 1000;
+
+    @Param({"0", "20"})
+    long latency; // ms, the same amount is used as jitter
+
+    @Param({"0", "0.1"})
+    double errorRate;
+
+    @Param({"0", "1024"})
+    int dripBytes; // chunks are sent 5 ms apart, 1000 plans (~80 kB) then take ~400 ms
+
+    @Param({"250"})
+    long timeout; // ms
+
+    private PhpStandIn server;
+    private ConnectionViaPHP connection;
+
+    /**
+     * outcomes of requests
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long ok;
+        public long failed;
+        public long timedOut;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            ok = 0;
+            failed = 0;
+            timedOut = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new PhpStandIn(PLANS);
+        server.setFaults(new PhpStandIn.Faults()
+                .latency(latency, latency)
+                .errorRate(errorRate)
+                .drip(dripBytes, 5));
+        Properties config = new Properties();
+        config.setProperty("SERVER_ADDRESS", server.address());
+        Path file = Files.createTempFile("planner-benchmark", ".properties");
+        file.toFile().deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file.toFile())) {
+            config.store(out, "faulty stand-in of php scripts");
+        }
+        System.setProperty("planner.config", file.toString());
+        connection = new ConnectionViaPHP().withTimeout(Duration.ofMillis(timeout));
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    /**
+     * search through all plans - the largest response
+     */
+    @Benchmark
+    public Object search(Outcomes outcomes) {
+        return count(outcomes, () -> connection.getPlanBatch("", -1, -1, -1));
+    }
+
+    /**
+     * one small request
+     */
+    @Benchmark
+    public Object summary(Outcomes outcomes) {
+        return count(outcomes, () -> connection.getSummary());
+    }
+
+    private interface Call {
+        Object run() throws ConnectionException;
+    }
+
+    private static Object count(Outcomes outcomes, Call call) {
+        try {
+            Object result = call.run();
+            outcomes.ok++;
+            return result;
+        } catch (ConnectionTimeoutException e) {
+            outcomes.timedOut++;
+            return e;
+        } catch (ConnectionException e) {
+            outcomes.failed++;
+            return e;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * runs requests to connection outside of event dispatch thread (window doesn't freeze while waiting for server)
+ * results and errors are given back to event dispatch thread
+ *
+ * instance is a sequence of tasks where only the latest one matters (for example plans shown in display)
+ * - starting new task cancels the previous one and result of cancelled task is never given back
+ *   (request registered by {@link #cancelWithTask(Future)} is cancelled too, other requests which are already sent
+ *   finish in background and their results are dropped)
+ * all methods have to be called from event dispatch thread
+ */
+class BackgroundTasks {
+    private static final ExecutorService EXECUTOR = createExecutor();
+    private static final ThreadLocal<Requests> REQUESTS = new ThreadLocal<>(); // of task running on thread
+
+    private Future<?> running; // latest task
+    private Requests requests; // requests which latest task waits for
+    private long generation;   // number of latest task, older tasks don't publish results
+
+    /**
+     * work done in background
+     */
+    interface Task<T> {
+        T run() throws ConnectionException;
+    }
+
+    /**
+     * requests which one task waits for, they are cancelled when task is cancelled
+     */
+    private static final class Requests {
+        private final List<Future<?>> waited = new ArrayList<>(); // guarded by this
+        private boolean cancelled; // guarded by this
+
+        synchronized void add(Future<?> request) {
+            if (cancelled) {
+                request.cancel(true);
+            } else {
+                waited.add(request);
+            }
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            for (Future<?> request : waited) {
+                request.cancel(true);
+            }
+            waited.clear();
+        }
+    }
+
+    /**
+     * @return executor with virtual threads (java 21 and newer), otherwise pool of daemon threads
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "connection-task");
+                t.setDaemon(true); // waiting request doesn't keep application alive
+                return t;
+            });
+        }
+    }
+
+    /**
+     * run task in background which can't be superseded (for example saving of plan)
+     *
+     * @param task      work done in background
+     * @param onSuccess receiver of result (called on event dispatch thread)
+     * @param onFailure receiver of error (called on event dispatch thread)
+     */
+    static <T> void execute(@NotNull Task<T> task, @NotNull Consumer<T> onSuccess, @NotNull Consumer<ConnectionException> onFailure) {
+        submit(task, onSuccess, onFailure, () -> true, null);
+    }
+
+    /**
+     * cancel previous task of this sequence and run given task in background
+     *
+     * @param task      work done in background
+     * @param onSuccess receiver of result (called on event dispatch thread, only if no newer task was started)
+     * @param onFailure receiver of error (called on event dispatch thread, only if no newer task was started)
+     */
+    <T> void replace(@NotNull Task<T> task, @NotNull Consumer<T> onSuccess, @NotNull Consumer<ConnectionException> onFailure) {
+        cancel();
+        long current = generation;
+        requests = new Requests();
+        running = submit(task, onSuccess, onFailure, () -> current == generation, requests);
+    }
+
+    /**
+     * cancel running task of this sequence, its result won't be given back
+     */
+    void cancel() {
+        generation++;
+        if (running != null) {
+            // not interrupted - interrupt would close file channels shared by all connections to local file
+            running.cancel(false);
+            running = null;
+        }
+        if (requests != null) {
+            requests.cancel();
+            requests = null;
+        }
+    }
+
+    /**
+     * cancel given request when task running on this thread is cancelled (called by connection waiting for request),
+     * nothing is done outside of tasks started by {@link #replace}
+     */
+    static void cancelWithTask(@NotNull Future<?> request) {
+        Requests requests = REQUESTS.get();
+        if (requests != null) {
+            requests.add(request);
+        }
+    }
+
+    /**
+     * @param isCurrent checked on event dispatch thread before result is given back
+     * @param requests  requests cancelled together with task, null when task can't be cancelled
+     */
+    private static <T> Future<?> submit(Task<T> task, Consumer<T> onSuccess, Consumer<ConnectionException> onFailure,
+                                        BooleanSupplier isCurrent, Requests requests) {
+        return EXECUTOR.submit(() -> {
+            REQUESTS.set(requests);
+            try {
+                T result = task.run();
+                SwingUtilities.invokeLater(() -> {
+                    if (isCurrent.getAsBoolean()) {
+                        onSuccess.accept(result);
+                    }
+                });
+            } catch (ConnectionException e) {
+                SwingUtilities.invokeLater(() -> {
+                    if (isCurrent.getAsBoolean()) {
+                        onFailure.accept(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                ConnectionException error = new ConnectionException(e.toString());
+                SwingUtilities.invokeLater(() -> {
+                    if (isCurrent.getAsBoolean()) {
+                        onFailure.accept(error);
+                    }
+                });
+            } finally {
+                REQUESTS.remove();
+            }
+        });
+    }
+}
@@ -0,0 +1,401 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * connection which remembers plans of recently shown days
+ * days are evicted when cache is full (least recently used first) or when they are older than given time to live
+ * adding, updating and deleting of plan invalidates only days which it changes
+ * days can be loaded ahead by one request for whole range (see {@link #prefetch(LocalDate, LocalDate)})
+ * when day expires, changes made since then (also by other clients) are read by one request of change feed
+ * (see {@link Connection#getChangesSince(String)}) - changed days are invalidated, all other days stay cached
+ * for next time to live
+ */
+class CachingConnection extends ForwardingConnection {
+    private final int maxDays;
+    private final long ttl; // nanoseconds
+
+    private final LinkedHashMap<Long, CachedDay> days; // epoch day -> plans, guarded by this
+    private final Map<Integer, Long> planDays = new HashMap<>(); // id of plan -> cached epoch day where it is, guarded by this
+    private long invalidations; // guarded by this, loads started before invalidation are not cached
+    private long validated; // guarded by this, System.nanoTime() when days loaded before were confirmed by change feed
+
+    private final Object feedLock = new Object(); // one request of change feed at a time
+    private String feed; // guarded by feedLock, token of change feed, null before first load
+    private boolean feedless; // guarded by feedLock, connection has no change feed - expired days are loaded again
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+
+    /**
+     * cached plans of one day - copies of plans, plans given to user can be changed by user
+     */
+    private static final class CachedDay {
+        final Plan[] plans;
+        final long loaded; // System.nanoTime() of loading
+
+        CachedDay(Plan[] plans, long loaded) {
+            this.plans = plans;
+            this.loaded = loaded;
+        }
+    }
+
+    /**
+     * @param delegate connection which loads days missing in cache
+     * @param maxDays  maximal number of cached days
+     * @param ttl      time after which cached day is loaded again
+     */
+    CachingConnection(@NotNull Connection delegate, int maxDays, @NotNull Duration ttl) {
+        super(delegate);
+        this.maxDays = maxDays;
+        this.ttl = ttl.toNanos();
+        days = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedDay> eldest) {
+                if (size() <= CachingConnection.this.maxDays) {
+                    return false;
+                }
+                forgetPlans(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+        validated = System.nanoTime();
+    }
+
+    /**
+     * return cached plans of day or load them when they are not cached
+     */
+    @Override
+    public Plan[] getPlansOnDay(int y, int m, int d) throws ConnectionException {
+        long day;
+        try {
+            day = LocalDate.of(y, m, d).toEpochDay();
+        } catch (DateTimeException e) {
+            // not one concrete day (for instance "ANY" month) - nothing to cache
+            return super.getPlansOnDay(y, m, d);
+        }
+
+        Plan[] cached = cached(day);
+        if (cached == null && isExpired(day) && revalidate()) {
+            cached = cached(day);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        startFeed();
+        long generation;
+        synchronized (this) {
+            generation = invalidations;
+        }
+        long loaded = System.nanoTime();
+        Plan[] plans = super.getPlansOnDay(y, m, d);
+        synchronized (this) {
+            if (generation == invalidations) {
+                cache(day, new CachedDay(copy(plans), loaded));
+            }
+        }
+        return plans;
+    }
+
+    /**
+     * load plans of days in range by one request and cache every day of it (also days without plans),
+     * days at start and end of range which are cached already aren't requested again
+     *
+     * @param from first day of range
+     * @param to   last day of range
+     * @return number of loaded days, 0 when nothing had to be requested
+     */
+    int prefetch(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        long first = from.toEpochDay(), last = to.toEpochDay();
+        boolean expired = false;
+        for (long day = first; day <= last && !expired; day++) {
+            expired = isExpired(day);
+        }
+        if (expired) {
+            revalidate();
+        }
+        startFeed();
+        long generation;
+        synchronized (this) {
+            while (first <= last && isFresh(first)) {
+                first++;
+            }
+            while (last > first && isFresh(last)) {
+                last--;
+            }
+            if (first > last) {
+                return 0;
+            }
+            generation = invalidations;
+        }
+
+        long loaded = System.nanoTime();
+        Plan[] plans = super.getPlansInRange(LocalDate.ofEpochDay(first), LocalDate.ofEpochDay(last));
+        Map<Long, List<Plan>> byDay = new HashMap<>();
+        for (Plan plan : plans) {
+            Long day = dayOf(plan);
+            if (day != null) {
+                byDay.computeIfAbsent(day, k -> new ArrayList<>()).add(plan);
+            }
+        }
+        synchronized (this) {
+            if (generation == invalidations) {
+                // loaded plans aren't given to anybody, so they are cached without copying
+                for (long day = first; day <= last; day++) {
+                    List<Plan> dayPlans = byDay.get(day);
+                    cache(day, new CachedDay(dayPlans == null ? new Plan[0] : dayPlans.toArray(new Plan[0]), loaded));
+                }
+            }
+        }
+        return (int) (last - first + 1);
+    }
+
+    private synchronized boolean isFresh(long day) {
+        CachedDay entry = days.get(day);
+        return entry != null && System.nanoTime() - Math.max(entry.loaded, validated) < ttl;
+    }
+
+    private synchronized boolean isExpired(long day) {
+        return days.containsKey(day) && !isFresh(day);
+    }
+
+    /**
+     * @return copy of plans of day when day is cached and fresh, null otherwise
+     */
+    private synchronized Plan[] cached(long day) {
+        return isFresh(day) ? copy(days.get(day).plans) : null;
+    }
+
+    private static Plan[] copy(Plan[] plans) {
+        Plan[] copies = new Plan[plans.length];
+        for (int i = 0; i < plans.length; i++) {
+            copies[i] = plans[i].copy();
+        }
+        return copies;
+    }
+
+    /**
+     * get token of change feed before the first day is loaded - changes made after loading are read by it
+     */
+    private void startFeed() {
+        synchronized (feedLock) {
+            if (feed != null || feedless) {
+                return;
+            }
+            try {
+                feed = super.getChangesSince(null).getToken();
+            } catch (ConnectionTimeoutException e) {
+                // tried again before next load
+            } catch (ConnectionException e) {
+                feedless = true; // server without change feed
+            }
+        }
+    }
+
+    /**
+     * read changes made since the last request of change feed, invalidate days which they change
+     * and confirm all other cached days
+     *
+     * @return false when change feed can't be used - expired days have to be loaded again
+     */
+    private boolean revalidate() {
+        synchronized (feedLock) {
+            long started = System.nanoTime();
+            synchronized (this) {
+                if (started - validated < ttl) {
+                    return true; // other thread did it while this one was waiting
+                }
+            }
+            if (feed == null) {
+                return false;
+            }
+            String token = feed;
+            try {
+                PlanChanges changes;
+                do {
+                    changes = super.getChangesSince(token);
+                    apply(changes);
+                    token = changes.getToken();
+                } while (changes.hasMore());
+            } catch (ConnectionException e) {
+                return false;
+            }
+            feed = token;
+            synchronized (this) {
+                validated = started;
+            }
+            revalidations.increment();
+            return true;
+        }
+    }
+
+    /**
+     * invalidate days changed by changes read from change feed
+     */
+    private synchronized void apply(PlanChanges changes) {
+        if (changes.isReset()) {
+            clear();
+            return;
+        }
+        for (Plan plan : changes.getChanged()) {
+            invalidateMoved(plan);
+        }
+        for (int id : changes.getDeleted()) {
+            invalidate(forget(id));
+        }
+    }
+
+    @Override
+    public void addNew(@NotNull Plan item) throws ConnectionException {
+        try {
+            super.addNew(item);
+        } finally {
+            invalidate(dayOf(item));
+        }
+    }
+
+    /**
+     * invalidate day where plan was and day where it is moved
+     */
+    @Override
+    public void updatePlan(@NotNull Plan item) throws ConnectionException {
+        try {
+            super.updatePlan(item);
+        } finally {
+            invalidateMoved(item);
+        }
+    }
+
+    @Override
+    public void deletePlan(int idPlan) throws ConnectionException {
+        try {
+            super.deletePlan(idPlan);
+        } finally {
+            invalidate(forget(idPlan));
+        }
+    }
+
+    /**
+     * invalidate every day changed by batch
+     */
+    @Override
+    public void applyBatch(@NotNull List<PlanMutation> mutations) throws ConnectionException {
+        try {
+            super.applyBatch(mutations);
+        } finally {
+            for (PlanMutation mutation : mutations) {
+                switch (mutation.getType()) {
+                    case ADD: invalidate(dayOf(mutation.getPlan())); break;
+                    case UPDATE: invalidateMoved(mutation.getPlan()); break;
+                    case DELETE: invalidate(forget(mutation.getId())); break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of requests answered from cache
+     */
+    long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of requests which had to be sent to connection
+     */
+    long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of requests of change feed which confirmed or invalidated expired days
+     */
+    long revalidations() {
+        return revalidations.sum();
+    }
+
+    /**
+     * remove all cached days
+     */
+    synchronized void clear() {
+        days.clear();
+        planDays.clear();
+        invalidations++;
+    }
+
+    /**
+     * @param day epoch day which is no longer valid, null is ignored
+     */
+    private synchronized void invalidate(Long day) {
+        if (day != null) {
+            CachedDay removed = days.remove(day);
+            if (removed != null) {
+                forgetPlans(day, removed);
+            }
+            invalidations++;
+        }
+    }
+
+    /**
+     * invalidate day where plan was and day where it is moved
+     */
+    private synchronized void invalidateMoved(Plan item) {
+        invalidate(forget(item.getId()));
+        invalidate(dayOf(item));
+    }
+
+    /**
+     * @return cached epoch day where plan with given id is or null
+     */
+    private synchronized Long forget(int idPlan) {
+        return planDays.remove(idPlan);
+    }
+
+    /**
+     * cache plans of day and remember their day, so it can be invalidated when plan is moved or deleted
+     * only plans of cached days are remembered
+     */
+    private void cache(long day, CachedDay entry) {
+        CachedDay replaced = days.put(day, entry);
+        if (replaced != null) {
+            forgetPlans(day, replaced);
+        }
+        for (Plan plan : entry.plans) {
+            planDays.put(plan.getId(), day);
+        }
+    }
+
+    /**
+     * forget days of plans of day which is no longer cached
+     */
+    private void forgetPlans(long day, CachedDay entry) {
+        for (Plan plan : entry.plans) {
+            planDays.remove(plan.getId(), day);
+        }
+    }
+
+    /**
+     * @return epoch day of plan or null when plan has no valid date
+     */
+    private static Long dayOf(Plan plan) {
+        try {
+            return LocalDate.of(plan.getYear(), plan.getMonth(), plan.getDay()).toEpochDay();
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * connection which reports every change of plans to {@link SearchResult}, so stale results aren't used,
+ * and to given listener (for example to update counts of plans shown in calendar)
+ */
+class ChangeWatcher extends ForwardingConnection {
+    private final Runnable listener;
+
+    /**
+     * @param listener called after every change on thread which made it
+     */
+    ChangeWatcher(@NotNull Connection delegate, @NotNull Runnable listener) {
+        super(delegate);
+        this.listener = listener;
+    }
+
+    // reported after change is done (also failed one, it could be partly done) - search which started loading
+    // before it is stale then
+
+    @Override
+    public void addNew(@NotNull Plan item) throws ConnectionException {
+        try {
+            super.addNew(item);
+        } finally {
+            SearchResult.changed();
+            listener.run();
+        }
+    }
+
+    @Override
+    public void updatePlan(@NotNull Plan item) throws ConnectionException {
+        try {
+            super.updatePlan(item);
+        } finally {
+            SearchResult.changed();
+            listener.run();
+        }
+    }
+
+    @Override
+    public void deletePlan(int idPlan) throws ConnectionException {
+        try {
+            super.deletePlan(idPlan);
+        } finally {
+            SearchResult.changed();
+            listener.run();
+        }
+    }
+
+    @Override
+    public void applyBatch(@NotNull List<PlanMutation> mutations) throws ConnectionException {
+        try {
+            super.applyBatch(mutations);
+        } finally {
+            SearchResult.changed();
+            listener.run();
+        }
+    }
+}
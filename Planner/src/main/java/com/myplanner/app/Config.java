@@ -0,0 +1,17 @@
+package com.myplanner.app;
+
+/**
+ * location of configuration of connections (address of server, database, data file)
+ */
+final class Config {
+    private Config() {
+    }
+
+    /**
+     * @return path to properties file - "src/config.properties" unless system property "planner.config" is set
+     * (for example by benchmarks running against local stand-ins)
+     */
+    static String path() {
+        return System.getProperty("planner.config", "src/config.properties");
+    }
+}
@@ -2,6 +2,9 @@ package com.myplanner.app;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.time.LocalDate;
+import java.util.List;
+
 /**
  * abstract class for connection to database
  */
@@ -27,6 +30,49 @@ interface Connection {
      */
     Plan[] getPlansOnDay(int y, int m, int d) throws ConnectionException;
 
+    /**
+     * get plans set between given dates (both included) in one request
+     *
+     * @param from first day of range
+     * @param to   last day of range
+     * @return plans in range sorted by date and time (all day plans first)
+     */
+    Plan[] getPlansInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException;
+
+    /**
+     * columnar variant of {@link #getPlans(String, int, int, int)} for large results (for example search in whole year)
+     *
+     * @param name  part of name of request plans
+     * @param year  year of request plans (-1 = any)
+     * @param month month of request plans (-1 = any)
+     * @param day   day of request plans (-1 = any)
+     * @return plans which correspond to request sorted by date and time
+     */
+    PlanBatch getPlanBatch(@NotNull String name, int year, int month, int day) throws ConnectionException;
+
+    /**
+     * one page of {@link #getPlanBatch(String, int, int, int)} - first results come by one small request
+     *
+     * @param name     part of name of request plans
+     * @param year     year of request plans (-1 = any)
+     * @param month    month of request plans (-1 = any)
+     * @param day      day of request plans (-1 = any)
+     * @param pageSize maximal number of plans in page
+     * @param after    continuation token of previous page ({@link PlanPage#getNext()}), null for first page
+     * @return plans of page sorted by date and time with token of next page
+     */
+    PlanPage getPlanPage(@NotNull String name, int year, int month, int day, int pageSize, String after)
+            throws ConnectionException;
+
+    /**
+     * columnar variant of {@link #getPlansInRange(LocalDate, LocalDate)}
+     *
+     * @param from first day of range
+     * @param to   last day of range
+     * @return plans in range sorted by date and time (all day plans first)
+     */
+    PlanBatch getPlanBatchInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException;
+
     /**
      * get years that are present in database
      *
@@ -34,6 +80,33 @@ interface Connection {
      */
     String[] getYears() throws ConnectionException;
 
+    /**
+     * get numbers of plans in every month by one aggregate query
+     *
+     * @return summary of plans in database
+     */
+    PlanSummary getSummary() throws ConnectionException;
+
+    /**
+     * get numbers of plans in every day of month by one aggregate query
+     *
+     * @param year  year of month
+     * @param month month (1 - 12)
+     * @return numbers of plans in days of month (index 0 = first day), array has length of month
+     */
+    int[] getDayCounts(int year, int month) throws ConnectionException;
+
+    /**
+     * get changes of plans made after given version (change feed) - what was loaded before is refreshed
+     * by one small request instead of loading it again
+     *
+     * @param since token of version given by previous changes ({@link PlanChanges#getToken()}),
+     *              null for token of current version only (no changes are returned)
+     * @return added, updated and deleted plans after given version, the rest follows their token when
+     * there are more changes than one response holds ({@link PlanChanges#hasMore()})
+     */
+    PlanChanges getChangesSince(String since) throws ConnectionException;
+
     /**
      * add new plan to database
      *
@@ -54,10 +127,45 @@ interface Connection {
      * @param idPlan plan which should be delete
      */
     void deletePlan(int idPlan) throws ConnectionException ;
+
+    /**
+     * apply changes in given order, as few requests as possible are sent
+     * added plans get their id
+     *
+     * @param mutations adding, updating and deleting of plans
+     */
+    void applyBatch(@NotNull List<PlanMutation> mutations) throws ConnectionException;
+
+    /**
+     * reserve block of ids for new plans - ids are never given to anybody else
+     * (clients running at the same time don't get the same ids)
+     *
+     * @param count number of reserved ids
+     * @return first of reserved ids (block is first, first + 1, ..., first + count - 1)
+     */
+    int reserveIds(int count) throws ConnectionException;
 }
 
 class ConnectionException extends Exception {
     public ConnectionException(String message) {
         super(message);
     }
+}
+
+/**
+ * storage refused request (invalid change, violated constraint, ...) - sending it again gives the same result
+ */
+class ConnectionRejectedException extends ConnectionException {
+    public ConnectionRejectedException(String message) {
+        super(message);
+    }
+}
+
+/**
+ * request didn't complete in given time
+ */
+class ConnectionTimeoutException extends ConnectionException {
+    public ConnectionTimeoutException(String message) {
+        super(message);
+    }
 }
\ No newline at end of file
@@ -10,108 +10,230 @@ import org.jetbrains.annotations.NotNull;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.*;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * connection to local database
+ * all instances share one pool of long-lived connections, so they can be used from several threads at once
  */
 public class ConnectionToLocalDatabase implements Connection {
-    private static java.sql.Connection con = null;
-    private int maxId;
+    private static final String INSERT = "INSERT INTO calendar (id, name, year, month, day, time, version) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = "UPDATE calendar SET name = ?, year = ?, month = ?, day = ?, time = ?, version = ? WHERE id = ?";
+    private static final String DELETE = "DELETE FROM calendar WHERE id = ?";
+    private static final String TOMBSTONE = "REPLACE INTO calendar_deleted (id, version) VALUES (?, ?)";
+    // minute of day of plan, plans without time are first in day (-1)
+    private static final String MINUTE_OF_DAY = "IFNULL(HOUR(time) * 60 + MINUTE(time), -1)";
+    // columns read to PlanBatch - time is read as minute of day, so no Time object is created
+    private static final String SELECT_BATCH = "SELECT id, name, year, month, day, " + MINUTE_OF_DAY + " FROM calendar";
+    private static final String SELECT_PLANS = "SELECT id, name, year, month, day, time FROM calendar";
+    private static final String SELECT_DAY = SELECT_PLANS + " WHERE year = ? AND month = ? AND day = ?";
+    // comparisons of rows like (year, month, day) >= (?, ?, ?) aren't read by index in MySQL,
+    // so they are written out by columns - years between limits is range of index
+    private static final String SELECT_RANGE = SELECT_BATCH
+            + " WHERE year BETWEEN ? AND ?"
+            + " AND (year > ? OR (year = ? AND (month > ? OR (month = ? AND day >= ?))))"
+            + " AND (year < ? OR (year = ? AND (month < ? OR (month = ? AND day <= ?))))"
+            + " ORDER BY year, month, day, time, id";
+    // plans after key of page (year, month, day, minute of day, id) - written out by columns like SELECT_RANGE
+    private static final String AFTER_KEY = "year >= ? AND (year > ? OR (year = ? AND (month > ? OR (month = ?"
+            + " AND (day > ? OR (day = ? AND (" + MINUTE_OF_DAY + " > ? OR (" + MINUTE_OF_DAY + " = ? AND id > ?))))))))";
+    // narrows search by full-text index, LOCATE still decides (phrase of pairs of letters finds parts of names)
+    private static final String NAME_MATCH = "MATCH(name) AGAINST (? IN BOOLEAN MODE)";
+    // counts read from index of dates only (year and month are its prefix)
+    private static final String COUNT_DAYS = "SELECT day, COUNT(*) AS count FROM calendar WHERE year = ? AND month = ? GROUP BY day";
+    private static final String RESERVE_IDS = "UPDATE id_sequence SET next_id = LAST_INSERT_ID(next_id + ?) WHERE name = 'calendar'";
+    // row of counter stays locked until transaction which moved it ends, so versions are committed in their order
+    private static final String RESERVE_VERSIONS = "UPDATE id_sequence SET next_id = LAST_INSERT_ID(next_id + ?) WHERE name = 'calendar_version'";
+    private static final String CURRENT_VERSION = "SELECT next_id - 1 FROM id_sequence WHERE name = 'calendar_version'";
+    private static final String SELECT_CHANGED = "SELECT id, name, year, month, day, time, version FROM calendar"
+            + " WHERE version > ? AND version <= ? ORDER BY version LIMIT ?";
+    private static final String SELECT_DELETED = "SELECT id, version FROM calendar_deleted"
+            + " WHERE version > ? AND version <= ? ORDER BY version LIMIT ?";
+
+    private static volatile boolean schemaReady; // schema was migrated (all instances use the same database)
+    private static volatile int nameTokenSize; // length of parts of names in full-text index, 0 = no index
+
+    private static final int ID_BLOCK = 50; // ids reserved at once
+    private static final int CHANGES_LIMIT = 1000; // changes in one response of change feed
+    private static final long EPOCH = 0; // database has only one log of changes
+
+    private final IdAllocator ids = new IdAllocator(this::reserveIds, ID_BLOCK); // ids of new plans
 
     /**
-     * open connection to database on localhost server
+     * borrow connection to database on localhost server from the shared pool
+     * (configuration is read only once - when the pool is first used, schema is migrated by first connection)
      */
-    private void connect() throws ConnectionException {
-        try (FileInputStream propsInput = new FileInputStream("src/config.properties")){
-            Properties prop = new Properties();
-            prop.load(propsInput);
-
-            String driver = prop.getProperty("DB_DRIVER");
-            Class.forName(driver);
-            String url = prop.getProperty("DB_URL");
-            String user = prop.getProperty("DB_USER");
-            String password = prop.getProperty("DB_PASSWORD");
-            con = DriverManager.getConnection(url, user, password);
-        } catch (SQLException e) {
-            throw new ConnectionException("SQLException: " + e.getMessage());
-        } catch (ClassNotFoundException | IOException ex) {
-            ex.printStackTrace();
+    private java.sql.Connection connect() throws ConnectionException {
+        java.sql.Connection con = PoolHolder.POOL.borrow();
+        if (!schemaReady) {
+            try {
+                prepareSchema(con);
+            } catch (SQLException e) {
+                release(con);
+                throw new ConnectionException("Failed to prepare database: " + e.getMessage());
+            }
+        }
+        return con;
+    }
+
+    /**
+     * migrate schema (see {@link Schema}) and check that lookups use its indexes
+     */
+    private static synchronized void prepareSchema(java.sql.Connection con) throws SQLException {
+        if (schemaReady) {
+            return;
         }
+        Schema.migrate(con);
+        int tokenSize = 0;
+        if (Schema.isMySQL(con) && Schema.hasIndex(con, "calendar", Schema.NAME_INDEX)) {
+            try (Statement st = con.createStatement(); ResultSet rs = st.executeQuery("SELECT @@ngram_token_size")) {
+                tokenSize = rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+        Schema.verify(con, SELECT_DAY, Schema.DATE_INDEX, 2000, 1, 1);
+        Schema.verify(con, SELECT_RANGE, Schema.DATE_INDEX, 2000, 2000, 2000, 2000, 1, 1, 1, 2000, 2000, 1, 1, 31);
+        Schema.verify(con, COUNT_DAYS, Schema.DATE_INDEX, 2000, 1);
+        Schema.verify(con, SELECT_CHANGED, Schema.VERSION_INDEX, 0, 0, CHANGES_LIMIT);
+        if (tokenSize > 0) {
+            Schema.verify(con, SELECT_BATCH + " WHERE LOCATE(?, name) > 0 AND " + NAME_MATCH, Schema.NAME_INDEX,
+                    "plan", "\"plan\"");
+        }
+        nameTokenSize = tokenSize;
+        schemaReady = true;
+    }
+
+    /**
+     * @return whether search of plans by part of name can be narrowed by full-text index
+     * (part has to be at least as long as parts in index, quotes would end phrase,
+     * ngram parser leaves out pairs with spaces, so phrase with space may miss names LOCATE finds)
+     */
+    private static boolean matchesByIndex(String name) {
+        return nameTokenSize > 0 && name.length() >= nameTokenSize && name.indexOf('"') < 0
+                && name.chars().noneMatch(Character::isWhitespace);
+    }
+
+    /**
+     * return borrowed connection back to the pool
+     */
+    private void release(java.sql.Connection con) {
+        PoolHolder.POOL.release(con);
     }
 
     /**
-     * get plans from database
-     * @param name  name of request plans
-     * @param year  year of request plans
-     * @param month month of request plans
-     * @param day   day of request plans
-     * @return all plans from database
+     * connect to database and select plans whose name contains given name and which are on given date
+     * @param name  part of name of request plans
+     * @param year  year of request plans (-1 = any)
+     * @param month month of request plans (-1 = any)
+     * @param day   day of request plans (-1 = any)
+     * @return plans from database sorted by date and time
      */
     @Override
     public Plan[] getPlans(@NotNull String name, int year, int month, int day) throws ConnectionException {
-        connect();
-        List<Plan> plans = new ArrayList<>();
-        try {
-            String query = "SELECT id, name, time FROM calendar  WHERE year = ? AND month = ? AND day = ? AND name = ?";
-
-            // create the java statement
-            PreparedStatement preparedStmt = con.prepareStatement(query);
-            if(year != -1) preparedStmt.setInt(1, year);
-            if(month != -1) preparedStmt.setInt(2, month);
-            if(day != -1) preparedStmt.setInt(3, day);
-            if(!name.equals("")) preparedStmt.setString(4, name);
+        return getPlanBatch(name, year, month, day).toPlans();
+    }
 
-            // execute the query, and get a java resultset
-            ResultSet rs = preparedStmt.executeQuery(query);
+    /**
+     * select plans like {@link #getPlans(String, int, int, int)}, rows are read directly to batch
+     * only given parts of date are part of query, so "ANY" (-1) matches every value
+     */
+    @Override
+    public PlanBatch getPlanBatch(@NotNull String name, int year, int month, int day) throws ConnectionException {
+        return search(name, year, month, day, null, 0);
+    }
 
-            // iterate through the java resultset
-            while (rs.next()) {
-                int id = rs.getInt("id");
-                String n = rs.getString("name");
-                Time time = rs.getTime("time");
+    /**
+     * page is selected by key of last plan of previous page (no OFFSET - rows before page are never read)
+     */
+    @Override
+    public PlanPage getPlanPage(@NotNull String name, int year, int month, int day, int pageSize, String after)
+            throws ConnectionException {
+        PlanPage.Key key = (after == null ? null : PlanPage.Key.of(after));
+        // one plan more than page size tells if there is next page
+        return PlanPage.of(search(name, year, month, day, key, pageSize + 1), pageSize);
+    }
 
-                plans.add(new Plan(id, n, time, year, month, day));
+    /**
+     * select plans whose name contains given name and which are on given date ordered by date, time and id
+     * @param after key of plan after which plans are selected, null for selecting from the first plan
+     * @param limit maximal number of selected plans, 0 for all plans
+     */
+    private PlanBatch search(String name, int year, int month, int day, PlanPage.Key after, int limit)
+            throws ConnectionException {
+        boolean byIndex = matchesByIndex(name);
+        StringBuilder query = new StringBuilder(SELECT_BATCH).append(" WHERE LOCATE(?, name) > 0");
+        if (byIndex) query.append(" AND ").append(NAME_MATCH);
+        if (year != -1) query.append(" AND year = ?");
+        if (month != -1) query.append(" AND month = ?");
+        if (day != -1) query.append(" AND day = ?");
+        if (after != null) query.append(" AND ").append(AFTER_KEY);
+        query.append(" ORDER BY year, month, day, ").append(MINUTE_OF_DAY).append(", id");
+        if (limit > 0) query.append(" LIMIT ?");
+
+        java.sql.Connection con = connect();
+        try (PreparedStatement preparedStmt = con.prepareStatement(query.toString())) {
+            int parameter = 1;
+            preparedStmt.setString(parameter++, name);
+            if (byIndex) preparedStmt.setString(parameter++, '"' + name + '"');
+            if (year != -1) preparedStmt.setInt(parameter++, year);
+            if (month != -1) preparedStmt.setInt(parameter++, month);
+            if (day != -1) preparedStmt.setInt(parameter++, day);
+            if (after != null) {
+                for (int value : new int[]{after.year, after.year, after.year, after.month, after.month,
+                        after.day, after.day, after.minuteOfDay, after.minuteOfDay, after.id}) {
+                    preparedStmt.setInt(parameter++, value);
+                }
             }
-
-            preparedStmt.close();
-        } catch (SQLException | NullPointerException e) {
+            if (limit > 0) preparedStmt.setInt(parameter, limit);
+            return readBatch(preparedStmt);
+        } catch (SQLException e) {
             throw new ConnectionException(e.getMessage());
         } finally {
-            try {
-                con.close();
-            } catch (SQLException | NullPointerException e) {
-                e.printStackTrace();
-            }
+            release(con);
         }
-        return plans.toArray(new Plan[0]);
     }
 
     /**
      * connect to database and select plans which corresponds to given parameters
-     * @param y year of request plans
-     * @param m month of request plans
-     * @param d day of request plans
+     * only given parts of date are part of query, so "ANY" (-1) matches every value
+     * @param y year of request plans (-1 = any)
+     * @param m month of request plans (-1 = any)
+     * @param d day of request plans (-1 = any)
      * @return array of plans that math request
      */
     @Override
     public Plan[] getPlansOnDay(int y, int m, int d) throws ConnectionException {
-        connect();
+        java.sql.Connection con = connect();
         List<Plan> plans = new ArrayList<>();
-        try {
-            String query = "SELECT id, name, time FROM calendar  WHERE year = ? AND month = ? AND day = ?";
 
-            // create the java statement
-            PreparedStatement preparedStmt = con.prepareStatement(query);
-            if(y != -1) preparedStmt.setInt(1, y);
-            if(m != -1) preparedStmt.setInt(2, m);
-            if(d != -1) preparedStmt.setInt(3, d);
+        // create the java statement
+        String query = SELECT_DAY;
+        if (y == -1 || m == -1 || d == -1) {
+            StringBuilder where = new StringBuilder();
+            if (y != -1) where.append(" AND year = ?");
+            if (m != -1) where.append(" AND month = ?");
+            if (d != -1) where.append(" AND day = ?");
+            query = SELECT_PLANS + (where.length() == 0 ? "" : " WHERE" + where.substring(" AND".length()));
+        }
+        try (PreparedStatement preparedStmt = con.prepareStatement(query)) {
+            int parameter = 1;
+            if (y != -1) preparedStmt.setInt(parameter++, y);
+            if (m != -1) preparedStmt.setInt(parameter++, m);
+            if (d != -1) preparedStmt.setInt(parameter, d);
 
             // execute the query, and get a java resultset
-            ResultSet rs = preparedStmt.executeQuery(query);
+            ResultSet rs = preparedStmt.executeQuery();
 
             // iterate through the java resultset
             while (rs.next()) {
@@ -119,153 +241,549 @@ public class ConnectionToLocalDatabase implements Connection {
                 String name = rs.getString("name");
                 Time time = rs.getTime("time");
 
-                plans.add(new Plan(id, name, time, y, m, d));
+                plans.add(new Plan(id, name, time, rs.getInt("year"), rs.getInt("month"), rs.getInt("day")));
             }
-
-            preparedStmt.close();
         } catch (SQLException | NullPointerException e) {
             throw new ConnectionException(e.getMessage());
         } finally {
-            try {
-                con.close();
-            } catch (SQLException | NullPointerException e) {
-                e.printStackTrace();
-            }
+            release(con);
         }
         return plans.toArray(new Plan[0]);
     }
 
     /**
-     * get years from database and set maxId to max id from database
+     * select plans between given dates sorted by date and time
+     * @param from first day of range
+     * @param to last day of range
+     * @return array of plans in range
+     */
+    @Override
+    public Plan[] getPlansInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        return getPlanBatchInRange(from, to).toPlans();
+    }
+
+    @Override
+    public PlanBatch getPlanBatchInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        java.sql.Connection con = connect();
+        try (PreparedStatement preparedStmt = con.prepareStatement(SELECT_RANGE)) {
+            int parameter = 1;
+            for (int value : new int[]{from.getYear(), to.getYear(),
+                    from.getYear(), from.getYear(), from.getMonthValue(), from.getMonthValue(), from.getDayOfMonth(),
+                    to.getYear(), to.getYear(), to.getMonthValue(), to.getMonthValue(), to.getDayOfMonth()}) {
+                preparedStmt.setInt(parameter++, value);
+            }
+            return readBatch(preparedStmt);
+        } catch (SQLException e) {
+            throw new ConnectionException(e.getMessage());
+        } finally {
+            release(con);
+        }
+    }
+
+    /**
+     * execute query selecting columns of {@link #SELECT_BATCH} and read rows to batch
+     */
+    private static PlanBatch readBatch(PreparedStatement statement) throws SQLException {
+        PlanBatch.Builder batch = new PlanBatch.Builder();
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                try {
+                    // minute of day is -1 (PlanBatch.ALL_DAY) when plan has no time
+                    batch.add(rs.getInt(1), rs.getString(2),
+                            LocalDate.of(rs.getInt(3), rs.getInt(4), rs.getInt(5)).toEpochDay(), rs.getInt(6));
+                } catch (DateTimeException e) {
+                    // plan can't be shown without valid date
+                }
+            }
+        }
+        return batch.build();
+    }
+
+    /**
+     * get years from database
      * @return array of distinct years from database
      */
     @Override
     public String[] getYears() throws ConnectionException {
-        connect();
+        java.sql.Connection con = connect();
         List<String> years = new ArrayList<>();
         years.add("ANY");
-        try {
-            String query = "SELECT DISTINCT year, id FROM calendar";
-
-            // create the java statement
-            Statement st = con.createStatement();
+        String query = "SELECT DISTINCT year FROM calendar ORDER BY year";
 
+        // create the java statement
+        try (Statement st = con.createStatement()) {
             // execute the query, and get a java resultset
             ResultSet rs = st.executeQuery(query);
 
             // iterate through the java resultset
             while (rs.next()) {
-                int date = rs.getInt("year");
-                maxId = Math.max(maxId, rs.getInt("id"));
-                if (!years.contains(Integer.toString(date))) {
-                    years.add(Integer.toString(date));
-                }
+                years.add(Integer.toString(rs.getInt("year")));
             }
-
-            st.close();
         } catch (SQLException | NullPointerException e) {
             throw new ConnectionException(e.getMessage());
         } finally {
-            try {
-                con.close();
-            } catch (SQLException | NullPointerException e) {
-                e.printStackTrace();
-            }
+            release(con);
         }
         return years.toArray(new String[0]);
     }
 
     /**
-     * insert new plan to database
-     * @param item plan which will be add to database
+     * count plans in every month by one aggregate query
+     * @return summary of plans in database
      */
     @Override
-    public void addNew(Plan item) throws ConnectionException {
-        connect();
-        // the mysql insert statement
-        String query = " INSERT INTO calendar (id, name, year, month, day, time)"
-                + " values (?, ?, ?, ?, ?, ?)";
+    public PlanSummary getSummary() throws ConnectionException {
+        java.sql.Connection con = connect();
+        PlanSummary summary = new PlanSummary();
+        String query = "SELECT year, month, COUNT(*) AS count FROM calendar GROUP BY year, month";
+        try (Statement st = con.createStatement(); ResultSet rs = st.executeQuery(query)) {
+            while (rs.next()) {
+                summary.add(rs.getInt("year"), rs.getInt("month"), rs.getInt("count"));
+            }
+        } catch (SQLException e) {
+            throw new ConnectionException(e.getMessage());
+        } finally {
+            release(con);
+        }
+        return summary;
+    }
 
-        try {
-            // create the mysql insert preparedstatement
-            PreparedStatement preparedStmt = con.prepareStatement(query);
-            preparedStmt.setInt(1, ++maxId);
-            preparedStmt.setString(2, item.getName());
-            preparedStmt.setInt(3, item.getYear());
-            preparedStmt.setInt(4, item.getMonth());
-            preparedStmt.setInt(5, item.getDay());
-            if (item.getTime().equals("")) preparedStmt.setNull(4, Types.TIME);
-            else preparedStmt.setTime(4, Time.valueOf(item.getTime() + ":00"));
-
-            // execute the preparedstatement
-            preparedStmt.execute();
+    /**
+     * count plans in every day of month by one aggregate query
+     * @return numbers of plans in days of month
+     */
+    @Override
+    public int[] getDayCounts(int year, int month) throws ConnectionException {
+        int[] counts = new int[YearMonth.of(year, month).lengthOfMonth()];
+        java.sql.Connection con = connect();
+        try (PreparedStatement st = con.prepareStatement(COUNT_DAYS)) {
+            st.setInt(1, year);
+            st.setInt(2, month);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    int day = rs.getInt("day");
+                    if (day >= 1 && day <= counts.length) {
+                        counts[day - 1] = rs.getInt("count");
+                    }
+                }
+            }
         } catch (SQLException e) {
             throw new ConnectionException(e.getMessage());
         } finally {
-            try {
-                con.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
+            release(con);
+        }
+        return counts;
+    }
+
+    /**
+     * read counter of versions first - every version up to it is committed (writers keep counter locked until
+     * they commit), then rows and tombstones changed after given version up to it
+     */
+    @Override
+    public PlanChanges getChangesSince(String since) throws ConnectionException {
+        PlanChanges.Token token = (since == null ? null : PlanChanges.Token.of(since));
+        java.sql.Connection con = connect();
+        try {
+            int current;
+            try (Statement st = con.createStatement(); ResultSet rs = st.executeQuery(CURRENT_VERSION)) {
+                if (!rs.next()) {
+                    throw new ConnectionException("Sequence of versions is missing");
+                }
+                current = rs.getInt(1);
             }
+            if (token == null) {
+                return PlanChanges.none(PlanChanges.token(EPOCH, current));
+            } else if (token.epoch != EPOCH || token.version > current) {
+                // token of other database
+                return PlanChanges.reset(PlanChanges.token(EPOCH, current));
+            }
+            PlanChanges.Builder changes = new PlanChanges.Builder(EPOCH);
+            // one change more than limit tells if there are more changes
+            try (PreparedStatement changed = con.prepareStatement(SELECT_CHANGED)) {
+                bindVersions(changed, token.version, current);
+                try (ResultSet rs = changed.executeQuery()) {
+                    while (rs.next()) {
+                        changes.changed(new Plan(rs.getInt("id"), rs.getString("name"), rs.getTime("time"),
+                                rs.getInt("year"), rs.getInt("month"), rs.getInt("day")), rs.getInt("version"));
+                    }
+                }
+            }
+            try (PreparedStatement deleted = con.prepareStatement(SELECT_DELETED)) {
+                bindVersions(deleted, token.version, current);
+                try (ResultSet rs = deleted.executeQuery()) {
+                    while (rs.next()) {
+                        changes.deleted(rs.getInt("id"), rs.getInt("version"));
+                    }
+                }
+            }
+            return changes.build(current, CHANGES_LIMIT);
+        } catch (SQLException e) {
+            throw new ConnectionException(e.getMessage());
+        } finally {
+            release(con);
         }
     }
 
+    private static void bindVersions(PreparedStatement statement, int since, int current) throws SQLException {
+        statement.setInt(1, since);
+        statement.setInt(2, current);
+        statement.setInt(3, CHANGES_LIMIT + 1);
+    }
+
+    /**
+     * insert new plan to database (change gets version like every change of batch)
+     * @param item plan which will be add to database
+     */
+    @Override
+    public void addNew(Plan item) throws ConnectionException {
+        applyBatch(List.of(PlanMutation.add(item)));
+    }
+
     /**
      * update row in database by given parameters
      * @param item plan which will be update, id, name and date of plan must be set
      */
     @Override
     public void updatePlan(Plan item) throws ConnectionException {
-        connect();
-        try {
-            // create the java mysql update preparedstatement
-            String query = "UPDATE calendar SET name = ?, year = ?, month = ?, day = ?, time = ? WHERE id = ?";
-
-            PreparedStatement preparedStmt = con.prepareStatement(query);
-            preparedStmt.setString(1, item.getName());
-            preparedStmt.setInt(2, item.getYear());
-            preparedStmt.setInt(3, item.getMonth());
-            preparedStmt.setInt(4, item.getDay());
-            preparedStmt.setTime(5, (Objects.equals(item.getTime(), "") ? null : Time.valueOf(item.getTime() + ":00")));
-            preparedStmt.setInt(6, item.getId());
-
-            // execute the java preparedstatement
-            preparedStmt.executeUpdate();
+        applyBatch(List.of(PlanMutation.update(item)));
+    }
+
+    /**
+     * delete row with given id from database, tombstone of plan is kept for change feed
+     * @param idPlan id of plan which will be delete from database
+     */
+    @Override
+    public void deletePlan(int idPlan) throws ConnectionException {
+        applyBatch(List.of(PlanMutation.delete(idPlan)));
+    }
+
+    /**
+     * apply all changes in one transaction, changes of the same kind which follow each other are sent as one batch
+     * every change gets its own version (see {@link #getChangesSince(String)}), deleted plans leave tombstones
+     * @param mutations adding, updating and deleting of plans
+     */
+    @Override
+    public void applyBatch(@NotNull List<PlanMutation> mutations) throws ConnectionException {
+        for (PlanMutation mutation : mutations) {
+            if (mutation.getType() == PlanMutation.Type.ADD && mutation.getPlan().getId() <= 0) {
+                mutation.getPlan().setId(ids.next());
+            }
+        }
+        java.sql.Connection con = connect();
+        try (PreparedStatement inserting = con.prepareStatement(INSERT);
+             PreparedStatement updating = con.prepareStatement(UPDATE);
+             PreparedStatement deleting = con.prepareStatement(DELETE);
+             PreparedStatement tombstones = con.prepareStatement(TOMBSTONE)) {
+            con.setAutoCommit(false);
+            int version = reserve(con, RESERVE_VERSIONS, mutations.size(), "Sequence of versions is missing");
+            PreparedStatement pending = null; // statement with added rows which weren't executed yet
+            for (PlanMutation mutation : mutations) {
+                PreparedStatement statement;
+                switch (mutation.getType()) {
+                    case ADD:
+                        statement = inserting;
+                        bindInsert(statement, mutation.getPlan(), version);
+                        break;
+                    case UPDATE:
+                        statement = updating;
+                        bindUpdate(statement, mutation.getPlan(), version);
+                        break;
+                    default:
+                        statement = deleting;
+                        statement.setInt(1, mutation.getId());
+                        tombstones.setInt(1, mutation.getId());
+                        tombstones.setInt(2, version);
+                        tombstones.addBatch();
+                }
+                version++;
+                statement.addBatch();
+                // keep order of changes - execute rows of previous kind first
+                if (pending != null && pending != statement) {
+                    pending.executeBatch();
+                }
+                pending = statement;
+            }
+            if (pending != null) {
+                pending.executeBatch();
+            }
+            tombstones.executeBatch();
+            con.commit();
         } catch (SQLException e) {
-            throw new ConnectionException(e.getMessage());
+            try {
+                con.rollback();
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+            throw isRejected(e) ? new ConnectionRejectedException(e.getMessage()) : new ConnectionException(e.getMessage());
         } finally {
             try {
-                con.close();
+                con.setAutoCommit(true);
             } catch (SQLException e) {
                 e.printStackTrace();
             }
+            release(con);
         }
     }
 
     /**
-     * delete row with given id from database
-     * @param idPlan id of plan which will be delete from database
+     * @return true if statement failed because of its data (invalid value, violated constraint, ...),
+     * not because of connection - it fails the same way next time
+     */
+    private static boolean isRejected(SQLException e) {
+        if (e instanceof BatchUpdateException) {
+            // failure of one statement of batch
+            if (e.getCause() instanceof SQLException) {
+                e = (SQLException) e.getCause();
+            } else if (e.getNextException() != null) {
+                e = e.getNextException();
+            }
+        }
+        return e instanceof SQLNonTransientException && !(e instanceof SQLNonTransientConnectionException);
+    }
+
+    /**
+     * reserve ids by moving counter in table id_sequence (table is created by migration of schema, see {@link Schema})
+     * LAST_INSERT_ID(expr) remembers new value of counter for this connection, so reserving is one atomic update
+     * @param count number of reserved ids
+     * @return first of reserved ids
      */
     @Override
-    public void deletePlan(int idPlan) throws ConnectionException {
-        connect();
+    public int reserveIds(int count) throws ConnectionException {
+        java.sql.Connection con = connect();
         try {
-            String query = "DELETE FROM calendar WHERE id = ?";
-            PreparedStatement preparedStmt = con.prepareStatement(query);
-            preparedStmt.setInt(1, idPlan);
-
-            // execute the preparedstatement
-            preparedStmt.execute();
+            return reserve(con, RESERVE_IDS, count, "Sequence of ids is missing");
         } catch (SQLException e) {
             throw new ConnectionException(e.getMessage());
         } finally {
+            release(con);
+        }
+    }
+
+    /**
+     * move counter by given number
+     * @param reserving update of counter by LAST_INSERT_ID(expr)
+     * @param missing   message of exception when counter doesn't exist
+     * @return first of reserved numbers
+     */
+    private static int reserve(java.sql.Connection con, String reserving, int count, String missing)
+            throws SQLException, ConnectionException {
+        try (Statement st = con.createStatement();
+             PreparedStatement update = con.prepareStatement(reserving)) {
+            update.setInt(1, count);
+            if (update.executeUpdate() == 0) {
+                throw new ConnectionException(missing);
+            }
+            try (ResultSet rs = st.executeQuery("SELECT LAST_INSERT_ID()")) {
+                rs.next();
+                return rs.getInt(1) - count;
+            }
+        }
+    }
+
+    private static void bindInsert(PreparedStatement statement, Plan item, int version) throws SQLException {
+        statement.setInt(1, item.getId());
+        statement.setString(2, item.getName());
+        statement.setInt(3, item.getYear());
+        statement.setInt(4, item.getMonth());
+        statement.setInt(5, item.getDay());
+        if (item.getTime().equals("")) statement.setNull(6, Types.TIME);
+        else statement.setTime(6, Time.valueOf(item.getTime() + ":00"));
+        statement.setInt(7, version);
+    }
+
+    private static void bindUpdate(PreparedStatement statement, Plan item, int version) throws SQLException {
+        statement.setString(1, item.getName());
+        statement.setInt(2, item.getYear());
+        statement.setInt(3, item.getMonth());
+        statement.setInt(4, item.getDay());
+        statement.setTime(5, (Objects.equals(item.getTime(), "") ? null : Time.valueOf(item.getTime() + ":00")));
+        statement.setInt(6, version);
+        statement.setInt(7, item.getId());
+    }
+
+    /**
+     * lazy holder - configuration is loaded and pool is created on first use only
+     */
+    private static final class PoolHolder {
+        static final Pool POOL = Pool.fromConfig(Config.path());
+    }
+
+    /**
+     * bounded pool of long-lived connections to database
+     * connections are validated when borrowed and closed after being idle for too long
+     */
+    private static final class Pool {
+        private static final int VALIDATION_TIMEOUT = 2; // seconds
+        private static final long BORROW_TIMEOUT = 5000; // milliseconds
+
+        private final String url, user, password;
+        private final String failure; // why configuration can't be used, null when it was read
+        private final long idleTimeout; // milliseconds
+        private final Semaphore permits; // bounds number of open connections
+        private final Deque<Idle> idle = new ArrayDeque<>(); // guarded by this
+        private final ScheduledExecutorService evictor;
+
+        /**
+         * connection waiting in pool with time when it was returned
+         */
+        private static final class Idle {
+            final java.sql.Connection con;
+            final long since;
+
+            Idle(java.sql.Connection con, long since) {
+                this.con = con;
+                this.since = since;
+            }
+        }
+
+        private Pool(String url, String user, String password, String failure, int size, long idleTimeout) {
+            this.url = url;
+            this.user = user;
+            this.password = password;
+            this.failure = failure;
+            this.idleTimeout = idleTimeout;
+            permits = new Semaphore(size, true);
+            evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "db-pool-evictor");
+                t.setDaemon(true);
+                return t;
+            });
+            long period = Math.max(1, idleTimeout / 2);
+            evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * read configuration of database and load its driver
+         * @param path path to properties file
+         * @return new pool created by configuration, pool which fails every borrow when configuration can't be used
+         */
+        static Pool fromConfig(String path) {
+            Properties prop = new Properties();
+            String failure = null;
+            int size = 4;
+            long idleTimeout = 60000;
+            try (FileInputStream propsInput = new FileInputStream(path)) {
+                prop.load(propsInput);
+                if (prop.getProperty("DB_URL") == null) {
+                    failure = "DB_URL is missing in " + path;
+                } else if (prop.getProperty("DB_DRIVER") != null) {
+                    Class.forName(prop.getProperty("DB_DRIVER"));
+                }
+                size = Integer.parseInt(prop.getProperty("DB_POOL_SIZE", "4"));
+                idleTimeout = Long.parseLong(prop.getProperty("DB_POOL_IDLE_TIMEOUT", "60000"));
+            } catch (ClassNotFoundException ex) {
+                ex.printStackTrace();
+                failure = "Driver of database wasn't found: " + ex.getMessage();
+            } catch (IOException | NumberFormatException ex) {
+                ex.printStackTrace();
+                failure = "Failed to read configuration of database: " + ex.getMessage();
+            }
+            return new Pool(prop.getProperty("DB_URL"), prop.getProperty("DB_USER"), prop.getProperty("DB_PASSWORD"),
+                    failure, size, idleTimeout);
+        }
+
+        /**
+         * wait for free slot and return valid connection - idle one if there is any, new one otherwise
+         * @return open connection which must be given back by release
+         */
+        java.sql.Connection borrow() throws ConnectionException {
+            if (failure != null) {
+                throw new ConnectionException(failure);
+            }
+            try {
+                if (!permits.tryAcquire(BORROW_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    throw new ConnectionException("No free connection to database");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConnectionException("Interrupted while waiting for connection to database");
+            }
+            java.sql.Connection con = null;
+            try {
+                Idle entry;
+                while ((entry = pollIdle()) != null) {
+                    if (System.currentTimeMillis() - entry.since < idleTimeout && isValid(entry.con)) {
+                        con = entry.con;
+                        return con;
+                    }
+                    close(entry.con);
+                }
+                Properties info = new Properties();
+                if (user != null) info.setProperty("user", user);
+                if (password != null) info.setProperty("password", password);
+                info.setProperty("rewriteBatchedStatements", "true"); // batch of inserts is sent as one multi-row insert
+                con = DriverManager.getConnection(url, info);
+                return con;
+            } catch (SQLException e) {
+                throw new ConnectionException("SQLException: " + e.getMessage());
+            } catch (RuntimeException e) {
+                throw new ConnectionException("Failed to connect to database: " + e);
+            } finally {
+                if (con == null) {
+                    permits.release(); // nothing was borrowed
+                }
+            }
+        }
+
+        /**
+         * give connection back to pool (closed connection is thrown away)
+         * @param con connection given by borrow
+         */
+        void release(java.sql.Connection con) {
+            try {
+                if (con.isClosed()) {
+                    return;
+                }
+                if (!con.getAutoCommit()) {
+                    con.rollback();
+                    con.setAutoCommit(true);
+                }
+                synchronized (this) {
+                    idle.push(new Idle(con, System.currentTimeMillis()));
+                }
+            } catch (SQLException e) {
+                close(con);
+            } finally {
+                permits.release();
+            }
+        }
+
+        /**
+         * most recently used connection is taken first so rarely used ones can become idle and be evicted
+         */
+        private synchronized Idle pollIdle() {
+            return idle.poll();
+        }
+
+        /**
+         * close connections which are idle longer than idle timeout
+         */
+        private void evictIdle() {
+            long now = System.currentTimeMillis();
+            List<java.sql.Connection> expired = new ArrayList<>();
+            synchronized (this) {
+                // the oldest connections are at the end of deque
+                while (!idle.isEmpty() && now - idle.peekLast().since >= idleTimeout) {
+                    expired.add(idle.pollLast().con);
+                }
+            }
+            expired.forEach(Pool::close);
+        }
+
+        private static boolean isValid(java.sql.Connection con) {
+            try {
+                return con.isValid(VALIDATION_TIMEOUT);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private static void close(java.sql.Connection con) {
             try {
                 con.close();
             } catch (SQLException e) {
                 e.printStackTrace();
             }
         }
-
     }
 }
-
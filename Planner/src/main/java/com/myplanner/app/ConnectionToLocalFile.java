@@ -0,0 +1,852 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * connection to plans saved in local file - no database server is needed
+ *
+ * file is append-only log of fixed size records read through memory mapping:
+ * adding and updating appends new version of plan, deleting appends tombstone
+ * names of plans are appended to second file (records contain offset of name)
+ * index of live records is built when file is opened, old versions are removed by compaction in background
+ * (reading and writing continue while compaction copies live records)
+ */
+public class ConnectionToLocalFile implements Connection {
+    private static final Map<Path, Store> STORES = new ConcurrentHashMap<>(); // one store for every open file
+    private static final int CHANGES_LIMIT = 1000; // changes in one response of change feed
+
+    private final Path path;
+
+    /**
+     * connection to file set in configuration (DATA_FILE, "planner.dat" by default)
+     */
+    public ConnectionToLocalFile() {
+        String file = "planner.dat";
+        try (FileInputStream propsInput = new FileInputStream(Config.path())) {
+            Properties prop = new Properties();
+            prop.load(propsInput);
+            file = prop.getProperty("DATA_FILE", file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        path = Paths.get(file).toAbsolutePath();
+    }
+
+    /**
+     * @param path file with plans (created when it doesn't exist)
+     */
+    ConnectionToLocalFile(@NotNull Path path) {
+        this.path = path.toAbsolutePath();
+    }
+
+    /**
+     * @return store of file - file is opened by first request
+     */
+    private Store store() throws ConnectionException {
+        try {
+            return STORES.computeIfAbsent(path, p -> {
+                try {
+                    return new Store(p);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            });
+        } catch (IllegalStateException e) {
+            throw new ConnectionException("Failed to open " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * find plans whose name contains given name and which are on given date ("ANY" is -1)
+     */
+    @Override
+    public Plan[] getPlans(@NotNull String name, int year, int month, int day) throws ConnectionException {
+        return store().find(name.toLowerCase(Locale.ROOT), year, month, day);
+    }
+
+    @Override
+    public Plan[] getPlansOnDay(int y, int m, int d) throws ConnectionException {
+        return store().find("", y, m, d);
+    }
+
+    @Override
+    public Plan[] getPlansInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        return store().range(from.toEpochDay(), to.toEpochDay());
+    }
+
+    @Override
+    public PlanBatch getPlanBatch(@NotNull String name, int year, int month, int day) throws ConnectionException {
+        return PlanBatch.of(getPlans(name, year, month, day));
+    }
+
+    /**
+     * page is cut from all plans matching search
+     */
+    @Override
+    public PlanPage getPlanPage(@NotNull String name, int year, int month, int day, int pageSize, String after)
+            throws ConnectionException {
+        return PlanPage.slice(getPlanBatch(name, year, month, day), pageSize, after);
+    }
+
+    @Override
+    public PlanBatch getPlanBatchInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        return PlanBatch.of(getPlansInRange(from, to));
+    }
+
+    @Override
+    public String[] getYears() throws ConnectionException {
+        return store().years();
+    }
+
+    @Override
+    public PlanSummary getSummary() throws ConnectionException {
+        return store().summary();
+    }
+
+    @Override
+    public int[] getDayCounts(int year, int month) throws ConnectionException {
+        return store().dayCounts(YearMonth.of(year, month));
+    }
+
+    /**
+     * changes are read from log - version is number of records, compaction starts new generation of log
+     */
+    @Override
+    public PlanChanges getChangesSince(String since) throws ConnectionException {
+        return store().changesSince(since == null ? null : PlanChanges.Token.of(since));
+    }
+
+    @Override
+    public void addNew(@NotNull Plan item) throws ConnectionException {
+        item.setId(store().put(Math.max(item.getId(), 0), item));
+    }
+
+    @Override
+    public void updatePlan(@NotNull Plan item) throws ConnectionException {
+        store().put(item.getId(), item);
+    }
+
+    @Override
+    public void deletePlan(int idPlan) throws ConnectionException {
+        store().delete(idPlan);
+    }
+
+    /**
+     * all changes are appended under one lock
+     */
+    @Override
+    public void applyBatch(@NotNull List<PlanMutation> mutations) throws ConnectionException {
+        store().apply(mutations);
+    }
+
+    @Override
+    public int reserveIds(int count) throws ConnectionException {
+        return store().reserve(count);
+    }
+
+    /**
+     * open log and names file with index of live records
+     * all connections to the same file share one store
+     */
+    private static final class Store {
+        private static final int MAGIC = 0x504C414E; // "PLAN"
+        private static final int VERSION = 1;
+        // header: magic, version, generation of names file (long), checkpoint (end of log forced to disk), reserved
+        private static final int GENERATION = 8, CHECKPOINT = 16;
+        private static final int HEADER = 24;
+        private static final int CHECKPOINT_INTERVAL = 4096; // records between checkpoints
+        private static final int INITIAL_CAPACITY = 1 << 20;
+
+        // layout of record
+        private static final int ID = 0, DAY = 4, MINUTE = 8, TYPE = 10, NAME_OFFSET = 12, NAME_LENGTH = 16, CRC = 20;
+        private static final int RECORD = 24;
+        private static final byte PUT = 1, DELETE = 2;
+
+        private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "plan-file-compaction");
+            t.setDaemon(true);
+            return t;
+        });
+
+        private final Path path;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        // guarded by lock
+        private long generation;
+        private FileChannel logChannel, namesChannel;
+        private MappedByteBuffer log, names;
+        private int logEnd, namesEnd; // first free byte
+        private int records; // all records in log (live, old versions and tombstones)
+        private int maxId;
+        private int reserved; // highest id reserved for new plans (ids are used only in this process)
+        private final IntIntMap slots = new IntIntMap(); // id -> number of record with current version
+        private final TreeMap<Integer, IntList> days = new TreeMap<>(); // epoch day -> records of live plans
+        private boolean compacting;
+
+        Store(Path path) throws IOException {
+            this.path = path;
+            open();
+        }
+
+        /**
+         * map files and rebuild index by scanning log
+         * scanning stops at first record which is not complete (crash during writing) and log continues from there
+         */
+        private void open() throws IOException {
+            logChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            log = map(logChannel, Math.max(logChannel.size(), INITIAL_CAPACITY));
+            if (log.getInt(0) != MAGIC) {
+                // new file
+                log.putInt(0, MAGIC);
+                log.putInt(4, VERSION);
+                log.putLong(GENERATION, 0);
+                log.putInt(CHECKPOINT, HEADER);
+            } else if (log.getInt(4) != VERSION) {
+                throw new IOException("unsupported version of file");
+            }
+            generation = log.getLong(GENERATION);
+            int checkpoint = log.getInt(CHECKPOINT);
+            namesChannel = FileChannel.open(namesPath(generation), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            names = map(namesChannel, Math.max(namesChannel.size(), INITIAL_CAPACITY));
+            removeStaleFiles();
+
+            slots.clear();
+            days.clear();
+            records = 0;
+            maxId = 0;
+            namesEnd = 0;
+            logEnd = HEADER;
+            // records before checkpoint are on disk for sure, only records written after it are verified
+            while (logEnd + RECORD <= log.capacity() && (logEnd < checkpoint || isValid(logEnd))) {
+                int slot = records++;
+                int id = log.getInt(logEnd + ID);
+                maxId = Math.max(maxId, id);
+                unlink(id);
+                if (log.get(logEnd + TYPE) == PUT) {
+                    link(id, slot);
+                    namesEnd = Math.max(namesEnd, log.getInt(logEnd + NAME_OFFSET) + log.getInt(logEnd + NAME_LENGTH));
+                }
+                logEnd += RECORD;
+            }
+            // zero rest of torn record, so it isn't read as valid after next writes
+            for (int i = logEnd; i < Math.min(logEnd + RECORD, log.capacity()); i++) {
+                log.put(i, (byte) 0);
+            }
+        }
+
+        private Path namesPath(long generation) {
+            return path.resolveSibling(path.getFileName() + ".names-" + generation);
+        }
+
+        /**
+         * delete names files of other generations and unfinished compaction
+         */
+        private void removeStaleFiles() throws IOException {
+            String prefix = path.getFileName() + ".names-";
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(path.toAbsolutePath().getParent(), prefix + "*")) {
+                for (Path file : files) {
+                    if (!file.getFileName().toString().equals(prefix + generation)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+            Files.deleteIfExists(compactPath());
+        }
+
+        private Path compactPath() {
+            return path.resolveSibling(path.getFileName() + ".compact");
+        }
+
+        private static MappedByteBuffer map(FileChannel channel, long size) throws IOException {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        /**
+         * @return true if record on given position is complete (checksum matches)
+         */
+        private boolean isValid(int position) {
+            byte type = log.get(position + TYPE);
+            if (type != PUT && type != DELETE) {
+                return false;
+            }
+            int nameOffset = log.getInt(position + NAME_OFFSET), nameLength = log.getInt(position + NAME_LENGTH);
+            if (nameOffset < 0 || nameLength < 0 || (long) nameOffset + nameLength > names.capacity()) {
+                return false;
+            }
+            return log.getInt(position + CRC) == checksum(log, position, names, nameOffset, nameLength);
+        }
+
+        private static int checksum(ByteBuffer log, int position, ByteBuffer names, int nameOffset, int nameLength) {
+            CRC32 crc = new CRC32();
+            crc.update(log.duplicate().position(position).limit(position + CRC));
+            crc.update(names.duplicate().position(nameOffset).limit(nameOffset + nameLength));
+            return (int) crc.getValue();
+        }
+
+        Plan[] find(String name, int y, int m, int d) {
+            lock.readLock().lock();
+            try {
+                List<Plan> plans = new ArrayList<>();
+                SortedMap<Integer, IntList> candidates = days;
+                if (y != -1) {
+                    candidates = days.subMap((int) LocalDate.of(y, 1, 1).toEpochDay(), (int) LocalDate.of(y + 1, 1, 1).toEpochDay());
+                }
+                for (Map.Entry<Integer, IntList> entry : candidates.entrySet()) {
+                    if (m != -1 || d != -1) {
+                        LocalDate date = LocalDate.ofEpochDay(entry.getKey());
+                        if ((m != -1 && date.getMonthValue() != m) || (d != -1 && date.getDayOfMonth() != d)) {
+                            continue;
+                        }
+                    }
+                    IntList list = entry.getValue();
+                    for (int i = 0; i < list.size; i++) {
+                        String planName = name(list.data[i]);
+                        if (name.isEmpty() || planName.toLowerCase(Locale.ROOT).contains(name)) {
+                            plans.add(plan(list.data[i], planName));
+                        }
+                    }
+                }
+                return plans.toArray(new Plan[0]);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        Plan[] range(long from, long to) {
+            lock.readLock().lock();
+            try {
+                List<Plan> plans = new ArrayList<>();
+                if (from <= to) {
+                    for (IntList list : days.subMap((int) from, true, (int) to, true).values()) {
+                        for (int i = 0; i < list.size; i++) {
+                            plans.add(plan(list.data[i], name(list.data[i])));
+                        }
+                    }
+                }
+                return plans.toArray(new Plan[0]);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        String[] years() {
+            lock.readLock().lock();
+            try {
+                List<String> years = new ArrayList<>();
+                years.add("ANY");
+                Integer day = days.isEmpty() ? null : days.firstKey();
+                while (day != null) {
+                    int year = LocalDate.ofEpochDay(day).getYear();
+                    years.add(String.valueOf(year));
+                    day = days.ceilingKey((int) LocalDate.of(year + 1, 1, 1).toEpochDay());
+                }
+                return years.toArray(new String[0]);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        PlanSummary summary() {
+            lock.readLock().lock();
+            try {
+                PlanSummary summary = new PlanSummary();
+                for (Map.Entry<Integer, IntList> entry : days.entrySet()) {
+                    LocalDate date = LocalDate.ofEpochDay(entry.getKey());
+                    summary.add(date.getYear(), date.getMonthValue(), entry.getValue().size);
+                }
+                return summary;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int[] dayCounts(YearMonth month) {
+            int first = (int) month.atDay(1).toEpochDay();
+            int[] counts = new int[month.lengthOfMonth()];
+            lock.readLock().lock();
+            try {
+                for (Map.Entry<Integer, IntList> entry : days.subMap(first, first + counts.length).entrySet()) {
+                    counts[entry.getKey() - first] = entry.getValue().size;
+                }
+                return counts;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * @param since token of number of records in log, null for token of current records only
+         * @return every plan put or deleted by records after given number, reset when log was compacted since then
+         */
+        PlanChanges changesSince(PlanChanges.Token since) {
+            lock.readLock().lock();
+            try {
+                String current = PlanChanges.token(generation, records);
+                if (since == null) {
+                    return PlanChanges.none(current);
+                } else if (since.epoch != generation || since.version > records) {
+                    // old versions were removed by compaction (or token is of other file)
+                    return PlanChanges.reset(current);
+                }
+                PlanChanges.Builder changes = new PlanChanges.Builder(generation);
+                // one record more than limit tells that more changes follow
+                int end = (int) Math.min(records, (long) since.version + CHANGES_LIMIT + 1);
+                for (int slot = since.version; slot < end; slot++) {
+                    int position = HEADER + slot * RECORD;
+                    if (log.get(position + TYPE) == PUT) {
+                        changes.changed(plan(slot, name(slot)), slot + 1);
+                    } else {
+                        changes.deleted(log.getInt(position + ID), slot + 1);
+                    }
+                }
+                return changes.build(records, CHANGES_LIMIT);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * append new version of plan
+         *
+         * @param id id of plan, 0 for new plan
+         * @return id of plan
+         */
+        int put(int id, Plan plan) throws ConnectionException {
+            lock.writeLock().lock();
+            try {
+                id = appendPlan(id, plan);
+            } catch (IOException e) {
+                throw new ConnectionException("Failed to write " + path + ": " + e.getMessage());
+            } finally {
+                lock.writeLock().unlock();
+            }
+            compactIfNeeded();
+            return id;
+        }
+
+        /**
+         * append tombstone of plan
+         */
+        void delete(int id) throws ConnectionException {
+            lock.writeLock().lock();
+            try {
+                appendTombstone(id);
+            } catch (IOException e) {
+                throw new ConnectionException("Failed to write " + path + ": " + e.getMessage());
+            } finally {
+                lock.writeLock().unlock();
+            }
+            compactIfNeeded();
+        }
+
+        /**
+         * append all changes, added plans get their id
+         */
+        void apply(List<PlanMutation> mutations) throws ConnectionException {
+            lock.writeLock().lock();
+            try {
+                for (PlanMutation mutation : mutations) {
+                    switch (mutation.getType()) {
+                        case ADD: mutation.getPlan().setId(appendPlan(Math.max(mutation.getPlan().getId(), 0), mutation.getPlan())); break;
+                        case UPDATE: appendPlan(mutation.getId(), mutation.getPlan()); break;
+                        case DELETE: appendTombstone(mutation.getId()); break;
+                    }
+                }
+            } catch (IOException e) {
+                throw new ConnectionException("Failed to write " + path + ": " + e.getMessage());
+            } finally {
+                lock.writeLock().unlock();
+            }
+            compactIfNeeded();
+        }
+
+        /**
+         * (caller holds write lock)
+         * @param id id of plan, 0 for new plan
+         * @return id of plan
+         */
+        private int appendPlan(int id, Plan plan) throws IOException {
+            byte[] name = plan.getName().getBytes(StandardCharsets.UTF_8);
+            int day = (int) LocalDate.of(plan.getYear(), plan.getMonth(), plan.getDay()).toEpochDay();
+            short minute = (short) (plan.getTime().isEmpty() ? -1
+                    : Integer.parseInt(plan.getTime().substring(0, 2)) * 60 + Integer.parseInt(plan.getTime().substring(3, 5)));
+            if (id == 0) {
+                id = Math.max(maxId, reserved) + 1;
+            }
+            append(id, day, minute, PUT, name);
+            return id;
+        }
+
+        /**
+         * @return first of count ids which aren't used by any plan
+         */
+        int reserve(int count) {
+            lock.writeLock().lock();
+            try {
+                int first = Math.max(maxId, reserved) + 1;
+                reserved = first + count - 1;
+                return first;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * (caller holds write lock)
+         */
+        private void appendTombstone(int id) throws IOException {
+            if (slots.get(id) >= 0) {
+                append(id, 0, (short) -1, DELETE, new byte[0]);
+            }
+        }
+
+        /**
+         * write name and record and update index (caller holds write lock)
+         * record is written last, so it is valid only when its name is already written
+         */
+        private void append(int id, int day, short minute, byte type, byte[] name) throws IOException {
+            if (namesEnd + name.length > names.capacity()) {
+                names = map(namesChannel, grow(names.capacity(), namesEnd + name.length));
+            }
+            if (logEnd + 2 * RECORD > log.capacity()) {
+                log = map(logChannel, grow(log.capacity(), logEnd + 2 * RECORD));
+            }
+            names.duplicate().position(namesEnd).put(name);
+
+            int position = logEnd;
+            log.putInt(position + ID, id);
+            log.putInt(position + DAY, day);
+            log.putShort(position + MINUTE, minute);
+            log.put(position + TYPE, type);
+            log.putInt(position + NAME_OFFSET, namesEnd);
+            log.putInt(position + NAME_LENGTH, name.length);
+            log.putInt(position + CRC, checksum(log, position, names, namesEnd, name.length));
+
+            namesEnd += name.length;
+            logEnd += RECORD;
+            int slot = records++;
+            if (records % CHECKPOINT_INTERVAL == 0) {
+                checkpoint();
+            }
+            maxId = Math.max(maxId, id);
+            unlink(id);
+            if (type == PUT) {
+                link(id, slot);
+            }
+        }
+
+        /**
+         * force written records to disk and mark them as verified in header
+         */
+        private void checkpoint() {
+            names.force();
+            log.force();
+            log.putInt(CHECKPOINT, logEnd);
+            log.force();
+        }
+
+        private static long grow(long capacity, long needed) {
+            while (capacity < needed) {
+                capacity *= 2;
+            }
+            return capacity;
+        }
+
+        private void link(int id, int slot) {
+            slots.put(id, slot);
+            days.computeIfAbsent(log.getInt(HEADER + slot * RECORD + DAY), k -> new IntList()).add(slot);
+        }
+
+        private void unlink(int id) {
+            int slot = slots.remove(id);
+            if (slot >= 0) {
+                int day = log.getInt(HEADER + slot * RECORD + DAY);
+                IntList list = days.get(day);
+                list.remove(slot);
+                if (list.size == 0) {
+                    days.remove(day);
+                }
+            }
+        }
+
+        private String name(int slot) {
+            int position = HEADER + slot * RECORD;
+            byte[] bytes = new byte[log.getInt(position + NAME_LENGTH)];
+            names.duplicate().position(log.getInt(position + NAME_OFFSET)).get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private Plan plan(int slot, String name) {
+            int position = HEADER + slot * RECORD;
+            LocalDate date = LocalDate.ofEpochDay(log.getInt(position + DAY));
+            short minute = log.getShort(position + MINUTE);
+            String time = (minute < 0 ? "" : String.format("%02d:%02d:00", minute / 60, minute % 60));
+            return new Plan(log.getInt(position + ID), name, time, date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+        }
+
+        /**
+         * start compaction when most of records are old versions or tombstones
+         */
+        private void compactIfNeeded() {
+            lock.writeLock().lock();
+            try {
+                int dead = records - slots.size();
+                if (compacting || dead < 1024 || dead < slots.size()) {
+                    return;
+                }
+                compacting = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            COMPACTOR.execute(() -> {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    lock.writeLock().lock();
+                    compacting = false;
+                    lock.writeLock().unlock();
+                }
+            });
+        }
+
+        /**
+         * rewrite live records to new files and replace log by them
+         * new log refers to names file of next generation, so files are consistent after crash in any moment
+         * records are copied without lock (written records are never changed), only records appended meanwhile
+         * are copied and files are swapped under write lock
+         */
+        void compact() throws IOException {
+            int copied;
+            int[] live;
+            MappedByteBuffer log, names;
+            lock.readLock().lock();
+            try {
+                copied = records;
+                live = slots.values();
+                log = this.log;
+                names = this.names;
+            } finally {
+                lock.readLock().unlock();
+            }
+            Arrays.sort(live); // in order of log
+
+            long next = generation + 1; // generation is changed only by compaction
+            Path compactLog = compactPath();
+            Path compactNames = namesPath(next);
+            try (FileChannel newLog = FileChannel.open(compactLog, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileChannel newNames = FileChannel.open(compactNames, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                         StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                Output out = new Output(newLog, newNames, HEADER + (long) (live.length + 1) * RECORD);
+                out.log.putInt(0, MAGIC);
+                out.log.putInt(4, VERSION);
+                out.log.putLong(GENERATION, next);
+                for (int slot : live) {
+                    out.copy(log, names, slot);
+                }
+
+                lock.writeLock().lock();
+                try {
+                    // plans changed while live records were copied - their records follow copied ones
+                    for (int slot = copied; slot < records; slot++) {
+                        out.copy(this.log, this.names, slot);
+                    }
+                    out.names.force();
+                    out.log.putInt(CHECKPOINT, out.position);
+                    out.log.force();
+                    logChannel.close();
+                    namesChannel.close();
+                    Files.move(compactLog, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    open();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+
+        /**
+         * files of compacted log being written
+         */
+        private static final class Output {
+            private final FileChannel logChannel, namesChannel;
+            MappedByteBuffer log, names;
+            int position = HEADER, nameEnd = 0;
+
+            Output(FileChannel logChannel, FileChannel namesChannel, long logSize) throws IOException {
+                this.logChannel = logChannel;
+                this.namesChannel = namesChannel;
+                log = map(logChannel, Math.max(INITIAL_CAPACITY, logSize));
+                names = map(namesChannel, INITIAL_CAPACITY);
+            }
+
+            /**
+             * append copy of record of given log (with its name) to compacted log
+             */
+            void copy(ByteBuffer fromLog, ByteBuffer fromNames, int slot) throws IOException {
+                int from = HEADER + slot * RECORD;
+                int nameOffset = fromLog.getInt(from + NAME_OFFSET), nameLength = fromLog.getInt(from + NAME_LENGTH);
+                if (nameEnd + nameLength > names.capacity()) {
+                    names = map(namesChannel, grow(names.capacity(), nameEnd + nameLength));
+                }
+                if (position + RECORD > log.capacity()) {
+                    log = map(logChannel, grow(log.capacity(), position + RECORD));
+                }
+                names.duplicate().position(nameEnd).put(fromNames.duplicate().position(nameOffset).limit(nameOffset + nameLength));
+                log.duplicate().position(position).put(fromLog.duplicate().position(from).limit(from + RECORD));
+                log.putInt(position + NAME_OFFSET, nameEnd);
+                log.putInt(position + CRC, checksum(log, position, names, nameEnd, nameLength));
+                position += RECORD;
+                nameEnd += nameLength;
+            }
+        }
+    }
+
+    /**
+     * growable array of ints
+     */
+    private static final class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        void remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (data[i] == value) {
+                    System.arraycopy(data, i + 1, data, i, size - i - 1);
+                    size--;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * map of int keys to non-negative int values without boxing (open addressing with linear probing)
+     */
+    private static final class IntIntMap {
+        private static final int FREE = Integer.MIN_VALUE;
+        private int[] keys, values;
+        private int size;
+
+        IntIntMap() {
+            clear();
+        }
+
+        void clear() {
+            keys = new int[16];
+            values = new int[16];
+            Arrays.fill(keys, FREE);
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return values of all keys in any order
+         */
+        int[] values() {
+            int[] result = new int[size];
+            int count = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != FREE) {
+                    result[count++] = values[i];
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return value of key or -1 when key isn't present
+         */
+        int get(int key) {
+            int i = find(key);
+            return keys[i] == FREE ? -1 : values[i];
+        }
+
+        void put(int key, int value) {
+            int i = find(key);
+            if (keys[i] == FREE) {
+                if ((size + 1) * 2 > keys.length) {
+                    resize();
+                    i = find(key);
+                }
+                keys[i] = key;
+                size++;
+            }
+            values[i] = value;
+        }
+
+        /**
+         * @return removed value or -1 when key wasn't present
+         */
+        int remove(int key) {
+            int i = find(key);
+            if (keys[i] == FREE) {
+                return -1;
+            }
+            int value = values[i];
+            keys[i] = FREE;
+            size--;
+            // move following entries of the same cluster, so they can be found
+            int mask = keys.length - 1;
+            for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+                int k = keys[j], v = values[j];
+                keys[j] = FREE;
+                int target = find(k);
+                keys[target] = k;
+                values[target] = v;
+            }
+            return value;
+        }
+
+        private int find(int key) {
+            int mask = keys.length - 1;
+            int hash = key * 0x9E3779B9;
+            int i = (hash ^ (hash >>> 16)) & mask;
+            while (keys[i] != FREE && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys, oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            Arrays.fill(keys, FREE);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != FREE) {
+                    int j = find(oldKeys[i]);
+                    keys[j] = oldKeys[i];
+                    values[j] = oldValues[i];
+                }
+            }
+        }
+    }
+}
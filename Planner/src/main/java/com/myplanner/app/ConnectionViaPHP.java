@@ -1,109 +1,204 @@
 package com.myplanner.app;
 
 import org.jetbrains.annotations.NotNull;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.*;
-import java.net.*;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * connection to database by using php scripts on server - sending request to url of php script with given data
+ * all requests go through one shared http client, so connections to server are kept alive and reused
+ * every request has blocking and asynchronous (returning CompletableFuture) variant
  */
 public class ConnectionViaPHP implements Connection {
-    private int maxId; // using for adding new plans (as new id)
-    private String server;
-    private final int timeout = 5000; // timeout to try to connect
+    private static final int TIMEOUT = 5000; // timeout to try to connect
+    // one client for the whole application - reuses connections and uses HTTP/2 when server supports it
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofMillis(TIMEOUT))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    private static final int ID_BLOCK = 50; // ids reserved at once
+    private static final int CHANGES_LIMIT = 1000; // changes in one response of change feed
+    private static final long EPOCH = 0; // database on server has only one log of changes
+
+    private final IdAllocator ids; // ids of new plans
+    private final String server;
+    private final Duration timeout; // time which every request has to complete in
 
     /**
-     * finding max(id) in database
+     * read address of server from configuration (server is not contacted until first request)
      */
     public ConnectionViaPHP() {
-        try (FileInputStream propsInput = new FileInputStream("src/config.properties")){
+        String address = null;
+        try (FileInputStream propsInput = new FileInputStream(Config.path())){
             Properties prop = new Properties();
             prop.load(propsInput);
 
-            server = prop.getProperty("SERVER_ADDRESS");
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        try {
-            String req = server + "getId.php";
-
-            URL url = new URL(req);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(timeout);
-            conn.setReadTimeout(timeout);
-            new Thread(new InterruptThread(conn)).start();
-
-            String[] response = getData(conn);
-            if (response.length > 0) {
-                final JSONObject obj = new JSONObject("{" + response[0]);
-                maxId = obj.getInt("MAX(id)");
-            } else {
-                // database is empty
-                maxId = 0;
-            }
-        } catch (ConnectionException e) {
-            maxId = 0;
+            address = prop.getProperty("SERVER_ADDRESS");
         } catch (IOException e) {
             e.printStackTrace();
         }
+        server = address;
+        timeout = Duration.ofMillis(TIMEOUT);
+        ids = new IdAllocator(this::reserveIds, ID_BLOCK);
     }
 
     /**
-     * read data from url response and parse then by "{"
-     *
-     * @param conn connection to url where runs php script
-     * @return parse data in json format
+     * connection sharing server and ids with given connection but using different timeout
      */
-    private String[] getData(@NotNull HttpURLConnection conn) throws ConnectionException {
-        StringBuilder response = new StringBuilder();
-        try {
-            // controling response of url
-            int responseCode = conn.getResponseCode();
+    private ConnectionViaPHP(@NotNull ConnectionViaPHP base, @NotNull Duration timeout) {
+        server = base.server;
+        ids = base.ids;
+        this.timeout = timeout;
+    }
 
-            InputStream inputStream;
-            if (200 <= responseCode && responseCode <= 299) {
-                inputStream = conn.getInputStream();
-                BufferedReader in = new BufferedReader(new InputStreamReader(inputStream));
+    /**
+     * @param timeout time which requests sent through returned connection have to complete in
+     * @return view of this connection whose requests use given timeout (for example for one call)
+     */
+    public ConnectionViaPHP withTimeout(@NotNull Duration timeout) {
+        return new ConnectionViaPHP(this, timeout);
+    }
 
-                String currentLine;
-                while ((currentLine = in.readLine()) != null)
-                    response.append(currentLine); // get response
+    /**
+     * decoder of body of response
+     */
+    private interface BodyDecoder<T> {
+        T decode(@NotNull InputStream body) throws IOException, ConnectionException;
+    }
+
+    /**
+     * send GET request to php script, response is decoded while it is being received
+     *
+     * @param script  name of php script with query parameters
+     * @param decoder decoder of body of response
+     * @return future decoded response, completed exceptionally with ConnectionException when request failed
+     */
+    private <T> CompletableFuture<T> send(@NotNull String script, @NotNull BodyDecoder<T> decoder) {
+        return send(script, null, decoder);
+    }
 
-                in.close();
+    /**
+     * send request to php script, response is decoded while it is being received
+     *
+     * @param script  name of php script with query parameters
+     * @param json    body of POST request, null for GET request
+     * @param decoder decoder of body of response
+     * @return future decoded response, completed exceptionally with ConnectionException when request failed
+     */
+    private <T> CompletableFuture<T> send(@NotNull String script, String json, @NotNull BodyDecoder<T> decoder) {
+        HttpRequest request;
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(server + script)).timeout(timeout);
+            if (json == null) {
+                builder.GET();
             } else {
-                throw new ConnectionException("Failed to connect to server");
+                builder.header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8));
             }
-        } catch (IOException ex) {
-            throw  new ConnectionException(ex.getMessage());
+            request = builder.build();
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return CompletableFuture.failedFuture(new ConnectionException("Invalid address of server: " + server));
         }
 
-        String[] res = response.toString().split("\\{");
-        res = Arrays.copyOfRange(res, 1, res.length);
+        long started = System.nanoTime();
+        CompletableFuture<HttpResponse<InputStream>> response = CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        CompletableFuture<T> result = response.handle((res, ex) -> {
+            if (ex != null) {
+                throw new CompletionException(toConnectionException(ex));
+            }
+            try (InputStream body = res.body()) {
+                // controling response of url
+                if (res.statusCode() < 200 || 299 < res.statusCode()) {
+                    throw new ConnectionException("Failed to connect to server");
+                }
+                return decoder.decode(body);
+            } catch (IOException e) {
+                // http client closes connection when its own timeout passes, also while body is being read
+                boolean late = System.nanoTime() - started >= timeout.toNanos();
+                throw new CompletionException(late ? timedOut() : toConnectionException(e));
+            } catch (ConnectionException e) {
+                throw new CompletionException(e);
+            }
+        });
+        // deadline covers also reading of body - cancelled request stops receiving it
+        result.whenComplete((res, ex) -> {
+            if (result.isCancelled()) {
+                response.cancel(true);
+                response.thenAccept(r -> closeQuietly(r.body()));
+            }
+        });
+        return DeadlineScheduler.shared().withDeadline(result, timeout.toMillis());
+    }
 
-        return res;
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException ignored) {
+        }
     }
 
     /**
-     * @param conn connection to url where runs php script
-     * @return list of plan given from database
+     * wait for result of asynchronous request
+     *
+     * @param future running request
+     * @return result of request
      */
-    private List<Plan> getPlansList(@NotNull HttpURLConnection conn) throws ConnectionException {
-        String[] response = getData(conn);
-        List<Plan> plans = new ArrayList<>();
+    private <T> T await(@NotNull CompletableFuture<T> future) throws ConnectionException {
+        // newer search of the same view cancels request (and its response) instead of waiting for it
+        BackgroundTasks.cancelWithTask(future);
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            throw toConnectionException(e);
+        }
+    }
 
-        for (String line : response) {
-            final JSONObject obj = new JSONObject("{" + line.substring(0, line.length() - 1));
-            plans.add(new Plan(obj.getInt("id"), obj.getString("name"),
-                    (obj.isNull("time") ? "" : (String) obj.get("time")), obj.getInt("year"),
-                    obj.getInt("month"), obj.getInt("day")));
+    /**
+     * @param ex exception thrown by request (possibly wrapped)
+     * @return exception which should be given to user of connection
+     */
+    private ConnectionException toConnectionException(Throwable ex) {
+        while (ex instanceof CompletionException && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        if (ex instanceof ConnectionException) {
+            return (ConnectionException) ex;
+        } else if (ex instanceof CancellationException || ex instanceof HttpTimeoutException) {
+            return timedOut();
         }
+        return new ConnectionException(ex.getMessage() == null ? ex.toString() : ex.getMessage());
+    }
+
+    private ConnectionTimeoutException timedOut() {
+        return new ConnectionTimeoutException("Request to server timed out after " + timeout.toMillis() + " ms");
+    }
 
-        return plans;
+    /**
+     * @param body response of php script
+     * @return plans given from database
+     */
+    private static Plan[] decodePlans(@NotNull InputStream body) throws IOException, ConnectionException {
+        List<Plan> plans = new ArrayList<>();
+        PlanDecoder.decodePlans(body, plans::add);
+        return plans.toArray(new Plan[0]);
     }
 
     /**
@@ -116,23 +211,73 @@ public class ConnectionViaPHP implements Connection {
      * @return plans which correspond to request (given parameters)
      */
     public Plan[] getPlans(@NotNull String name, int year, int month, int day) throws ConnectionException {
-        List<Plan> plans;
-        try {
-            String n = URLEncoder.encode(name, StandardCharsets.UTF_8.name());
-            String req = server + "getData.php?name=" + n + "&year=" + year + "&month=" + month + "&day=" + day;
+        return await(getPlansAsync(name, year, month, day));
+    }
 
-            URL url = new URL(req);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setConnectTimeout(timeout);
-            conn.setReadTimeout(timeout);
-            new Thread(new InterruptThread(conn)).start();
-            conn.setRequestMethod("GET");
+    /**
+     * asynchronous variant of {@link #getPlans(String, int, int, int)}
+     */
+    public CompletableFuture<Plan[]> getPlansAsync(@NotNull String name, int year, int month, int day) {
+        String n = URLEncoder.encode(name, StandardCharsets.UTF_8);
+        return send("getData.php?name=" + n + "&year=" + year + "&month=" + month + "&day=" + day,
+                ConnectionViaPHP::decodePlans);
+    }
 
-            plans = getPlansList(conn);
-        } catch (IOException e) {
-            throw new ConnectionException(e.getMessage());
+    /**
+     * sent request to php script with given parameters, response is decoded directly to batch
+     *
+     * @param name  part of name of request plans
+     * @param year  year of request plans
+     * @param month month of request plans
+     * @param day   day of request plans
+     * @return plans which correspond to request sorted by date and time
+     */
+    public PlanBatch getPlanBatch(@NotNull String name, int year, int month, int day) throws ConnectionException {
+        return await(getPlanBatchAsync(name, year, month, day));
+    }
+
+    /**
+     * asynchronous variant of {@link #getPlanBatch(String, int, int, int)}
+     */
+    public CompletableFuture<PlanBatch> getPlanBatchAsync(@NotNull String name, int year, int month, int day) {
+        String n = URLEncoder.encode(name, StandardCharsets.UTF_8);
+        return send("getData.php?name=" + n + "&year=" + year + "&month=" + month + "&day=" + day,
+                PlanDecoder::decodeBatch);
+    }
+
+    /**
+     * sent request for one page of search to php script (page follows key of last plan of previous page)
+     *
+     * @param name     part of name of request plans
+     * @param year     year of request plans
+     * @param month    month of request plans
+     * @param day      day of request plans
+     * @param pageSize maximal number of plans in page
+     * @param after    continuation token of previous page, null for first page
+     * @return plans of page with token of next page
+     */
+    public PlanPage getPlanPage(@NotNull String name, int year, int month, int day, int pageSize, String after)
+            throws ConnectionException {
+        return await(getPlanPageAsync(name, year, month, day, pageSize, after));
+    }
+
+    /**
+     * asynchronous variant of {@link #getPlanPage(String, int, int, int, int, String)}
+     */
+    public CompletableFuture<PlanPage> getPlanPageAsync(@NotNull String name, int year, int month, int day,
+                                                        int pageSize, String after) {
+        String query = "getPage.php?name=" + URLEncoder.encode(name, StandardCharsets.UTF_8)
+                + "&year=" + year + "&month=" + month + "&day=" + day + "&limit=" + (pageSize + 1);
+        if (after != null) {
+            try {
+                PlanPage.Key key = PlanPage.Key.of(after);
+                query += "&after=" + key.year + "," + key.month + "," + key.day + "," + key.minuteOfDay + "," + key.id;
+            } catch (ConnectionException e) {
+                return CompletableFuture.failedFuture(e);
+            }
         }
-        return plans.toArray(new Plan[0]);
+        // one plan more than page size tells if there is next page
+        return send(query, body -> PlanPage.of(PlanDecoder.decodeBatch(body), pageSize));
     }
 
     /**
@@ -144,24 +289,50 @@ public class ConnectionViaPHP implements Connection {
      * @return plans that match given date
      */
     public Plan[] getPlansOnDay(int y, int m, int d) throws ConnectionException {
-        List<Plan> plans = new ArrayList<>();
-        try {
-            String req = server + "getData.php?year=" + y + "&month=" + m + "&day=" + d;
-
-            URL url = new URL(req);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(timeout);
-            conn.setReadTimeout(timeout);
-            new Thread(new InterruptThread(conn)).start();
-
-            plans = getPlansList(conn);
-        } catch (UnknownHostException ex) {
-            throw  new ConnectionException(ex.getMessage());
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return plans.toArray(new Plan[0]);
+        return await(getPlansOnDayAsync(y, m, d));
+    }
+
+    /**
+     * asynchronous variant of {@link #getPlansOnDay(int, int, int)}
+     */
+    public CompletableFuture<Plan[]> getPlansOnDayAsync(int y, int m, int d) {
+        return send("getData.php?year=" + y + "&month=" + m + "&day=" + d, ConnectionViaPHP::decodePlans);
+    }
+
+    /**
+     * sent request to php script with given range of dates
+     *
+     * @param from first day of range
+     * @param to   last day of range
+     * @return plans in range sorted by date and time
+     */
+    public Plan[] getPlansInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        return await(getPlansInRangeAsync(from, to));
+    }
+
+    /**
+     * asynchronous variant of {@link #getPlansInRange(LocalDate, LocalDate)}
+     */
+    public CompletableFuture<Plan[]> getPlansInRangeAsync(@NotNull LocalDate from, @NotNull LocalDate to) {
+        return send("getRange.php?from=" + from + "&to=" + to, ConnectionViaPHP::decodePlans);
+    }
+
+    /**
+     * sent request to php script with given range of dates, response is decoded directly to batch
+     *
+     * @param from first day of range
+     * @param to   last day of range
+     * @return plans in range sorted by date and time
+     */
+    public PlanBatch getPlanBatchInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        return await(getPlanBatchInRangeAsync(from, to));
+    }
+
+    /**
+     * asynchronous variant of {@link #getPlanBatchInRange(LocalDate, LocalDate)}
+     */
+    public CompletableFuture<PlanBatch> getPlanBatchInRangeAsync(@NotNull LocalDate from, @NotNull LocalDate to) {
+        return send("getRange.php?from=" + from + "&to=" + to, PlanDecoder::decodeBatch);
     }
 
     /**
@@ -170,43 +341,91 @@ public class ConnectionViaPHP implements Connection {
      * @return array of sort years from database
      */
     public String[] getYears() throws ConnectionException {
-        List<String> years = new ArrayList<>();
-        try {
-            String req = server + "getYears.php";
-
-            URL url = new URL(req);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(timeout);
-            conn.setReadTimeout(timeout);
-            new Thread(new InterruptThread(conn)).start();
-
-            // parse given json
-            String[] response = getData(conn);
-            for (String line : response) {
-                final JSONObject obj = new JSONObject("{" + line.substring(0, line.length() - 1));
-                String year = String.valueOf(obj.getInt("year"));
-                if (!years.contains(year)) {
-                    years.add(year);
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        return await(getYearsAsync());
+    }
+
+    /**
+     * asynchronous variant of {@link #getYears()}
+     */
+    public CompletableFuture<String[]> getYearsAsync() {
+        return send("getYears.php", body -> {
+            // script returns distinct years sorted
+            List<String> years = new ArrayList<>();
+            years.add("ANY");
+            PlanDecoder.decodeInts(body, "year", year -> years.add(String.valueOf(year)));
+            return years.toArray(new String[0]);
+        });
+    }
+
+    /**
+     * sent request to php script which counts plans in every month
+     *
+     * @return summary of plans in database
+     */
+    public PlanSummary getSummary() throws ConnectionException {
+        return await(getSummaryAsync());
+    }
+
+    /**
+     * asynchronous variant of {@link #getSummary()}
+     */
+    public CompletableFuture<PlanSummary> getSummaryAsync() {
+        return send("getSummary.php", PlanDecoder::decodeSummary);
+    }
 
-        // sorting data
-        List<Integer> intList = new ArrayList<>();
-        for (String s : years) {
-            intList.add(Integer.valueOf(s));
+    /**
+     * sent request to php script which counts plans in every day of month
+     *
+     * @param year  year of month
+     * @param month month (1 - 12)
+     * @return numbers of plans in days of month
+     */
+    public int[] getDayCounts(int year, int month) throws ConnectionException {
+        return await(getDayCountsAsync(year, month));
+    }
+
+    /**
+     * asynchronous variant of {@link #getDayCounts(int, int)}
+     */
+    public CompletableFuture<int[]> getDayCountsAsync(int year, int month) {
+        int length = YearMonth.of(year, month).lengthOfMonth();
+        return send("getDayCounts.php?year=" + year + "&month=" + month, body -> PlanDecoder.decodeDayCounts(body, length));
+    }
+
+    /**
+     * sent request to php script which reads changes of plans after given version
+     *
+     * @param since token of version given by previous changes, null for token of current version only
+     * @return changes of plans after given version
+     */
+    public PlanChanges getChangesSince(String since) throws ConnectionException {
+        return await(getChangesSinceAsync(since));
+    }
+
+    /**
+     * asynchronous variant of {@link #getChangesSince(String)}
+     */
+    public CompletableFuture<PlanChanges> getChangesSinceAsync(String since) {
+        if (since == null) {
+            return send("getChanges.php", body -> PlanDecoder.decodeChanges(body, EPOCH, 0));
+        }
+        PlanChanges.Token token;
+        try {
+            token = PlanChanges.Token.of(since);
+        } catch (ConnectionException e) {
+            return CompletableFuture.failedFuture(e);
         }
-        Collections.sort(intList);
-        years.clear();
-        years.add("ANY");
-        for (int i : intList) {
-            years.add(String.valueOf(i));
+        if (token.epoch != EPOCH) {
+            // token of other connection
+            return getChangesSinceAsync(null).thenApply(current -> PlanChanges.reset(current.getToken()));
         }
-
-        return years.toArray(new String[0]);
+        // one change more than limit tells if there are more changes
+        return send("getChanges.php?since=" + token.version + "&limit=" + (CHANGES_LIMIT + 1), body -> {
+            PlanChanges changes = PlanDecoder.decodeChanges(body, EPOCH, CHANGES_LIMIT);
+            // token newer than database on server - database was created again
+            boolean unknown = !changes.hasMore() && PlanChanges.Token.of(changes.getToken()).version < token.version;
+            return (unknown ? PlanChanges.reset(changes.getToken()) : changes);
+        });
     }
 
     /**
@@ -215,25 +434,17 @@ public class ConnectionViaPHP implements Connection {
      * @param item new set plan
      */
     public void addNew(@NotNull Plan item) throws ConnectionException {
-        try {
-            String name = URLEncoder.encode(item.getName(), StandardCharsets.UTF_8.name());
-            String req = server + "insert.php?id=" + ++maxId
-                    + "&name=" + name + "&year=" + item.getYear() + "&month=" + item.getMonth()
-                    + "&day=" + item.getDay() + "&time=" + item.getTime();
-
-            URL url = new URL(req);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(timeout);
-            conn.setReadTimeout(timeout);
-            new Thread(new InterruptThread(conn)).start();
-
-            conn.getResponseMessage();
-        } catch (UnknownHostException ex) {
-            throw  new ConnectionException(ex.getMessage());
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        await(addNewAsync(item));
+    }
+
+    /**
+     * asynchronous variant of {@link #addNew(Plan)}
+     */
+    public CompletableFuture<Void> addNewAsync(@NotNull Plan item) {
+        String name = URLEncoder.encode(item.getName(), StandardCharsets.UTF_8);
+        return assignId(item).thenCompose(ignored -> send("insert.php?id=" + item.getId()
+                + "&name=" + name + "&year=" + item.getYear() + "&month=" + item.getMonth()
+                + "&day=" + item.getDay() + "&time=" + item.getTime(), body -> null));
     }
 
     /**
@@ -242,25 +453,17 @@ public class ConnectionViaPHP implements Connection {
      * @param item plan that was changed (must be update in database)
      */
     public void updatePlan(@NotNull Plan item) throws ConnectionException {
-        try {
-            String name = URLEncoder.encode(item.getName(), StandardCharsets.UTF_8.name());
-            String req = server + "update.php?id=" + item.getId()
-                    + "&name=" + name + "&year=" + item.getYear() + "&month=" + item.getMonth()
-                    + "&day=" + item.getDay() + "&time=" + item.getTime();
-
-            URL url = new URL(req);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(timeout);
-            conn.setReadTimeout(timeout);
-            new Thread(new InterruptThread(conn)).start();
-
-            conn.getResponseMessage();
-        } catch (UnknownHostException ex) {
-            throw  new ConnectionException(ex.getMessage());
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        await(updatePlanAsync(item));
+    }
+
+    /**
+     * asynchronous variant of {@link #updatePlan(Plan)}
+     */
+    public CompletableFuture<Void> updatePlanAsync(@NotNull Plan item) {
+        String name = URLEncoder.encode(item.getName(), StandardCharsets.UTF_8);
+        return send("update.php?id=" + item.getId()
+                + "&name=" + name + "&year=" + item.getYear() + "&month=" + item.getMonth()
+                + "&day=" + item.getDay() + "&time=" + item.getTime(), body -> null);
     }
 
     /**
@@ -269,39 +472,96 @@ public class ConnectionViaPHP implements Connection {
      * @param idPlan plan which should be delete
      */
     public void deletePlan(int idPlan) throws ConnectionException {
-        try {
-            URL url = new URL(server + "deldata.php?id=" + idPlan);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(timeout);
-            conn.setReadTimeout(timeout);
-            new Thread(new InterruptThread(conn)).start();
-
-            conn.getResponseMessage();
-        } catch (UnknownHostException ex) {
-            throw new ConnectionException(ex.getMessage());
-        } catch (IOException e) {
-            e.printStackTrace();
+        await(deletePlanAsync(idPlan));
+    }
+
+    /**
+     * asynchronous variant of {@link #deletePlan(int)}
+     */
+    public CompletableFuture<Void> deletePlanAsync(int idPlan) {
+        return send("deldata.php?id=" + idPlan, body -> null);
+    }
+
+    /**
+     * send all changes to php script in one request (script applies them in one transaction)
+     *
+     * @param mutations adding, updating and deleting of plans
+     */
+    public void applyBatch(@NotNull List<PlanMutation> mutations) throws ConnectionException {
+        await(applyBatchAsync(mutations));
+    }
+
+    /**
+     * asynchronous variant of {@link #applyBatch(List)}
+     */
+    public CompletableFuture<Void> applyBatchAsync(@NotNull List<PlanMutation> mutations) {
+        List<CompletableFuture<Void>> assigned = new ArrayList<>();
+        for (PlanMutation mutation : mutations) {
+            if (mutation.getType() == PlanMutation.Type.ADD) {
+                assigned.add(assignId(mutation.getPlan()));
+            }
         }
+        return CompletableFuture.allOf(assigned.toArray(new CompletableFuture<?>[0]))
+                .thenCompose(ignored -> send("batch.php", encode(mutations), body -> {
+                    PlanDecoder.decodeStatus(body);
+                    return null;
+                }));
     }
-}
 
-/**
- * thread that wait for 5000 milliseconds and then close connection
- */
-class InterruptThread implements Runnable {
+    /**
+     * @return json array of changes sent to batch.php (new plans have ids already)
+     */
+    private static String encode(List<PlanMutation> mutations) {
+        JSONArray changes = new JSONArray();
+        for (PlanMutation mutation : mutations) {
+            JSONObject change = new JSONObject();
+            change.put("type", mutation.getType().name().toLowerCase(Locale.ROOT));
+            change.put("id", mutation.getType() == PlanMutation.Type.ADD ? mutation.getPlan().getId() : mutation.getId());
+            Plan plan = mutation.getPlan();
+            if (plan != null) {
+                change.put("name", plan.getName());
+                change.put("year", plan.getYear());
+                change.put("month", plan.getMonth());
+                change.put("day", plan.getDay());
+                change.put("time", plan.getTime());
+            }
+            changes.put(change);
+        }
+        return changes.toString();
+    }
 
-    HttpURLConnection con;
-    public InterruptThread(HttpURLConnection con) {
-        this.con = con;
+    /**
+     * reserve block of ids by php script (script moves counter of ids in database atomically)
+     *
+     * @param count number of reserved ids
+     * @return first of reserved ids
+     */
+    public int reserveIds(int count) throws ConnectionException {
+        return await(reserveIdsAsync(count));
     }
 
-    public void run() {
-        try {
-            Thread.sleep(5000);
-        } catch (InterruptedException ignored) {
+    /**
+     * asynchronous variant of {@link #reserveIds(int)}
+     */
+    public CompletableFuture<Integer> reserveIdsAsync(int count) {
+        // script answers with object {"first": n}
+        return send("reserveIds.php?count=" + count, body -> {
+            int first = PlanDecoder.decodeInt(body, "first", -1);
+            if (first < 0) {
+                throw new ConnectionException("Failed to reserve ids for new plans");
+            }
+            return first;
+        });
+    }
 
+    /**
+     * give id to new plan which doesn't have it yet
+     * (completes later only when all reserved ids were used - thread of caller never waits for server)
+     */
+    private CompletableFuture<Void> assignId(Plan item) {
+        if (item.getId() > 0) {
+            return CompletableFuture.completedFuture(null);
         }
-        con.disconnect();
+        return ids.nextAsync().thenAccept(item::setId);
     }
-}
\ No newline at end of file
+}
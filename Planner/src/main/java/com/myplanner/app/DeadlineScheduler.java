@@ -0,0 +1,85 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * one timer thread shared by all requests - cancels request when its deadline passes
+ * deadline is removed from timer as soon as request completes, so finished requests cost nothing
+ * shared scheduler reports its deadlines over JMX (com.myplanner.app:type=Deadlines)
+ */
+class DeadlineScheduler implements DeadlineStatsMXBean {
+    private static final DeadlineScheduler SHARED = register(new DeadlineScheduler());
+
+    private final ScheduledThreadPoolExecutor timer;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder fired = new LongAdder();
+
+    DeadlineScheduler() {
+        timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "request-deadlines");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.setRemoveOnCancelPolicy(true); // cancelled deadlines don't wait in queue until they would fire
+    }
+
+    private static DeadlineScheduler register(DeadlineScheduler scheduler) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(scheduler,
+                    new ObjectName("com.myplanner.app:type=Deadlines"));
+        } catch (JMException e) {
+            e.printStackTrace(); // deadlines are only not visible over JMX
+        }
+        return scheduler;
+    }
+
+    /**
+     * @return scheduler used by connections to server
+     */
+    static DeadlineScheduler shared() {
+        return SHARED;
+    }
+
+    /**
+     * cancel request if it doesn't complete in given time
+     *
+     * @param request       running request
+     * @param timeoutMillis time (in milliseconds) which request has to complete
+     * @return given request
+     */
+    <T> CompletableFuture<T> withDeadline(@NotNull CompletableFuture<T> request, long timeoutMillis) {
+        pending.incrementAndGet();
+        ScheduledFuture<?> deadline = timer.schedule(() -> {
+            if (request.cancel(true)) {
+                fired.increment();
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        // runs exactly once - when request completes by itself or is cancelled by its deadline
+        request.whenComplete((result, ex) -> {
+            deadline.cancel(false);
+            pending.decrementAndGet();
+        });
+        return request;
+    }
+
+    @Override
+    public int getPending() {
+        return pending.get();
+    }
+
+    @Override
+    public long getFired() {
+        return fired.sum();
+    }
+}
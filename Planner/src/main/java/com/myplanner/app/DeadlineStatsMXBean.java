@@ -0,0 +1,17 @@
+package com.myplanner.app;
+
+/**
+ * deadlines of requests to server, as seen over JMX (see {@link DeadlineScheduler})
+ * interface has to be public, otherwise JMX refuses it
+ */
+public interface DeadlineStatsMXBean {
+    /**
+     * @return number of deadlines which are waiting (their requests are still running)
+     */
+    int getPending();
+
+    /**
+     * @return number of requests which were cancelled because of passed deadline
+     */
+    long getFired();
+}
@@ -0,0 +1,111 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * connection which is created in background (reading configuration, loading http client, ...)
+ * window doesn't wait for it - requests wait until connection is ready
+ */
+class DeferredConnection implements Connection {
+    private final CompletableFuture<Connection> target;
+
+    /**
+     * start creating connection to given backend
+     */
+    DeferredConnection(@NotNull Backend backend) {
+        target = CompletableFuture.supplyAsync(backend::connect);
+    }
+
+    /**
+     * @return created connection, waits while it is being created
+     */
+    private Connection target() throws ConnectionException {
+        try {
+            return target.join();
+        } catch (CompletionException e) {
+            Throwable cause = (e.getCause() != null ? e.getCause() : e);
+            throw new ConnectionException("Failed to create connection: " + cause);
+        }
+    }
+
+    @Override
+    public Plan[] getPlans(@NotNull String name, int year, int month, int day) throws ConnectionException {
+        return target().getPlans(name, year, month, day);
+    }
+
+    @Override
+    public Plan[] getPlansOnDay(int y, int m, int d) throws ConnectionException {
+        return target().getPlansOnDay(y, m, d);
+    }
+
+    @Override
+    public Plan[] getPlansInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        return target().getPlansInRange(from, to);
+    }
+
+    @Override
+    public PlanBatch getPlanBatch(@NotNull String name, int year, int month, int day) throws ConnectionException {
+        return target().getPlanBatch(name, year, month, day);
+    }
+
+    @Override
+    public PlanPage getPlanPage(@NotNull String name, int year, int month, int day, int pageSize, String after)
+            throws ConnectionException {
+        return target().getPlanPage(name, year, month, day, pageSize, after);
+    }
+
+    @Override
+    public PlanBatch getPlanBatchInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        return target().getPlanBatchInRange(from, to);
+    }
+
+    @Override
+    public String[] getYears() throws ConnectionException {
+        return target().getYears();
+    }
+
+    @Override
+    public PlanSummary getSummary() throws ConnectionException {
+        return target().getSummary();
+    }
+
+    @Override
+    public int[] getDayCounts(int year, int month) throws ConnectionException {
+        return target().getDayCounts(year, month);
+    }
+
+    @Override
+    public PlanChanges getChangesSince(String since) throws ConnectionException {
+        return target().getChangesSince(since);
+    }
+
+    @Override
+    public void addNew(@NotNull Plan item) throws ConnectionException {
+        target().addNew(item);
+    }
+
+    @Override
+    public void updatePlan(@NotNull Plan item) throws ConnectionException {
+        target().updatePlan(item);
+    }
+
+    @Override
+    public void deletePlan(int idPlan) throws ConnectionException {
+        target().deletePlan(idPlan);
+    }
+
+    @Override
+    public void applyBatch(@NotNull List<PlanMutation> mutations) throws ConnectionException {
+        target().applyBatch(mutations);
+    }
+
+    @Override
+    public int reserveIds(int count) throws ConnectionException {
+        return target().reserveIds(count);
+    }
+}
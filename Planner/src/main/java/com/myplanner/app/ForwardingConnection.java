@@ -0,0 +1,97 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * connection which passes every request to other connection
+ * base of connections which add some behaviour (caching, measuring, ...) to existing connection
+ */
+abstract class ForwardingConnection implements Connection {
+    protected final Connection delegate;
+
+    /**
+     * @param delegate connection which will handle requests
+     */
+    ForwardingConnection(@NotNull Connection delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Plan[] getPlans(@NotNull String name, int year, int month, int day) throws ConnectionException {
+        return delegate.getPlans(name, year, month, day);
+    }
+
+    @Override
+    public Plan[] getPlansOnDay(int y, int m, int d) throws ConnectionException {
+        return delegate.getPlansOnDay(y, m, d);
+    }
+
+    @Override
+    public Plan[] getPlansInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        return delegate.getPlansInRange(from, to);
+    }
+
+    @Override
+    public PlanBatch getPlanBatch(@NotNull String name, int year, int month, int day) throws ConnectionException {
+        return delegate.getPlanBatch(name, year, month, day);
+    }
+
+    @Override
+    public PlanPage getPlanPage(@NotNull String name, int year, int month, int day, int pageSize, String after)
+            throws ConnectionException {
+        return delegate.getPlanPage(name, year, month, day, pageSize, after);
+    }
+
+    @Override
+    public PlanBatch getPlanBatchInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        return delegate.getPlanBatchInRange(from, to);
+    }
+
+    @Override
+    public String[] getYears() throws ConnectionException {
+        return delegate.getYears();
+    }
+
+    @Override
+    public PlanSummary getSummary() throws ConnectionException {
+        return delegate.getSummary();
+    }
+
+    @Override
+    public int[] getDayCounts(int year, int month) throws ConnectionException {
+        return delegate.getDayCounts(year, month);
+    }
+
+    @Override
+    public PlanChanges getChangesSince(String since) throws ConnectionException {
+        return delegate.getChangesSince(since);
+    }
+
+    @Override
+    public void addNew(@NotNull Plan item) throws ConnectionException {
+        delegate.addNew(item);
+    }
+
+    @Override
+    public void updatePlan(@NotNull Plan item) throws ConnectionException {
+        delegate.updatePlan(item);
+    }
+
+    @Override
+    public void deletePlan(int idPlan) throws ConnectionException {
+        delegate.deletePlan(idPlan);
+    }
+
+    @Override
+    public void applyBatch(@NotNull List<PlanMutation> mutations) throws ConnectionException {
+        delegate.applyBatch(mutations);
+    }
+
+    @Override
+    public int reserveIds(int count) throws ConnectionException {
+        return delegate.reserveIds(count);
+    }
+}
@@ -0,0 +1,175 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * gives ids to new plans from blocks of ids reserved by connection (hi/lo allocation)
+ * - block is reserved atomically by one request, so clients running at the same time never get the same id
+ * - ids of block are given out locally without any request
+ * - next block is reserved in background when current block is running out
+ * - {@link #nextAsync()} never waits for reservation on thread of caller
+ */
+class IdAllocator {
+    private static final ExecutorService PREFETCHER = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "id-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Reservation source;
+    private final int blockSize;
+    private final int lowWater; // next block is reserved when this many ids are left
+
+    private volatile Block current; // null before first block is reserved
+    private CompletableFuture<Block> prefetched; // guarded by this
+
+    /**
+     * reserving of ids (for example {@link Connection#reserveIds(int)})
+     */
+    interface Reservation {
+        /**
+         * @return first of count reserved ids
+         */
+        int reserve(int count) throws ConnectionException;
+    }
+
+    /**
+     * ids [next, end) of one reserved block
+     */
+    private static final class Block {
+        final AtomicLong next;
+        final long end;
+
+        Block(long first, long end) {
+            this.next = new AtomicLong(first);
+            this.end = end;
+        }
+    }
+
+    /**
+     * @param source    reserving of blocks
+     * @param blockSize number of ids reserved at once
+     */
+    IdAllocator(@NotNull Reservation source, int blockSize) {
+        this.source = source;
+        this.blockSize = blockSize;
+        this.lowWater = Math.max(1, blockSize / 4);
+    }
+
+    /**
+     * @return unused id, waits for reservation of block only when all reserved ids were used
+     */
+    int next() throws ConnectionException {
+        while (true) {
+            Block block = current;
+            if (block != null) {
+                long id = block.next.getAndIncrement();
+                if (id < block.end) {
+                    if (block.end - id == lowWater) {
+                        prefetch();
+                    }
+                    return (int) id;
+                }
+            }
+            advance(block);
+        }
+    }
+
+    /**
+     * asynchronous variant of {@link #next()}, completes at once when reserved ids aren't used up,
+     * otherwise when next block is reserved in background
+     */
+    CompletableFuture<Integer> nextAsync() {
+        Block block = current;
+        if (block != null) {
+            long id = block.next.getAndIncrement();
+            if (id < block.end) {
+                if (block.end - id == lowWater) {
+                    prefetch();
+                }
+                return CompletableFuture.completedFuture((int) id);
+            }
+        }
+        return advanceAsync(block, true).thenCompose(ignored -> nextAsync());
+    }
+
+    /**
+     * reserve next block in background if it isn't reserved yet
+     */
+    synchronized void prefetch() {
+        if (prefetched == null) {
+            prefetched = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return reserve();
+                } catch (ConnectionException e) {
+                    throw new CompletionException(e);
+                }
+            }, PREFETCHER);
+        }
+    }
+
+    /**
+     * replace exhausted block by prefetched block or by block reserved now
+     */
+    private synchronized void advance(Block exhausted) throws ConnectionException {
+        if (current != exhausted) {
+            return; // other thread already replaced it
+        }
+        Block block = null;
+        if (prefetched != null) {
+            try {
+                block = prefetched.join();
+            } catch (CompletionException e) {
+                // reserving in background failed - try it once more now
+            }
+            prefetched = null;
+        }
+        current = (block != null ? block : reserve());
+    }
+
+    /**
+     * asynchronous variant of {@link #advance(Block)} - exhausted block is replaced when prefetched block is reserved
+     *
+     * @param retry whether block is reserved once more when reserving which started earlier failed
+     */
+    private CompletableFuture<Void> advanceAsync(Block exhausted, boolean retry) {
+        CompletableFuture<Block> next;
+        boolean again; // reserving which started earlier may be tried once more
+        synchronized (this) {
+            if (current != exhausted) {
+                return CompletableFuture.completedFuture(null); // other thread already replaced it
+            }
+            again = retry && prefetched != null;
+            prefetch();
+            next = prefetched;
+        }
+        return next.handle((block, failure) -> {
+            synchronized (this) {
+                if (prefetched == next) {
+                    prefetched = null;
+                }
+                if (block != null && current == exhausted) {
+                    current = block;
+                }
+            }
+            return failure;
+        }).thenCompose(failure -> {
+            if (failure == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            // reserving in background failed - try it once more now
+            return again ? advanceAsync(exhausted, false) : CompletableFuture.failedFuture(failure);
+        });
+    }
+
+    private Block reserve() throws ConnectionException {
+        int first = source.reserve(blockSize);
+        return new Block(first, (long) first + blockSize);
+    }
+}
@@ -0,0 +1,476 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * connection which loads all plans once and answers queries from in-memory indexes
+ * - sorted index of days (epoch day) for filtering by year, month and day (including "ANY" = -1)
+ * - trigram index of names for searching by part of name (case insensitive like LOCATE in database)
+ * adding, updating and deleting is sent to given connection and applied to indexes,
+ * changes of other clients are applied when change feed is read through this connection
+ * used when system property "planner.index" is true (see {@link MyPlanner})
+ */
+class IndexedConnection extends ForwardingConnection {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean loaded; // guarded by lock
+
+    private final Map<Integer, Row> byId = new HashMap<>();
+    private final TreeMap<Long, List<Row>> byDay = new TreeMap<>();
+    private final Map<Long, Set<Row>> byTrigram = new HashMap<>();
+
+    /**
+     * copy of plan kept in indexes (plans given to user can be changed by user)
+     */
+    private static final class Row {
+        final int id;
+        final String name, nameKey, time; // nameKey is lower case name
+        final long day; // epoch day
+        final int year, month, dayOfMonth;
+
+        Row(Plan plan) {
+            id = plan.getId();
+            name = plan.getName();
+            nameKey = plan.getName().toLowerCase(Locale.ROOT);
+            time = plan.getTime();
+            year = plan.getYear();
+            month = plan.getMonth();
+            dayOfMonth = plan.getDay();
+            day = LocalDate.of(year, month, dayOfMonth).toEpochDay();
+        }
+
+        /**
+         * copy of row with id given to plan when it was added
+         */
+        private Row(Row row, int id) {
+            this.id = id;
+            name = row.name;
+            nameKey = row.nameKey;
+            time = row.time;
+            year = row.year;
+            month = row.month;
+            dayOfMonth = row.dayOfMonth;
+            day = row.day;
+        }
+
+        Row withId(int id) {
+            return id == this.id ? this : new Row(this, id);
+        }
+
+        Plan toPlan() {
+            return new Plan(id, name, (time.isEmpty() ? time : time + ":00"), year, month, dayOfMonth);
+        }
+
+        boolean matches(int y, int m, int d) {
+            return (y == -1 || y == year) && (m == -1 || m == month) && (d == -1 || d == dayOfMonth);
+        }
+    }
+
+    // rows are returned ordered by date, time and id
+    private static final Comparator<Row> ORDER = Comparator.<Row>comparingLong(r -> r.day)
+            .thenComparing(r -> r.time)
+            .thenComparingInt(r -> r.id);
+
+    /**
+     * @param delegate connection from which plans are loaded and to which changes are sent
+     */
+    IndexedConnection(@NotNull Connection delegate) {
+        super(delegate);
+    }
+
+    /**
+     * find plans whose name contains given name and which are on given date ("ANY" is -1)
+     */
+    @Override
+    public Plan[] getPlans(@NotNull String name, int year, int month, int day) throws ConnectionException {
+        return toPlans(find(name, year, month, day));
+    }
+
+    @Override
+    public PlanBatch getPlanBatch(@NotNull String name, int year, int month, int day) throws ConnectionException {
+        return toBatch(find(name, year, month, day));
+    }
+
+    /**
+     * page is cut from all plans matching search
+     */
+    @Override
+    public PlanPage getPlanPage(@NotNull String name, int year, int month, int day, int pageSize, String after)
+            throws ConnectionException {
+        return PlanPage.slice(getPlanBatch(name, year, month, day), pageSize, after);
+    }
+
+    /**
+     * @return rows whose name contains given name and which are on given date ordered by date, time and id
+     */
+    private List<Row> find(String name, int year, int month, int day) throws ConnectionException {
+        load();
+        String key = name.toLowerCase(Locale.ROOT);
+        List<Row> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            boolean atMostMonth = year != -1 && month != -1; // days of one month are few candidates already
+            if (key.length() >= 3 && !atMostMonth) {
+                // the rarest trigram of name gives the smallest set of candidates
+                Set<Row> candidates = null;
+                for (int i = 0; i + 3 <= key.length(); i++) {
+                    Set<Row> rows = byTrigram.getOrDefault(trigram(key, i), Collections.emptySet());
+                    if (candidates == null || rows.size() < candidates.size()) {
+                        candidates = rows;
+                    }
+                }
+                for (Row row : candidates) {
+                    if (row.matches(year, month, day) && row.nameKey.contains(key)) {
+                        result.add(row);
+                    }
+                }
+                result.sort(ORDER);
+            } else {
+                for (Row row : rowsOn(year, month, day)) {
+                    if (row.nameKey.contains(key)) {
+                        result.add(row);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    @Override
+    public Plan[] getPlansOnDay(int y, int m, int d) throws ConnectionException {
+        load();
+        lock.readLock().lock();
+        try {
+            return toPlans(rowsOn(y, m, d));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Plan[] getPlansInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        return toPlans(range(from, to));
+    }
+
+    @Override
+    public PlanBatch getPlanBatchInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        return toBatch(range(from, to));
+    }
+
+    private List<Row> range(LocalDate from, LocalDate to) throws ConnectionException {
+        load();
+        lock.readLock().lock();
+        try {
+            List<Row> result = new ArrayList<>();
+            if (!from.isAfter(to)) {
+                addRange(from, to, result);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String[] getYears() throws ConnectionException {
+        load();
+        SortedSet<Integer> years = new TreeSet<>();
+        lock.readLock().lock();
+        try {
+            // jump over days of every year
+            Long day = byDay.isEmpty() ? null : byDay.firstKey();
+            while (day != null) {
+                int year = LocalDate.ofEpochDay(day).getYear();
+                years.add(year);
+                day = byDay.ceilingKey(LocalDate.of(year + 1, 1, 1).toEpochDay());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<String> result = new ArrayList<>();
+        result.add("ANY");
+        for (int year : years) {
+            result.add(String.valueOf(year));
+        }
+        return result.toArray(new String[0]);
+    }
+
+    @Override
+    public PlanSummary getSummary() throws ConnectionException {
+        load();
+        lock.readLock().lock();
+        try {
+            PlanSummary summary = new PlanSummary();
+            for (Map.Entry<Long, List<Row>> entry : byDay.entrySet()) {
+                LocalDate date = LocalDate.ofEpochDay(entry.getKey());
+                summary.add(date.getYear(), date.getMonthValue(), entry.getValue().size());
+            }
+            return summary;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int[] getDayCounts(int year, int month) throws ConnectionException {
+        load();
+        YearMonth ym = YearMonth.of(year, month);
+        long first = ym.atDay(1).toEpochDay();
+        int[] counts = new int[ym.lengthOfMonth()];
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<Long, List<Row>> entry : byDay.subMap(first, first + counts.length).entrySet()) {
+                counts[(int) (entry.getKey() - first)] = entry.getValue().size();
+            }
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // rows are built before change is sent - plan which can't be indexed isn't saved,
+    // indexes are changed only after change was saved
+
+    /**
+     * changes in feed are applied to indexes, indexes are loaded again when feed starts or was reset
+     * (so no change made between loading and start of feed is missed)
+     */
+    @Override
+    public PlanChanges getChangesSince(String since) throws ConnectionException {
+        PlanChanges changes = super.getChangesSince(since);
+        if (since == null || changes.isReset()) {
+            clear();
+            return changes;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                for (Plan plan : changes.getChanged()) {
+                    try {
+                        add(new Row(plan)); // replaces previous row of plan
+                    } catch (DateTimeException e) {
+                        remove(plan.getId());
+                    }
+                }
+                for (int id : changes.getDeleted()) {
+                    remove(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return changes;
+    }
+
+    /**
+     * forget all plans, they are loaded again by next query (for example after change was given up)
+     */
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            byId.clear();
+            byDay.clear();
+            byTrigram.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void addNew(@NotNull Plan item) throws ConnectionException {
+        load();
+        Row row = new Row(item);
+        super.addNew(item);
+        lock.writeLock().lock();
+        try {
+            add(row.withId(item.getId()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void updatePlan(@NotNull Plan item) throws ConnectionException {
+        load();
+        Row row = new Row(item);
+        super.updatePlan(item);
+        lock.writeLock().lock();
+        try {
+            add(row); // replaces previous row of plan
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deletePlan(int idPlan) throws ConnectionException {
+        load();
+        super.deletePlan(idPlan);
+        lock.writeLock().lock();
+        try {
+            remove(idPlan);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void applyBatch(@NotNull List<PlanMutation> mutations) throws ConnectionException {
+        load();
+        List<Row> rows = new ArrayList<>();
+        for (PlanMutation mutation : mutations) {
+            rows.add(mutation.getType() == PlanMutation.Type.DELETE ? null : new Row(mutation.getPlan()));
+        }
+        super.applyBatch(mutations);
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < mutations.size(); i++) {
+                PlanMutation mutation = mutations.get(i);
+                if (mutation.getType() == PlanMutation.Type.DELETE) {
+                    remove(mutation.getId());
+                } else {
+                    add(rows.get(i).withId(mutation.getPlan().getId()));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * load all plans from connection when it wasn't done yet
+     */
+    private void load() throws ConnectionException {
+        lock.readLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                for (Plan plan : delegate.getPlans("", -1, -1, -1)) {
+                    try {
+                        add(new Row(plan));
+                    } catch (DateTimeException e) {
+                        // plan without valid date can't be found by any query
+                    }
+                }
+                loaded = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return rows on given date ("ANY" is -1) ordered by date, time and id
+     */
+    private List<Row> rowsOn(int y, int m, int d) {
+        List<Row> result = new ArrayList<>();
+        if (byDay.isEmpty()) {
+            return result;
+        }
+        if (y == -1 && m == -1 && d == -1) {
+            byDay.values().forEach(result::addAll);
+            return result;
+        }
+        int firstYear = (y != -1 ? y : LocalDate.ofEpochDay(byDay.firstKey()).getYear());
+        int lastYear = (y != -1 ? y : LocalDate.ofEpochDay(byDay.lastKey()).getYear());
+        for (int year = firstYear; year <= lastYear; year++) {
+            if (m == -1 && d == -1) {
+                addRange(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31), result);
+                continue;
+            }
+            for (int month = (m != -1 ? m : 1); month <= (m != -1 ? m : 12); month++) {
+                YearMonth ym;
+                try {
+                    ym = YearMonth.of(year, month);
+                } catch (DateTimeException e) {
+                    continue;
+                }
+                if (d == -1) {
+                    addRange(ym.atDay(1), ym.atEndOfMonth(), result);
+                } else if (ym.isValidDay(d)) {
+                    List<Row> rows = byDay.get(ym.atDay(d).toEpochDay());
+                    if (rows != null) {
+                        result.addAll(rows);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void addRange(LocalDate from, LocalDate to, List<Row> result) {
+        byDay.subMap(from.toEpochDay(), true, to.toEpochDay(), true).values().forEach(result::addAll);
+    }
+
+    private void add(Row row) {
+        remove(row.id);
+        byId.put(row.id, row);
+        List<Row> rows = byDay.computeIfAbsent(row.day, k -> new ArrayList<>());
+        int position = Collections.binarySearch(rows, row, ORDER);
+        rows.add(position < 0 ? -position - 1 : position, row);
+        for (int i = 0; i + 3 <= row.nameKey.length(); i++) {
+            byTrigram.computeIfAbsent(trigram(row.nameKey, i), k -> new HashSet<>()).add(row);
+        }
+    }
+
+    private void remove(int id) {
+        Row row = byId.remove(id);
+        if (row == null) {
+            return;
+        }
+        List<Row> rows = byDay.get(row.day);
+        rows.remove(row);
+        if (rows.isEmpty()) {
+            byDay.remove(row.day);
+        }
+        for (int i = 0; i + 3 <= row.nameKey.length(); i++) {
+            long key = trigram(row.nameKey, i);
+            Set<Row> posting = byTrigram.get(key);
+            if (posting != null) {
+                posting.remove(row);
+                if (posting.isEmpty()) {
+                    byTrigram.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return three characters of text starting at given position packed to one number
+     */
+    private static long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    private static Plan[] toPlans(List<Row> rows) {
+        Plan[] plans = new Plan[rows.size()];
+        for (int i = 0; i < plans.length; i++) {
+            plans[i] = rows.get(i).toPlan();
+        }
+        return plans;
+    }
+
+    private static PlanBatch toBatch(List<Row> rows) {
+        PlanBatch.Builder batch = new PlanBatch.Builder(rows.size());
+        for (Row row : rows) {
+            batch.add(row.id, row.name, row.day, PlanBatch.minuteOfDay(row.time));
+        }
+        return batch.build();
+    }
+}
@@ -0,0 +1,431 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+import java.util.logging.Logger;
+
+/**
+ * connection which measures every operation of other connection:
+ * latency histogram, numbers of calls, errors and timeouts, and sizes of results
+ * statistics are registered as MXBeans (com.myplanner.app:type=Connection,backend=...,operation=...)
+ * and logged periodically (logger "com.myplanner.app.connection", interval in seconds is given by system property
+ * "planner.stats.interval", default 300, 0 turns logging off)
+ * new connection with the same name replaces earlier one in JMX and in log (only one of them is reported)
+ * measuring uses only atomic counters - calls never wait for each other
+ */
+class InstrumentedConnection extends ForwardingConnection {
+    private static final Logger LOG = Logger.getLogger("com.myplanner.app.connection");
+    private static final ScheduledExecutorService REPORTER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "connection-stats");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final Map<String, ScheduledFuture<?>> REPORTS = new HashMap<>(); // name -> logging, guarded by itself
+
+    private final Map<String, OperationStats> operations = new LinkedHashMap<>(); // not changed after constructor
+    private final OperationStats getPlans = operation("getPlans");
+    private final OperationStats getPlansOnDay = operation("getPlansOnDay");
+    private final OperationStats getPlansInRange = operation("getPlansInRange");
+    private final OperationStats getPlanBatch = operation("getPlanBatch");
+    private final OperationStats getPlanPage = operation("getPlanPage");
+    private final OperationStats getPlanBatchInRange = operation("getPlanBatchInRange");
+    private final OperationStats getYears = operation("getYears");
+    private final OperationStats getSummary = operation("getSummary");
+    private final OperationStats getDayCounts = operation("getDayCounts");
+    private final OperationStats getChangesSince = operation("getChangesSince");
+    private final OperationStats addNew = operation("addNew");
+    private final OperationStats updatePlan = operation("updatePlan");
+    private final OperationStats deletePlan = operation("deletePlan");
+    private final OperationStats applyBatch = operation("applyBatch");
+    private final OperationStats reserveIds = operation("reserveIds");
+
+    /**
+     * @param delegate measured connection
+     * @param name     name of connection in JMX and log (for example name of backend)
+     */
+    InstrumentedConnection(@NotNull Connection delegate, @NotNull String name) {
+        super(delegate);
+        register(name);
+        long interval = Long.getLong("planner.stats.interval", 300);
+        ScheduledFuture<?> replaced;
+        synchronized (REPORTS) {
+            replaced = (interval > 0
+                    ? REPORTS.put(name, REPORTER.scheduleAtFixedRate(() -> log(name), interval, interval, TimeUnit.SECONDS))
+                    : REPORTS.remove(name));
+        }
+        if (replaced != null) {
+            replaced.cancel(false);
+        }
+    }
+
+    private OperationStats operation(String name) {
+        OperationStats stats = new OperationStats(name);
+        operations.put(name, stats);
+        return stats;
+    }
+
+    /**
+     * register statistics of every operation, earlier connection with the same name is replaced
+     */
+    private void register(String name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (OperationStats stats : operations.values()) {
+            try {
+                ObjectName objectName = new ObjectName("com.myplanner.app:type=Connection,backend="
+                        + ObjectName.quote(name) + ",operation=" + stats.name);
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+                server.registerMBean(stats, objectName);
+            } catch (JMException e) {
+                e.printStackTrace(); // statistics are only not visible over JMX
+            }
+        }
+    }
+
+    /**
+     * @return statistics of given operation (name of method of Connection), null when it isn't measured
+     */
+    OperationStats stats(@NotNull String operation) {
+        return operations.get(operation);
+    }
+
+    private void log(String name) {
+        if (operations.values().stream().anyMatch(stats -> stats.getCalls() > 0)) {
+            LOG.info(report(name));
+        }
+    }
+
+    /**
+     * @return snapshot of statistics of operations which were called, one line per operation
+     */
+    String report(@NotNull String name) {
+        StringBuilder report = new StringBuilder("connection " + name + ":");
+        for (OperationStats stats : operations.values()) {
+            if (stats.getCalls() > 0) {
+                report.append(System.lineSeparator()).append("  ").append(stats);
+            }
+        }
+        return report.toString();
+    }
+
+    private interface Call<T> {
+        T run() throws ConnectionException;
+    }
+
+    /**
+     * run call and record its latency, result or failure
+     *
+     * @param size size of result, null when operation doesn't return anything
+     */
+    private static <T> T measure(OperationStats stats, Call<T> call, ToIntFunction<T> size) throws ConnectionException {
+        long start = System.nanoTime();
+        try {
+            T result = call.run();
+            stats.succeeded(System.nanoTime() - start, size == null ? -1 : size.applyAsInt(result));
+            return result;
+        } catch (ConnectionTimeoutException e) {
+            stats.timedOut(System.nanoTime() - start);
+            throw e;
+        } catch (ConnectionException | RuntimeException e) {
+            stats.failed(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    @Override
+    public Plan[] getPlans(@NotNull String name, int year, int month, int day) throws ConnectionException {
+        return measure(getPlans, () -> super.getPlans(name, year, month, day), plans -> plans.length);
+    }
+
+    @Override
+    public Plan[] getPlansOnDay(int y, int m, int d) throws ConnectionException {
+        return measure(getPlansOnDay, () -> super.getPlansOnDay(y, m, d), plans -> plans.length);
+    }
+
+    @Override
+    public Plan[] getPlansInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        return measure(getPlansInRange, () -> super.getPlansInRange(from, to), plans -> plans.length);
+    }
+
+    @Override
+    public PlanBatch getPlanBatch(@NotNull String name, int year, int month, int day) throws ConnectionException {
+        return measure(getPlanBatch, () -> super.getPlanBatch(name, year, month, day), PlanBatch::size);
+    }
+
+    @Override
+    public PlanPage getPlanPage(@NotNull String name, int year, int month, int day, int pageSize, String after)
+            throws ConnectionException {
+        return measure(getPlanPage, () -> super.getPlanPage(name, year, month, day, pageSize, after),
+                page -> page.getPlans().size());
+    }
+
+    @Override
+    public PlanBatch getPlanBatchInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        return measure(getPlanBatchInRange, () -> super.getPlanBatchInRange(from, to), PlanBatch::size);
+    }
+
+    @Override
+    public String[] getYears() throws ConnectionException {
+        return measure(getYears, super::getYears, years -> years.length);
+    }
+
+    @Override
+    public PlanSummary getSummary() throws ConnectionException {
+        return measure(getSummary, super::getSummary, summary -> summary.years().length);
+    }
+
+    @Override
+    public int[] getDayCounts(int year, int month) throws ConnectionException {
+        return measure(getDayCounts, () -> super.getDayCounts(year, month), counts -> counts.length);
+    }
+
+    @Override
+    public PlanChanges getChangesSince(String since) throws ConnectionException {
+        return measure(getChangesSince, () -> super.getChangesSince(since),
+                changes -> changes.getChanged().length + changes.getDeleted().length);
+    }
+
+    @Override
+    public void addNew(@NotNull Plan item) throws ConnectionException {
+        measure(addNew, () -> {
+            super.addNew(item);
+            return null;
+        }, null);
+    }
+
+    @Override
+    public void updatePlan(@NotNull Plan item) throws ConnectionException {
+        measure(updatePlan, () -> {
+            super.updatePlan(item);
+            return null;
+        }, null);
+    }
+
+    @Override
+    public void deletePlan(int idPlan) throws ConnectionException {
+        measure(deletePlan, () -> {
+            super.deletePlan(idPlan);
+            return null;
+        }, null);
+    }
+
+    /**
+     * size of result is number of changes in batch
+     */
+    @Override
+    public void applyBatch(@NotNull List<PlanMutation> mutations) throws ConnectionException {
+        measure(applyBatch, () -> {
+            super.applyBatch(mutations);
+            return mutations;
+        }, List::size);
+    }
+
+    @Override
+    public int reserveIds(int count) throws ConnectionException {
+        return measure(reserveIds, () -> super.reserveIds(count), null);
+    }
+}
+
+/**
+ * statistics of one operation, updated by many threads without locking
+ */
+final class OperationStats implements OperationStatsMXBean {
+    final String name;
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final Histogram latency = new Histogram(); // nanoseconds, every call
+    private final Histogram sizes = new Histogram();   // sizes of results of successful calls
+
+    OperationStats(@NotNull String name) {
+        this.name = name;
+    }
+
+    void succeeded(long nanos, int size) {
+        latency.record(nanos);
+        if (size >= 0) {
+            sizes.record(size);
+        }
+    }
+
+    void failed(long nanos) {
+        latency.record(nanos);
+        errors.increment();
+    }
+
+    void timedOut(long nanos) {
+        latency.record(nanos);
+        timeouts.increment();
+    }
+
+    @Override
+    public long getCalls() {
+        return latency.count();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public double getLatencyP50Millis() {
+        return latency.percentile(0.5) / 1e6;
+    }
+
+    @Override
+    public double getLatencyP99Millis() {
+        return latency.percentile(0.99) / 1e6;
+    }
+
+    @Override
+    public double getLatencyP999Millis() {
+        return latency.percentile(0.999) / 1e6;
+    }
+
+    @Override
+    public double getLatencyMaxMillis() {
+        return latency.max() / 1e6;
+    }
+
+    @Override
+    public long getResultSizeP50() {
+        return sizes.percentile(0.5);
+    }
+
+    @Override
+    public long getResultSizeP99() {
+        return sizes.percentile(0.99);
+    }
+
+    @Override
+    public long getResultSizeMax() {
+        return sizes.max();
+    }
+
+    @Override
+    public String toString() {
+        long[] latencies = latency.percentiles(0.5, 0.99, 0.999);
+        String text = String.format(Locale.ROOT, "%s: %d calls, %d errors, %d timeouts, latency p50 %.2f ms, p99 %.2f ms,"
+                        + " p999 %.2f ms, max %.2f ms", name, getCalls(), getErrors(), getTimeouts(),
+                latencies[0] / 1e6, latencies[1] / 1e6, latencies[2] / 1e6, latency.max() / 1e6);
+        if (sizes.count() > 0) {
+            long[] counts = sizes.percentiles(0.5, 0.99);
+            text += String.format(Locale.ROOT, ", results p50 %d, p99 %d, max %d", counts[0], counts[1], sizes.max());
+        }
+        return text;
+    }
+}
+
+/**
+ * histogram of non-negative values with buckets growing exponentially (8 buckets per power of two),
+ * so percentiles are at most 1/8 above real value from nanoseconds to hours
+ * recording is one atomic increment, reading works with copy of buckets
+ */
+final class Histogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int EXACT = SUB_BUCKETS * 2; // values below this have own bucket
+
+    private final AtomicLongArray buckets = new AtomicLongArray(EXACT + (63 - SUB_BITS - 1) * SUB_BUCKETS);
+    private final LongAccumulator max = new LongAccumulator(Math::max, -1);
+
+    void record(long value) {
+        buckets.incrementAndGet(index(Math.max(0, value)));
+        max.accumulate(value);
+    }
+
+    private static int index(long value) {
+        if (value < EXACT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BITS + 1
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return EXACT + (exponent - SUB_BITS - 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the largest value which falls into bucket
+     */
+    private static long upperBound(int index) {
+        if (index < EXACT) {
+            return index;
+        }
+        int exponent = (index - EXACT) / SUB_BUCKETS + SUB_BITS + 1;
+        long sub = (index - EXACT) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((SUB_BUCKETS + sub) << (exponent - SUB_BITS)) + width - 1;
+    }
+
+    long count() {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return the largest recorded value, -1 when nothing was recorded
+     */
+    long max() {
+        return max.get();
+    }
+
+    long percentile(double quantile) {
+        return percentiles(quantile)[0];
+    }
+
+    /**
+     * @param quantiles sorted quantiles (0 - 1)
+     * @return value below which given part of recorded values are (-1 when nothing was recorded),
+     * computed from one copy of buckets, so they are consistent with each other
+     */
+    long[] percentiles(double... quantiles) {
+        long[] copy = new long[buckets.length()];
+        long total = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = buckets.get(i);
+            total += copy[i];
+        }
+        long[] result = new long[quantiles.length];
+        int bucket = 0;
+        long seen = 0;
+        for (int q = 0; q < quantiles.length; q++) {
+            if (total == 0) {
+                result[q] = -1;
+                continue;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantiles[q] * total));
+            while (seen + copy[bucket] < rank) {
+                seen += copy[bucket++];
+            }
+            // bucket can't say more than the largest value really recorded
+            result[q] = Math.min(upperBound(bucket), max.get());
+        }
+        return result;
+    }
+}
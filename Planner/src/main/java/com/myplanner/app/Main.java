@@ -12,8 +12,13 @@ package com.myplanner.app;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.time.YearMonth;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 
 public class Main {
@@ -21,14 +26,56 @@ public class Main {
      * program entry point
      */
     public static void main(String[] args) {
-        Planner myPlanner = new Planner(Arrays.asList(args).contains("-l") || Arrays.asList(args).contains("--local"));
-        myPlanner.addWindowListener(
-                new WindowAdapter() {
-                    public void windowClosing(WindowEvent e) {
-                        System.exit(0);
+        StartupTimer.mainStarted();
+        Backend backend = Backend.fromArgs(Arrays.asList(args));
+        // window is created on event dispatch thread at once, data are loaded in background
+        SwingUtilities.invokeLater(() -> {
+            Planner myPlanner = new Planner(backend);
+            myPlanner.addWindowListener(
+                    new WindowAdapter() {
+                        public void windowOpened(WindowEvent e) {
+                            StartupTimer.frameVisible();
+                        }
+
+                        public void windowClosing(WindowEvent e) {
+                            System.exit(0);
+                        }
                     }
-                }
-        );
+            );
+        });
+    }
+}
+
+/**
+ * storage of plans which application connects to
+ */
+enum Backend {
+    SERVER,         // php scripts on server (default)
+    LOCAL_DATABASE, // MySQL database on localhost (-l, --local)
+    LOCAL_FILE;     // file on disk (-f, --file)
+
+    /**
+     * @param args arguments of program
+     * @return backend selected by arguments
+     */
+    static Backend fromArgs(List<String> args) {
+        if (args.contains("-l") || args.contains("--local")) {
+            return LOCAL_DATABASE;
+        } else if (args.contains("-f") || args.contains("--file")) {
+            return LOCAL_FILE;
+        }
+        return SERVER;
+    }
+
+    /**
+     * @return new connection to this backend
+     */
+    Connection connect() {
+        switch (this) {
+            case LOCAL_DATABASE: return new ConnectionToLocalDatabase();
+            case LOCAL_FILE: return new ConnectionToLocalFile();
+            default: return new ConnectionViaPHP();
+        }
     }
 }
 
@@ -38,21 +85,23 @@ public class Main {
 class Planner extends JFrame implements ActionListener {
 
     //parameters for finding plan on given day or with given name
-    private JComboBox<String> year;
+    private final JComboBox<String> year;
     private final JComboBox<String> month, day;
     private final JTextField name;
 
     private final JButton query, newPlan;
     private final MyPlanner handler;
+    private static final int TYPING_DELAY = 300; // milliseconds without typing before plans with typed name are searched
+    private final Timer typing = new Timer(TYPING_DELAY, e -> search()); // restarted by every change of name
     private JMenuItem showCalendar, findPlans; // menu bar
     private final JPanel display;
 
-    private final boolean localServer;
+    private final Backend backend;
 
-    public Planner(boolean localServer) {
+    public Planner(Backend backend) {
         super("My Day Planner"); // set name of window
 
-        this.localServer = localServer;
+        this.backend = backend;
 
         display = new JPanel();
         // set the output font
@@ -69,13 +118,30 @@ class Planner extends JFrame implements ActionListener {
             }
         });
 
-        // create handler for displaying plans
-        handler = new MyPlanner(display, localServer);
+        // create handler for displaying plans (connection is created in background)
+        handler = new MyPlanner(display, backend);
+        handler.prefetchIds(); // block of ids for new plans is reserved while years are loading
         display.add(Box.createVerticalGlue());
 
         // initialize the user interface components
         name = new JTextField();
-        year = new JComboBox<>(handler.getYears());
+        // search as you type - search starts when user stops typing for a while
+        typing.setRepeats(false);
+        name.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                typing.restart();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                typing.restart();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                // attributes of text, not text itself
+            }
+        });
+        year = new JComboBox<>(new String[]{"ANY"}); // years used in database are loaded in background
+        year.setToolTipText("Loading years...");
         month = createNumericComboBox(1, 12);
         day = createNumericComboBox(1, 31);
 
@@ -110,7 +176,7 @@ class Planner extends JFrame implements ActionListener {
      * set available years (years in database) to picker
      */
     private void setYears() {
-        year = new JComboBox<>(handler.getYears());
+        handler.updateYears(year);
     }
 
     /**
@@ -151,7 +217,7 @@ class Planner extends JFrame implements ActionListener {
      * set Calendar window when changing panels
      */
     private void setCalendarWindow() {
-        CalendarWindow calendar_window = new CalendarWindow(localServer);
+        CalendarWindow calendar_window = new CalendarWindow(backend);
         setContentPane(calendar_window.setAndGetPanel());
     }
 
@@ -194,28 +260,36 @@ class Planner extends JFrame implements ActionListener {
     @Override
     public void actionPerformed(ActionEvent e) {
         if (e.getSource() == query) {
-            // get the values of parameters
-            int numberYear = getValueOfInt((String) Objects.requireNonNull(year.getSelectedItem()));
-            int numberMonth = getValueOfInt((String) Objects.requireNonNull(month.getSelectedItem()));
-            int numberDay = getValueOfInt((String) Objects.requireNonNull(day.getSelectedItem()));
-            String namePlan = name.getText();
-
-            // get the result of query
-            handler.getQueryResult(numberYear, numberMonth, numberDay, namePlan);
+            search();
         } else if (e.getSource() == newPlan) {
             openAddingWindow();
         } else if (e.getSource() == showCalendar) {
             setCalendarWindow();
         } else if (e.getSource() == findPlans) {
             setQueryWindow();
-        } else if (e.getSource() == year) {
-            setYears();
         }
         // update window
         invalidate();
         validate();
     }
 
+    /**
+     * search plans with parameters set in form (search which is still running is cancelled)
+     */
+    private void search() {
+        typing.stop();
+        // get the values of parameters
+        int numberYear = getValueOfInt((String) Objects.requireNonNull(year.getSelectedItem()));
+        int numberMonth = getValueOfInt((String) Objects.requireNonNull(month.getSelectedItem()));
+        int numberDay = getValueOfInt((String) Objects.requireNonNull(day.getSelectedItem()));
+        String namePlan = name.getText();
+
+        // get the result of query
+        handler.getQueryResult(numberYear, numberMonth, numberDay, namePlan);
+        invalidate();
+        validate();
+    }
+
     /**
      * @param str string containing integer of "ANY"
      * @return integer value of given str
@@ -249,9 +323,11 @@ class CalendarWindow {
     private final MyCalendar calendar;
     private final MyPlanner planner;
 
-    CalendarWindow(boolean localServer) {
+    CalendarWindow(Backend backend) {
         calendar = new MyCalendar(this);
-        planner = new MyPlanner(calendar.getPanelForPlans(), localServer);
+        planner = new MyPlanner(calendar.getPanelForPlans(), backend);
+        planner.setOnChange(calendar::updateCounts); // counts are changed locally, no request is sent
+        calendar.loadMonth(0);
     }
 
     /**
@@ -274,4 +350,22 @@ class CalendarWindow {
     public void getAndShowPlans(int y, int m, int d) {
         planner.getAndShowPlans(y, m, d);
     }
+
+    /**
+     * load numbers of plans in every day of given month in background
+     * @param month shown month
+     * @param shown receiver of counts (index 0 = first day)
+     */
+    public void loadDayCounts(YearMonth month, Consumer<int[]> shown) {
+        planner.loadDayCounts(month.getYear(), month.getMonthValue(), shown);
+    }
+
+    /**
+     * load plans of given month and months around it in background (days clicked later are shown from memory)
+     * @param month shown month
+     * @param direction direction of navigation (-1 = previous, 1 = next, 0 = unknown)
+     */
+    public void prefetchMonths(YearMonth month, int direction) {
+        planner.prefetchMonths(month, direction);
+    }
 }
\ No newline at end of file
@@ -3,55 +3,56 @@ package com.myplanner.app;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableColumnModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * manage calendar - display month, provide changing showing month and showing plan for selected day
+ * days of month are painted by one renderer from cached {@link MonthGrid}, so changing month and resizing
+ * allocate almost nothing
+ * days with plans have badge with number of plans (counts of month are loaded by one request and kept)
  */
 public class MyCalendar extends JPanel implements ActionListener {
-    private JTable table;
-    private final SimpleDateFormat day = new SimpleDateFormat("d");
-    private final SimpleDateFormat month = new SimpleDateFormat("M");
-    private final SimpleDateFormat yearTextFormat = new SimpleDateFormat("yyyy");
-    private final SimpleDateFormat monthTextFormat = new SimpleDateFormat("MMMMMMMMM");
+    private static final int MAX_FONT_SIZE = 25;
+
     private final JButton previous = new JButton("Previous");
     private final JButton next = new JButton("Next");
-    private final Calendar current = Calendar.getInstance(); // represent current month which is display
-    private final JLabel monthLabel, yearLabel;
+    private final MonthTableModel model = new MonthTableModel(YearMonth.now());
+    private final JTable table = new JTable(model);
+    private final Font[] fonts = new Font[MAX_FONT_SIZE + 1]; // fonts of components by size, created when first used
+    private final CalendarWindow window;
+    private JLabel monthLabel, yearLabel;
     private JPanel display;
+    private int fontSize = -1, width = -1, height = -1; // size which components are laid out for
 
     /**
      * set panel with buttons, labels and calendar
      * @param window class that connect calendar with MyPlanner class (for showing plans)
      */
     MyCalendar(CalendarWindow window) {
+        this.window = window;
         initComponents();
         setupLayout();
-        
+
         addComponentListener(new ComponentAdapter() {
             public void componentResized(ComponentEvent componentEvent) {
-                Font font = new Font("Dialog", java.awt.Font.PLAIN, (Math.min(getWidth() / 45, 25)));
-                for (Component item : getComponents()){
-                    item.setFont(font);
-                }
-                table.setRowHeight(getHeight() / 15);
-                for (int i = 0; i < table.getColumnModel().getColumnCount(); i++)
-                    table.getColumnModel().getColumn(i).setPreferredWidth(getWidth() / 20);
-                table.getParent().setPreferredSize(new Dimension(getWidth() / 2, table.getRowHeight()*table.getRowCount()));
-                revalidate();
-                repaint();
+                resize();
             }
         });
 
-        setCalendar(window);
+        setCalendar();
     }
 
     /**
@@ -61,10 +62,8 @@ public class MyCalendar extends JPanel implements ActionListener {
         previous.addActionListener(this);
         next.addActionListener(this);
 
-        monthLabel = new JLabel(monthTextFormat.format(current.getTime()));
-        yearLabel = new JLabel(yearTextFormat.format(current.getTime()));
-
-        table = new JTable();
+        monthLabel = new JLabel(model.getGrid().monthText);
+        yearLabel = new JLabel(model.getGrid().yearText);
     }
 
     /**
@@ -115,54 +114,85 @@ public class MyCalendar extends JPanel implements ActionListener {
 
     /**
      * set calendar - display days of selected month
-     * set display to showing plans of selected day from calendar
-     * @param c grid
-     * @param window class that connect calendar with MyPlanner class for showing plans
-     */
-    private void setCalendar(CalendarWindow window) {
-        String[][] data = new String[6][7];
-        current.set(Calendar.DATE, 1);
-        Calendar cal = (Calendar) current.clone();
-        cal.add(Calendar.DATE, -cal.get(Calendar.DAY_OF_WEEK) + 1);
-        for (int week = 0; week < 6; week++) {
-            for (int d = 0; d < 7; d++) {
-                data[week][d] = (day.format(cal.getTime())
-                        + (month.format(cal.getTime()).equals(month.format(current.getTime())) ? "1" : "0"));
-                cal.add(Calendar.DATE, +1);
-            }
-        }
-
-        String[] header = {"Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat"};
-
-        DefaultTableModel dm = new DefaultTableModel(data, header);
-
-        table = new JTable(dm);
+     * set display to showing plans of day clicked in calendar (days of other months aren't clickable)
+     */
+    private void setCalendar() {
         table.getTableHeader().setReorderingAllowed(false);
         table.setPreferredScrollableViewportSize(table.getPreferredSize());
         table.setFillsViewportHeight(true);
-        for (String title : header) {
-            table.getColumn(title).setCellRenderer(new ButtonRenderer());
-            table.getColumn(title).setCellEditor(new ButtonEditor(new JCheckBox(), window, current));
-        }
+        table.setCellSelectionEnabled(true);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setDefaultRenderer(Integer.class, new DayRenderer(model));
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = table.rowAtPoint(e.getPoint());
+                int column = table.columnAtPoint(e.getPoint());
+                if (row >= 0 && column >= 0 && model.isInMonth(row, column)) {
+                    YearMonth month = model.getGrid().month;
+                    window.getAndShowPlans(month.getYear(), month.getMonthValue(), model.getDay(row, column));
+                }
+            }
+        });
     }
 
     /**
      * update calendar and labels to current month after change
      */
-    private void updateCalendar() {
-        monthLabel.setText(monthTextFormat.format(current.getTime()));
-        yearLabel.setText(yearTextFormat.format(current.getTime()));
-
-        current.set(Calendar.DATE, 1);
-        Calendar cal = (Calendar) current.clone();
-        cal.add(Calendar.DATE, -cal.get(Calendar.DAY_OF_WEEK) + 1);
-        for (int week = 0; week < 6; week++) {
-            for (int d = 0; d < 7; d++) {
-                table.getModel().setValueAt(day.format(cal.getTime())
-                        + (month.format(cal.getTime()).equals(month.format(current.getTime())) ? "1" : "0"), week, d);
-                cal.add(Calendar.DATE, +1);
+    private void updateCalendar(YearMonth month) {
+        int direction = month.compareTo(model.getGrid().month) < 0 ? -1 : 1;
+        model.setMonth(month);
+        monthLabel.setText(model.getGrid().monthText);
+        yearLabel.setText(model.getGrid().yearText);
+        loadMonth(direction);
+    }
+
+    /**
+     * load counts of plans in shown month and prefetch plans of months around it (see {@link MyPlanner#prefetchMonths})
+     * @param direction direction of navigation (-1 = to previous month, 1 = to next month, 0 = unknown)
+     */
+    void loadMonth(int direction) {
+        updateCounts();
+        window.prefetchMonths(model.getGrid().month, direction);
+    }
+
+    /**
+     * load numbers of plans in days of shown month, badges are updated when they are loaded
+     */
+    void updateCounts() {
+        YearMonth month = model.getGrid().month;
+        window.loadDayCounts(month, counts -> model.setCounts(month, counts));
+    }
+
+    /**
+     * fit font, rows and columns to size of panel, only what changed is set again
+     */
+    private void resize() {
+        int size = Math.min(getWidth() / 45, MAX_FONT_SIZE);
+        if (size != fontSize) {
+            fontSize = size;
+            if (fonts[size] == null) {
+                fonts[size] = new Font("Dialog", Font.PLAIN, size);
             }
+            for (Component item : getComponents()) {
+                item.setFont(fonts[size]);
+            }
+        }
+        int rowHeight = Math.max(getHeight() / 15, 1);
+        int columnWidth = getWidth() / 20;
+        if (rowHeight == height && columnWidth == width) {
+            return;
+        }
+        height = rowHeight;
+        width = columnWidth;
+        table.setRowHeight(rowHeight);
+        TableColumnModel columns = table.getColumnModel();
+        for (int i = 0; i < columns.getColumnCount(); i++) {
+            columns.getColumn(i).setPreferredWidth(columnWidth);
         }
+        table.getParent().setPreferredSize(new Dimension(getWidth() / 2, rowHeight * table.getRowCount()));
+        revalidate();
+        repaint();
     }
 
     /**
@@ -170,85 +200,254 @@ public class MyCalendar extends JPanel implements ActionListener {
      */
     @Override
     public void actionPerformed(@NotNull ActionEvent e) {
+        YearMonth month = model.getGrid().month;
         if (e.getSource() == previous) {
-            current.add(Calendar.MONTH, -1);
+            updateCalendar(month.minusMonths(1));
         } else if (e.getSource() == next) {
-            current.add(Calendar.MONTH, +1);
+            updateCalendar(month.plusMonths(1));
+        }
+    }
+}
+
+/**
+ * days shown for one month - 6 weeks from Sunday, days of previous and next month fill the first and last week
+ * grids are immutable and cached for recently shown months
+ */
+final class MonthGrid {
+    static final int WEEKS = 6, DAYS = 7;
+    private static final int CACHED = 36; // months
+    private static final DateTimeFormatter MONTH_TEXT = DateTimeFormatter.ofPattern("MMMM");
+    private static final DateTimeFormatter YEAR_TEXT = DateTimeFormatter.ofPattern("yyyy");
+    private static final Map<YearMonth, MonthGrid> CACHE = new LinkedHashMap<>(CACHED, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<YearMonth, MonthGrid> eldest) {
+            return size() > CACHED;
+        }
+    };
+
+    final YearMonth month;
+    final String monthText, yearText; // labels of month
+    private final int offset;         // cells before the first day of month
+    private final int length;         // days of month
+    private final int previousLength; // days of previous month
+
+    private MonthGrid(YearMonth month) {
+        this.month = month;
+        monthText = MONTH_TEXT.format(month);
+        yearText = YEAR_TEXT.format(month);
+        offset = month.atDay(1).getDayOfWeek().getValue() % DAYS; // Sunday is 7
+        length = month.lengthOfMonth();
+        previousLength = month.minusMonths(1).lengthOfMonth();
+    }
+
+    /**
+     * @return grid of given month (the same object while month is cached)
+     */
+    static synchronized MonthGrid of(@NotNull YearMonth month) {
+        return CACHE.computeIfAbsent(month, MonthGrid::new);
+    }
+
+    /**
+     * @return day of month shown in given cell (also when it is day of previous or next month)
+     */
+    int day(int week, int weekday) {
+        int day = week * DAYS + weekday - offset + 1;
+        if (day < 1) {
+            return previousLength + day;
+        }
+        return day > length ? day - length : day;
+    }
+
+    /**
+     * @return whether given cell is day of this month
+     */
+    boolean isInMonth(int week, int weekday) {
+        int day = week * DAYS + weekday - offset + 1;
+        return day >= 1 && day <= length;
+    }
+}
+
+/**
+ * table of days of one month, values are numbers of days (small Integers are cached, so none is created)
+ * numbers of plans in days of month are kept for badges
+ */
+class MonthTableModel extends AbstractTableModel {
+    private static final String[] HEADER = {"Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat"};
+
+    private MonthGrid grid;
+    private int[] counts; // numbers of plans in days of shown month, null until they are loaded
+
+    MonthTableModel(@NotNull YearMonth month) {
+        grid = MonthGrid.of(month);
+    }
+
+    MonthGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * show given month - cells are repainted, columns and rows stay
+     */
+    void setMonth(@NotNull YearMonth month) {
+        grid = MonthGrid.of(month);
+        counts = null;
+        fireTableRowsUpdated(0, MonthGrid.WEEKS - 1);
+    }
+
+    /**
+     * set numbers of plans in days of given month, they are ignored when other month is shown already
+     */
+    void setCounts(@NotNull YearMonth month, @NotNull int[] counts) {
+        if (month.equals(grid.month)) {
+            this.counts = counts;
+            fireTableRowsUpdated(0, MonthGrid.WEEKS - 1);
         }
-        updateCalendar();
+    }
+
+    /**
+     * @return number of plans in given cell, 0 for days of other months and before counts are loaded
+     */
+    int getCount(int row, int column) {
+        int day = grid.day(row, column);
+        return counts != null && grid.isInMonth(row, column) && day <= counts.length ? counts[day - 1] : 0;
+    }
+
+    int getDay(int row, int column) {
+        return grid.day(row, column);
+    }
+
+    boolean isInMonth(int row, int column) {
+        return grid.isInMonth(row, column);
+    }
+
+    @Override
+    public int getRowCount() {
+        return MonthGrid.WEEKS;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return MonthGrid.DAYS;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return HEADER[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return Integer.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return grid.day(row, column);
     }
 }
 
 /**
- * render of button in table
- * setting of label and visibility of button
+ * painter of day in calendar - looks like button, days of other months are greyed out
+ * days with plans have badge with number of plans in top right corner
+ * one component paints all cells (like DefaultTableCellRenderer, it doesn't revalidate or repaint itself)
  */
-class ButtonRenderer extends JButton implements TableCellRenderer {
+class DayRenderer extends JComponent implements TableCellRenderer {
+    private static final String[] NUMBERS = new String[100]; // texts of days and counts, created once
+    private static final String MANY = "99+";
+    private static final Color BADGE = new Color(200, 40, 40);
+
+    static {
+        for (int i = 0; i < NUMBERS.length; i++) {
+            NUMBERS[i] = Integer.toString(i);
+        }
+    }
+
+    private final MonthTableModel model;
+    private String text = "";
+    private String badge; // null when day has no plans
+    private Font font, badgeFont; // badgeFont is derived from font when font changes
+    private boolean inMonth, selected;
 
-    public ButtonRenderer() {
+    DayRenderer(@NotNull MonthTableModel model) {
+        this.model = model;
         setOpaque(true);
     }
 
     @Override
     public Component getTableCellRendererComponent(JTable table, Object value,
                                                    boolean isSelected, boolean hasFocus, int row, int column) {
-        String str = (value == null) ? "" : value.toString();
-        setEnabled(!str.endsWith("0")); // set enable when in different month
-        assert value != null;
-        setText((value.equals("")) ? "" : str.substring(0, str.length() - 1)); // change label of button (hide number which define visibility)
+        int modelRow = table.convertRowIndexToModel(row), modelColumn = table.convertColumnIndexToModel(column);
+        text = NUMBERS[model.getDay(modelRow, modelColumn)];
+        inMonth = model.isInMonth(modelRow, modelColumn);
+        int count = model.getCount(modelRow, modelColumn);
+        badge = count == 0 ? null : count < NUMBERS.length ? NUMBERS[count] : MANY;
+        selected = inMonth && isSelected;
+        setFont(table.getFont());
         return this;
     }
-}
 
-/**
- * editor of button in table
- * managing clicks on button
- */
-class ButtonEditor extends DefaultCellEditor {
-    protected JButton button;
-    private final CalendarWindow window; // managing displaying plans to panel
-    private String label;
-    private boolean wasPushed;
-    private final Calendar current; // contains current select month
+    @Override
+    protected void paintComponent(Graphics g) {
+        int w = getWidth(), h = getHeight();
+        g.setColor(selected ? UIManager.getColor("Table.selectionBackground") : UIManager.getColor("Button.background"));
+        g.fillRect(0, 0, w, h);
+        g.setColor(UIManager.getColor(inMonth ? "Button.shadow" : "Button.light"));
+        g.drawRect(1, 1, w - 3, h - 3);
+        g.setColor(!inMonth ? UIManager.getColor("Button.disabledText")
+                : selected ? UIManager.getColor("Table.selectionForeground") : UIManager.getColor("Button.foreground"));
+        g.setFont(getFont());
+        FontMetrics metrics = g.getFontMetrics();
+        g.drawString(text, (w - metrics.stringWidth(text)) / 2, (h - metrics.getHeight()) / 2 + metrics.getAscent());
+        if (badge != null) {
+            paintBadge(g, w);
+        }
+    }
 
     /**
-     * setting atrributes of class
-     *
-     * @param checkBox default (class extends DefaultCellEditor)
-     * @param w        class managing displaying plans
-     * @param cur      calendar used for storing current month
+     * paint number of plans to rounded box in top right corner, in smaller font than day
      */
-    public ButtonEditor(JCheckBox checkBox, CalendarWindow w, Calendar cur) {
-        super(checkBox);
-        window = w;
-        current = cur;
-        button = new JButton();
-        button.setOpaque(true);
-        button.addActionListener(e -> fireEditingStopped());
+    private void paintBadge(Graphics g, int w) {
+        if (getFont() != font) {
+            font = getFont();
+            badgeFont = font.deriveFont(Math.max(font.getSize2D() * 0.6f, 8f));
+        }
+        g.setFont(badgeFont);
+        FontMetrics metrics = g.getFontMetrics();
+        int height = metrics.getAscent() + 2, width = Math.max(metrics.stringWidth(badge) + 6, height);
+        int x = w - width - 3, y = 3;
+        g.setColor(BADGE);
+        g.fillRoundRect(x, y, width, height, height, height);
+        g.setColor(Color.WHITE);
+        g.drawString(badge, x + (width - metrics.stringWidth(badge)) / 2, y + metrics.getAscent() + 1);
     }
 
+    // the same overrides as DefaultTableCellRenderer - component is only used for painting cells
+
     @Override
-    public Component getTableCellEditorComponent(JTable table, Object value,
-                                                 boolean isSelected, int row, int column) {
-        label = (value == null) ? "" : value.toString();
-        button.setText(label.substring(0, label.length() - 1)); // hide last number which define visibility of button
-        wasPushed = true;
-        return button;
+    public void invalidate() {
     }
 
     @Override
-    public Object getCellEditorValue() {
-        if (wasPushed) {
-            String l = label.substring(0, label.length() - 1);
-            window.getAndShowPlans(current.get(Calendar.YEAR), current.get(Calendar.MONTH) + 1, Integer.parseInt(l));
-        }
-        wasPushed = false;
-        return label;
+    public void validate() {
+    }
+
+    @Override
+    public void revalidate() {
+    }
+
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+    }
+
+    @Override
+    public void repaint(Rectangle r) {
+    }
+
+    @Override
+    public void repaint() {
     }
 
     @Override
-    public boolean stopCellEditing() {
-        wasPushed = false;
-        return super.stopCellEditing();
+    protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
     }
 }
@@ -8,38 +8,161 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowEvent;
 import java.time.DateTimeException;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * managing displaying plans to given panel
  * connected to MyConnection - mediates query parameters into MySQL database
+ * connection to backend (with cache, queue of writes and reserved ids) is created once and shared by all planners,
+ * planner keeps only state of its view
  */
 public class MyPlanner {
     private final JPanel display;    // for displaying output
     private final Connection connection;
+    private final WriteBehindConnection writes; // saving of changes, shared
+    private final CachingConnection cache; // plans of days shown in calendar, shared
+    private final BackgroundTasks shownTask = new BackgroundTasks(); // loading of plans shown in display
+    private final BackgroundTasks yearsTask = new BackgroundTasks();
+    private final BackgroundTasks countsTask = new BackgroundTasks(); // loading of numbers of plans in shown month
+    private final BackgroundTasks prefetchTask = new BackgroundTasks(); // loading of months around shown month
+    private Runnable onChange = () -> {}; // called on event dispatch thread after plans were changed
+    private SearchResult lastSearch; // plans loaded by the latest search, narrower search is answered from them
+
+    private static final int CACHED_DAYS = 400; // plans of more than a year of days (prefetched months fit in)
+    private static final int PREFETCH_MAX_PLANS = 1000; // months with more plans aren't prefetched, days are loaded when clicked
+    private static final Duration CACHE_TTL = Duration.ofMinutes(5);
+    private static final int PAGE_SIZE = 200; // plans of search loaded by one request
+
+    private static final Map<Backend, Shared> SHARED = new EnumMap<>(Backend.class); // guarded by itself
+
+    /**
+     * connections to one backend which are shared by all planners of application
+     */
+    private static final class Shared {
+        final WriteBehindConnection writes;
+        final IndexedConnection index; // null unless system property "planner.index" is true
+        final SummaryConnection summary;
+        final CachingConnection cache;
+
+        Shared(Backend backend) {
+            // requests which really go to backend are measured, not cache hits or queued writes
+            writes = new WriteBehindConnection(new InstrumentedConnection(new DeferredConnection(backend), backend.name()));
+            // all plans are loaded once, searches are answered from memory
+            index = (Boolean.getBoolean("planner.index") ? new IndexedConnection(writes) : null);
+            summary = new SummaryConnection(index != null ? index : writes);
+            cache = new CachingConnection(summary, CACHED_DAYS, CACHE_TTL);
+        }
+
+        /**
+         * @return connections to given backend, they are created when they are used first time
+         */
+        static Shared of(Backend backend) {
+            synchronized (SHARED) {
+                return SHARED.computeIfAbsent(backend, Shared::new);
+            }
+        }
+    }
 
     /**
      * constructor - set attributes
      * @param output panel where plans will be displayed
+     * @param backend storage of plans
      */
-    MyPlanner(@NotNull JPanel output, boolean localServer) {
+    MyPlanner(@NotNull JPanel output, @NotNull Backend backend) {
         display = output;
         display.setLayout(new BoxLayout(display, BoxLayout.Y_AXIS));
-        connection = localServer ? new ConnectionToLocalDatabase() : new ConnectionViaPHP();
+        Shared shared = Shared.of(backend);
+        writes = shared.writes;
+        cache = shared.cache;
+        // change which was given up is in cached days and counts already, they are loaded again
+        // (reported by planner created the last - the one which is shown)
+        writes.setOnFailure(e -> {
+            if (shared.index != null) {
+                shared.index.clear();
+            }
+            shared.summary.clear();
+            cache.clear();
+            SwingUtilities.invokeLater(() -> showError(e));
+        });
+        // changes are reported to this planner only when they are made through it
+        connection = new ChangeWatcher(cache, () -> SwingUtilities.invokeLater(() -> onChange.run()));
     }
 
     /**
-     * @return array of years (string) used in database
+     * load years used in database in background and set them to given picker (selected year is kept)
+     *
+     * @param picker picker of years
      */
-    public String[] getYears() {
-        String[] years = new String[]{"ANY"};
-        try {
-            years = connection.getYears();
-        } catch (ConnectionException e) {
-            display.add(new JLabel(e.getMessage()));
+    public void updateYears(@NotNull JComboBox<String> picker) {
+        yearsTask.replace(connection::getYears, years -> {
+            Object selected = picker.getSelectedItem();
+            picker.setModel(new DefaultComboBoxModel<>(years));
+            picker.setSelectedItem(selected);
+            picker.setToolTipText(null);
+            StartupTimer.dataReady();
+        }, this::showError);
+    }
+
+    /**
+     * load numbers of plans in every day of month in background (month which is shown later replaces this one)
+     * counts are loaded by one request and kept, they are changed locally when plans are changed
+     *
+     * @param year  year of month
+     * @param month month (1 - 12)
+     * @param shown receiver of counts (index 0 = first day)
+     */
+    public void loadDayCounts(int year, int month, @NotNull Consumer<int[]> shown) {
+        countsTask.replace(() -> connection.getDayCounts(year, month), shown, this::showError);
+    }
+
+    /**
+     * load plans of shown month and of months before and after it in background, so clicked days are shown from cache
+     * shown month is loaded first, then month in direction of navigation and then the other one, each by one request
+     * prefetch started before is cancelled (its months which weren't requested yet are skipped)
+     *
+     * @param month     shown month
+     * @param direction direction of navigation (-1 = to previous month, 1 = to next month, 0 = unknown)
+     */
+    public void prefetchMonths(@NotNull YearMonth month, int direction) {
+        prefetch(direction < 0 ? List.of(month, month.minusMonths(1), month.plusMonths(1))
+                : List.of(month, month.plusMonths(1), month.minusMonths(1)), 0);
+    }
+
+    private void prefetch(List<YearMonth> months, int next) {
+        if (next == months.size()) {
+            return;
         }
-        return years;
+        YearMonth month = months.get(next);
+        prefetchTask.replace(() -> {
+            // numbers of plans in months are kept locally (summary), so budget is checked without request
+            if (connection.getSummary().count(month.getYear(), month.getMonthValue()) <= PREFETCH_MAX_PLANS) {
+                cache.prefetch(month.atDay(1), month.atEndOfMonth());
+            }
+            return null;
+        }, loaded -> prefetch(months, next + 1), e -> {
+            // prefetch is only ahead of clicks - days are loaded when they are clicked
+        });
+    }
+
+    /**
+     * @param listener called after plans were changed through this planner (on event dispatch thread)
+     */
+    public void setOnChange(@NotNull Runnable listener) {
+        onChange = listener;
+    }
+
+    /**
+     * reserve ids for new plans in background, so adding of plan doesn't wait for it
+     */
+    public void prefetchIds() {
+        writes.prefetchIds();
     }
 
     /**
@@ -51,18 +174,38 @@ public class MyPlanner {
      * @param n name of plan
      */
     public void getQueryResult(int y, int m, int d, String n) {
-        //reset display
-        display.removeAll();
-        display.revalidate();
-        display.repaint();
-
-        // show data that respond query
-        try {
-            Plan[] plans = connection.getPlans(n, y, m, d);
-            showResult(plans);
-        } catch (ConnectionException e) {
-            showWarning(e.getMessage());
+        // narrower search (user typed more letters) is answered from plans loaded by previous search,
+        // only plans after them are requested
+        SearchResult previous = lastSearch;
+        boolean narrower = previous != null && previous.covers(n, y, m, d, CACHE_TTL);
+        if (!narrower) {
+            //reset display
+            display.removeAll();
+            display.add(new JLabel("Loading..."));
+            update();
         }
+
+        // show data that respond query (result of previous query which is still loading is dropped)
+        // only first page is loaded now, following pages are loaded while user scrolls through result
+        shownTask.replace(() -> {
+            SearchResult search = narrower ? previous.narrow(n, y, m, d) : new SearchResult(n, y, m, d);
+            PlanPage loaded = search.loaded();
+            if (!narrower || (loaded.getPlans().isEmpty() && loaded.hasNext())) {
+                search.add(connection.getPlanPage(n, y, m, d, PAGE_SIZE, loaded.getNext()));
+            }
+            return search;
+        }, search -> {
+            lastSearch = search;
+            PlanPage page = search.loaded();
+            display.removeAll();
+            if (page.getPlans().isEmpty()) {
+                display.add(new Label("No plans match")); // get respond when nothing fit
+            } else {
+                display.add(new ResultView(page, after -> search.add(connection.getPlanPage(n, y, m, d, PAGE_SIZE, after)),
+                        connection, display));
+            }
+            update();
+        }, this::showError);
     }
 
     /**
@@ -96,19 +239,19 @@ public class MyPlanner {
      */
     public void getAndShowPlans(int y, int m, int d) {
         //reset display
+        JLabel date = new JLabel(d + "." + m + ". " + y);
         display.removeAll();
-        display.revalidate();
-        display.repaint();
+        display.add(date);
+        display.add(new JLabel("Loading..."));
+        update();
 
-        // show data that respond query
-        display.add(new JLabel(d + "." + m + ". " + y));
-        Plan[] plans;
-        try {
-            plans = connection.getPlansOnDay(y, m, d);
+        // show data that respond query (plans of previously clicked day which are still loading are dropped)
+        shownTask.replace(() -> connection.getPlansOnDay(y, m, d), plans -> {
+            display.removeAll();
+            display.add(date);
             showResult(plans);
-        } catch (ConnectionException e) {
-            showWarning(e.getMessage());
-        }
+            update();
+        }, this::showError);
     }
 
     public void addNewPlan(Plan plan) {
@@ -120,6 +263,16 @@ public class MyPlanner {
     public void showWarning(String message) {
         Planner.showWarning(display, message);
     }
+
+    private void showError(ConnectionException e) {
+        showWarning(e.getMessage());
+        update();
+    }
+
+    private void update() {
+        display.revalidate();
+        display.repaint();
+    }
 }
 
 /**
@@ -134,7 +287,7 @@ class AddingNew extends JPanel implements ActionListener {
     private final JTextField time = new JTextField(20);
     private final JFrame frame;
     private final MyPlanner handler; // connection to database
-    private JComboBox<String> year;
+    private final JComboBox<String> year;
 
     /**
      * create window attributes and set labels
@@ -227,19 +380,22 @@ class AddingNew extends JPanel implements ActionListener {
             date.setBackground(Color.WHITE);
             time.setBackground(Color.WHITE);
             if (plan.setValuesIfValid(name.getText(), time.getText(), dat.getYear(), dat.getMonthValue(), dat.getDayOfMonth())) {
-                try {
+                save.setEnabled(false); // plan is saved only once
+                BackgroundTasks.execute(() -> {
                     handler.getConnection().addNew(plan);
-
+                    return null;
+                }, saved -> {
                     // update values in picker of years
-                    year = new JComboBox<>(handler.getYears());
+                    handler.updateYears(year);
                     // add new plan
                     handler.addNewPlan(plan);
 
                     // close window
                     frame.dispatchEvent(new WindowEvent(frame, WindowEvent.WINDOW_CLOSING));
-                } catch (ConnectionException e) {
+                }, e -> {
+                    save.setEnabled(true);
                     handler.showWarning(e.getMessage());
-                }
+                });
             } else {
                 time.setBackground(Color.RED);
             }
@@ -0,0 +1,40 @@
+package com.myplanner.app;
+
+/**
+ * statistics of one operation of connection, as seen over JMX (see {@link InstrumentedConnection})
+ * latencies are in milliseconds, percentiles are upper bounds of histogram buckets (at most 1/8 above real value)
+ * interface has to be public, otherwise JMX refuses it
+ */
+public interface OperationStatsMXBean {
+    /**
+     * @return number of finished calls (also failed ones)
+     */
+    long getCalls();
+
+    /**
+     * @return number of calls which failed, timeouts are not included
+     */
+    long getErrors();
+
+    /**
+     * @return number of calls which timed out
+     */
+    long getTimeouts();
+
+    double getLatencyP50Millis();
+
+    double getLatencyP99Millis();
+
+    double getLatencyP999Millis();
+
+    double getLatencyMaxMillis();
+
+    /**
+     * @return median number of plans (or years, months, ...) returned by successful call, -1 for operations without result
+     */
+    long getResultSizeP50();
+
+    long getResultSizeP99();
+
+    long getResultSizeMax();
+}
@@ -3,9 +3,9 @@ package com.myplanner.app;
 import org.jetbrains.annotations.NotNull;
 
 import java.sql.Time;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.time.LocalTime;
+import java.time.Year;
+import java.time.YearMonth;
 import java.time.format.DateTimeParseException;
 import java.util.Objects;
 
@@ -51,6 +51,20 @@ public class Plan {
         setValuesIfValid(n, (t != null ? t.toString() : ""), y, m, d);
     }
 
+    /**
+     * @return plan with the same values (can be sent to connection in background while this plan is edited)
+     */
+    Plan copy() {
+        Plan copy = new Plan();
+        copy.id = id;
+        copy.name = name;
+        copy.time = time;
+        copy.year = year;
+        copy.month = month;
+        copy.day = day;
+        return copy;
+    }
+
     /**
      * set or change parameters of plan
      *
@@ -86,19 +100,8 @@ public class Plan {
      * @param d day
      */
     private boolean isValidDate(int y, int m, int d) {
-        //control that date is in correct format
-        StringBuilder date = new StringBuilder();
-        date.append(m).append("/").append(d);
-        date.append("/").append(y);
-
-        SimpleDateFormat sdfrmt = new SimpleDateFormat("MM/dd/yyyy");
-        sdfrmt.setLenient(false);
-        try {
-            sdfrmt.parse(String.valueOf(date));
-        } catch (ParseException e) {
-            return false;
-        }
-        return true;
+        //control that date exists (for instance 29.2. only in leap year), YearMonth can't hold years after Year.MAX_VALUE
+        return y > 0 && y <= Year.MAX_VALUE && m >= 1 && m <= 12 && d >= 1 && d <= YearMonth.of(y, m).lengthOfMonth();
     }
 
     /**
@@ -149,6 +152,13 @@ public class Plan {
         return id;
     }
 
+    /**
+     * @param id id given to new plan by connection
+     */
+    void setId(int id) {
+        this.id = id;
+    }
+
     /**
      * @return date in format d.mm.yyyy
      */
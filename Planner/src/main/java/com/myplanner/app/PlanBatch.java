@@ -0,0 +1,314 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * columnar result of query - plans are stored in parallel arrays instead of one object per plan
+ * - ids, epoch days and minutes of day are primitive arrays
+ * - names are dictionary encoded (every distinct name is stored once)
+ * reading by index allocates nothing, {@link Plan} is created only when it is asked for by {@link #plan(int)}
+ */
+final class PlanBatch {
+    static final int ALL_DAY = -1; // minute of day of plan without time
+
+    private static final PlanBatch EMPTY = new Builder().build();
+
+    private final int size;
+    private final int[] ids;
+    private final int[] days;      // epoch days
+    private final short[] minutes; // minute of day, ALL_DAY when plan has no time
+    private final int[] nameCodes; // index to names
+    private final String[] names;  // distinct names
+
+    private PlanBatch(int size, int[] ids, int[] days, short[] minutes, int[] nameCodes, String[] names) {
+        this.size = size;
+        this.ids = ids;
+        this.days = days;
+        this.minutes = minutes;
+        this.nameCodes = nameCodes;
+        this.names = names;
+    }
+
+    /**
+     * receiver of plans of batch (see {@link #forEach(Visitor)})
+     */
+    interface Visitor {
+        void visit(int id, @NotNull String name, int epochDay, int minuteOfDay);
+    }
+
+    /**
+     * @return batch without plans
+     */
+    static PlanBatch empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return batch containing given plans (plans with invalid date are left out)
+     */
+    static PlanBatch of(@NotNull Plan[] plans) {
+        Builder builder = new Builder(plans.length);
+        for (Plan plan : plans) {
+            builder.add(plan);
+        }
+        return builder.build();
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int id(int index) {
+        return ids[check(index)];
+    }
+
+    /**
+     * @return day of plan as number of days from 1970-01-01 (see {@link LocalDate#toEpochDay()})
+     */
+    int epochDay(int index) {
+        return days[check(index)];
+    }
+
+    /**
+     * @return minute of day (0 - 1439) or {@link #ALL_DAY}
+     */
+    int minuteOfDay(int index) {
+        return minutes[check(index)];
+    }
+
+    /**
+     * @return name of plan (the same instance for all plans with equal name)
+     */
+    String name(int index) {
+        return names[nameCodes[check(index)]];
+    }
+
+    /**
+     * @return number of distinct names in batch
+     */
+    int distinctNames() {
+        return names.length;
+    }
+
+    /**
+     * @return date of plan (new object)
+     */
+    LocalDate date(int index) {
+        return LocalDate.ofEpochDay(epochDay(index));
+    }
+
+    /**
+     * @return new plan with values of plan at given index
+     */
+    Plan plan(int index) {
+        LocalDate date = date(index);
+        return new Plan(ids[index], name(index), timeText(minutes[index]),
+                date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+    }
+
+    /**
+     * @return all plans of batch as objects
+     */
+    Plan[] toPlans() {
+        Plan[] plans = new Plan[size];
+        for (int i = 0; i < size; i++) {
+            plans[i] = plan(i);
+        }
+        return plans;
+    }
+
+    /**
+     * @return batch of first count plans of this batch
+     */
+    PlanBatch first(int count) {
+        if (count >= size) {
+            return this;
+        }
+        count = Math.max(count, 0);
+        return new PlanBatch(count, Arrays.copyOf(ids, count), Arrays.copyOf(days, count),
+                Arrays.copyOf(minutes, count), Arrays.copyOf(nameCodes, count), names);
+    }
+
+    /**
+     * plans which search of connection with the same parameters returns, so narrower search is answered locally
+     *
+     * @param part  part of name (case is ignored like by search of connection)
+     * @param year  year of plans (-1 = any)
+     * @param month month of plans (-1 = any)
+     * @param day   day of plans (-1 = any)
+     * @return matching plans in order of this batch (names are shared with this batch)
+     */
+    PlanBatch matching(@NotNull String part, int year, int month, int day) {
+        String key = part.toLowerCase(Locale.ROOT);
+        boolean[] named = new boolean[names.length]; // every distinct name is compared once
+        for (int i = 0; i < names.length; i++) {
+            named[i] = names[i].toLowerCase(Locale.ROOT).contains(key);
+        }
+        boolean anyDate = year == -1 && month == -1 && day == -1;
+        int[] kept = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (named[nameCodes[i]] && (anyDate || isOn(days[i], year, month, day))) {
+                kept[count++] = i;
+            }
+        }
+        if (count == size) {
+            return this;
+        }
+        int[] keptIds = new int[count];
+        int[] keptDays = new int[count];
+        short[] keptMinutes = new short[count];
+        int[] keptCodes = new int[count];
+        for (int i = 0; i < count; i++) {
+            keptIds[i] = ids[kept[i]];
+            keptDays[i] = days[kept[i]];
+            keptMinutes[i] = minutes[kept[i]];
+            keptCodes[i] = nameCodes[kept[i]];
+        }
+        return new PlanBatch(count, keptIds, keptDays, keptMinutes, keptCodes, names);
+    }
+
+    private static boolean isOn(int epochDay, int year, int month, int day) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        return (year == -1 || date.getYear() == year) && (month == -1 || date.getMonthValue() == month)
+                && (day == -1 || date.getDayOfMonth() == day);
+    }
+
+    /**
+     * give every plan to visitor in order of batch without creating any object
+     */
+    void forEach(@NotNull Visitor visitor) {
+        for (int i = 0; i < size; i++) {
+            visitor.visit(ids[i], names[nameCodes[i]], days[i], minutes[i]);
+        }
+    }
+
+    private int check(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of batch of " + size + " plans");
+        }
+        return index;
+    }
+
+    /**
+     * @param time time in format hh:mm or hh:mm:ss, empty when plan has no time
+     * @return minute of day or {@link #ALL_DAY}
+     */
+    static int minuteOfDay(@NotNull String time) {
+        if (time.length() < 5 || time.charAt(2) != ':') {
+            return ALL_DAY;
+        }
+        int hours = digits(time, 0), minutes = digits(time, 3);
+        return (hours < 0 || hours > 23 || minutes < 0 || minutes > 59) ? ALL_DAY : hours * 60 + minutes;
+    }
+
+    private static int digits(String text, int from) {
+        int high = text.charAt(from) - '0', low = text.charAt(from + 1) - '0';
+        return (high < 0 || high > 9 || low < 0 || low > 9) ? -1 : high * 10 + low;
+    }
+
+    /**
+     * @return time in format hh:mm:ss accepted by constructor of plan, empty for {@link #ALL_DAY}
+     */
+    private static String timeText(int minuteOfDay) {
+        if (minuteOfDay == ALL_DAY) {
+            return "";
+        }
+        char[] text = {(char) ('0' + minuteOfDay / 600), (char) ('0' + minuteOfDay / 60 % 10), ':',
+                (char) ('0' + minuteOfDay % 60 / 10), (char) ('0' + minuteOfDay % 10), ':', '0', '0'};
+        return new String(text);
+    }
+
+    /**
+     * collects plans to batch, arrays grow as needed
+     */
+    static final class Builder {
+        private int size;
+        private int[] ids, days, nameCodes;
+        private short[] minutes;
+        private final Map<String, Integer> codes = new HashMap<>(); // name -> index to names
+        private String[] names = new String[16];
+
+        Builder() {
+            this(16);
+        }
+
+        /**
+         * @param capacity expected number of plans
+         */
+        Builder(int capacity) {
+            capacity = Math.max(capacity, 1);
+            ids = new int[capacity];
+            days = new int[capacity];
+            nameCodes = new int[capacity];
+            minutes = new short[capacity];
+        }
+
+        /**
+         * add plan, plan with invalid date is left out
+         */
+        Builder add(@NotNull Plan plan) {
+            if (plan.getName() == null) {
+                return this; // values of plan were never set
+            }
+            long day;
+            try {
+                day = LocalDate.of(plan.getYear(), plan.getMonth(), plan.getDay()).toEpochDay();
+            } catch (DateTimeException e) {
+                return this;
+            }
+            return add(plan.getId(), plan.getName(), day, minuteOfDay(plan.getTime()));
+        }
+
+        /**
+         * @param minuteOfDay minute of day (0 - 1439) or {@link #ALL_DAY}
+         */
+        Builder add(int id, @NotNull String name, long epochDay, int minuteOfDay) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                days = Arrays.copyOf(days, capacity);
+                nameCodes = Arrays.copyOf(nameCodes, capacity);
+                minutes = Arrays.copyOf(minutes, capacity);
+            }
+            ids[size] = id;
+            days[size] = (int) epochDay;
+            minutes[size] = (short) minuteOfDay;
+            nameCodes[size] = code(name);
+            size++;
+            return this;
+        }
+
+        private int code(String name) {
+            Integer code = codes.get(name);
+            if (code == null) {
+                code = codes.size();
+                if (code == names.length) {
+                    names = Arrays.copyOf(names, code * 2);
+                }
+                names[code] = name;
+                codes.put(name, code);
+            }
+            return code;
+        }
+
+        /**
+         * @return batch of added plans (builder can be used further, batch doesn't change)
+         */
+        PlanBatch build() {
+            return new PlanBatch(size, Arrays.copyOf(ids, size), Arrays.copyOf(days, size),
+                    Arrays.copyOf(minutes, size), Arrays.copyOf(nameCodes, size), Arrays.copyOf(names, codes.size()));
+        }
+    }
+}
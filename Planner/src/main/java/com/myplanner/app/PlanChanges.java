@@ -0,0 +1,204 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * changes of plans made after some version of stored plans (one response of change feed,
+ * see {@link Connection#getChangesSince(String)})
+ * every plan is in changes at most once with its latest state - changed plans are added or updated,
+ * deleted plans are given by id only
+ * token of changes is opaque, it holds version which changes end by, next changes are requested by it
+ */
+final class PlanChanges {
+    private static final Plan[] NO_PLANS = new Plan[0];
+    private static final int[] NO_IDS = new int[0];
+
+    private final Plan[] changed;
+    private final int[] deleted;
+    private final String token;
+    private final boolean more; // more changes follow token
+    private final boolean reset; // changes since given token aren't known any more
+
+    private PlanChanges(Plan[] changed, int[] deleted, String token, boolean more, boolean reset) {
+        this.changed = changed;
+        this.deleted = deleted;
+        this.token = token;
+        this.more = more;
+        this.reset = reset;
+    }
+
+    /**
+     * @param token token of current version
+     * @return no changes - for example answer to request without token
+     */
+    static PlanChanges none(@NotNull String token) {
+        return new PlanChanges(NO_PLANS, NO_IDS, token, false, false);
+    }
+
+    /**
+     * @param token token of current version
+     * @return answer to token which is too old or unknown (log was compacted, database was created again, ...),
+     * everything read before has to be loaded again
+     */
+    static PlanChanges reset(@NotNull String token) {
+        return new PlanChanges(NO_PLANS, NO_IDS, token, false, true);
+    }
+
+    /**
+     * @return added and updated plans in their current state
+     */
+    Plan[] getChanged() {
+        return changed;
+    }
+
+    /**
+     * @return ids of deleted plans
+     */
+    int[] getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * @return token of version which changes end by
+     */
+    String getToken() {
+        return token;
+    }
+
+    /**
+     * @return true if there are more changes than one response holds - they follow token of these changes
+     */
+    boolean hasMore() {
+        return more;
+    }
+
+    /**
+     * @return true if changes since requested token aren't known, everything loaded before has to be dropped
+     */
+    boolean isReset() {
+        return reset;
+    }
+
+    boolean isEmpty() {
+        return changed.length == 0 && deleted.length == 0 && !reset;
+    }
+
+    /**
+     * @param epoch   identity of log of changes (changes with different epoch can't be continued)
+     * @param version version of stored plans
+     * @return opaque token of given version
+     */
+    static String token(long epoch, int version) {
+        String key = epoch + ":" + version;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * version held by token of changes
+     */
+    static final class Token {
+        final long epoch;
+        final int version;
+
+        private Token(long epoch, int version) {
+            this.epoch = epoch;
+            this.version = version;
+        }
+
+        /**
+         * @param token token given by {@link #getToken()}
+         * @throws ConnectionException if token wasn't created by this class
+         */
+        static Token of(@NotNull String token) throws ConnectionException {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII).split(":");
+                if (parts.length == 2) {
+                    int version = Integer.parseInt(parts[1]);
+                    if (version >= 0) {
+                        return new Token(Long.parseLong(parts[0]), version);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                // invalid token
+            }
+            throw new ConnectionException("Invalid token of changes");
+        }
+    }
+
+    /**
+     * collects changed and deleted plans with versions of changes in any order
+     * changes are ordered by version and cut to limit when they are built
+     */
+    static final class Builder {
+        private final long epoch;
+        private final List<Change> changes = new ArrayList<>();
+
+        private static final class Change {
+            final int version;
+            final int id;
+            final Plan plan; // null for deleting
+
+            Change(int version, int id, Plan plan) {
+                this.version = version;
+                this.id = id;
+                this.plan = plan;
+            }
+        }
+
+        /**
+         * @param epoch identity of log of changes, see {@link #token(long, int)}
+         */
+        Builder(long epoch) {
+            this.epoch = epoch;
+        }
+
+        Builder changed(@NotNull Plan plan, int version) {
+            changes.add(new Change(version, plan.getId(), plan));
+            return this;
+        }
+
+        Builder deleted(int id, int version) {
+            changes.add(new Change(version, id, null));
+            return this;
+        }
+
+        /**
+         * @param current version of stored plans (the newest version which collected changes can have)
+         * @param limit   maximal number of changes in response, more changes are left for next request
+         * @return the oldest changes up to limit, token of version of the last of them when some were left out
+         */
+        PlanChanges build(int current, int limit) {
+            changes.sort(Comparator.comparingInt(change -> change.version));
+            boolean more = changes.size() > limit;
+            List<Change> taken = (more ? changes.subList(0, limit) : changes);
+            int end = (more ? taken.get(limit - 1).version : current);
+            // later change of the same plan replaces earlier one
+            Map<Integer, Change> latest = new LinkedHashMap<>();
+            for (Change change : taken) {
+                latest.remove(change.id);
+                latest.put(change.id, change);
+            }
+            List<Plan> changed = new ArrayList<>();
+            int[] deleted = new int[latest.size()];
+            int deletedCount = 0;
+            for (Change change : latest.values()) {
+                if (change.plan != null) {
+                    changed.add(change.plan);
+                } else {
+                    deleted[deletedCount++] = change.id;
+                }
+            }
+            return new PlanChanges(changed.toArray(NO_PLANS), Arrays.copyOf(deleted, deletedCount),
+                    token(epoch, end), more, false);
+        }
+    }
+}
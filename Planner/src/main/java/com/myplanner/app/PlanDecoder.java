@@ -0,0 +1,587 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+/**
+ * incremental decoder of json responses of php scripts
+ * reads rows (json objects in top-level array) directly from stream, so the whole response is never held in memory
+ *
+ * php scripts answer with array of rows, "null" when there are no rows
+ * or with object {"ok": false, "error": "..."} when query failed
+ */
+class PlanDecoder {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position, limit;
+    private final StringBuilder text = new StringBuilder(); // reused for every string value
+    private boolean first; // next row / field is first in its array / object
+
+    PlanDecoder(@NotNull InputStream in) {
+        this.in = new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * read plans from stream and give them one by one to consumer
+     *
+     * @param in       response of php script returning rows of calendar table
+     * @param consumer receiver of decoded plans
+     * @return number of decoded plans
+     */
+    static int decodePlans(@NotNull InputStream in, @NotNull Consumer<Plan> consumer) throws IOException, ConnectionException {
+        PlanDecoder decoder = new PlanDecoder(in);
+        int count = 0;
+        if (!decoder.beginRows()) {
+            return 0;
+        }
+        while (decoder.nextRow()) {
+            int id = 0, year = 0, month = 0, day = 0;
+            String name = "", time = "";
+            String field;
+            while ((field = decoder.nextField()) != null) {
+                switch (field) {
+                    case "id": id = decoder.readInt(); break;
+                    case "year": year = decoder.readInt(); break;
+                    case "month": month = decoder.readInt(); break;
+                    case "day": day = decoder.readInt(); break;
+                    case "name": name = decoder.readString(""); break;
+                    case "time": time = decoder.readString(""); break;
+                    default: decoder.skipValue();
+                }
+            }
+            consumer.accept(new Plan(id, name, time, year, month, day));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * read plans from stream directly to columnar batch (no plan object is created)
+     * rows with invalid date are left out
+     *
+     * @param in response of php script returning rows of calendar table
+     * @return decoded plans
+     */
+    static PlanBatch decodeBatch(@NotNull InputStream in) throws IOException, ConnectionException {
+        PlanDecoder decoder = new PlanDecoder(in);
+        PlanBatch.Builder batch = new PlanBatch.Builder();
+        if (!decoder.beginRows()) {
+            return batch.build();
+        }
+        while (decoder.nextRow()) {
+            int id = 0, year = 0, month = 0, day = 0, minute = PlanBatch.ALL_DAY;
+            String name = "";
+            String field;
+            while ((field = decoder.nextField()) != null) {
+                switch (field) {
+                    case "id": id = decoder.readInt(); break;
+                    case "year": year = decoder.readInt(); break;
+                    case "month": month = decoder.readInt(); break;
+                    case "day": day = decoder.readInt(); break;
+                    case "name": name = decoder.readString(""); break;
+                    case "time": minute = PlanBatch.minuteOfDay(decoder.readString("")); break;
+                    default: decoder.skipValue();
+                }
+            }
+            try {
+                batch.add(id, name, LocalDate.of(year, month, day).toEpochDay(), minute);
+            } catch (DateTimeException e) {
+                // plan can't be shown without valid date
+            }
+        }
+        return batch.build();
+    }
+
+    /**
+     * read rows with columns year, month and count (numbers of plans in months)
+     *
+     * @param in response of php script
+     * @return summary of plans
+     */
+    static PlanSummary decodeSummary(@NotNull InputStream in) throws IOException, ConnectionException {
+        PlanDecoder decoder = new PlanDecoder(in);
+        PlanSummary summary = new PlanSummary();
+        if (!decoder.beginRows()) {
+            return summary;
+        }
+        while (decoder.nextRow()) {
+            int year = 0, month = 0, count = 0;
+            String field;
+            while ((field = decoder.nextField()) != null) {
+                switch (field) {
+                    case "year": year = decoder.readInt(); break;
+                    case "month": month = decoder.readInt(); break;
+                    case "count": count = decoder.readInt(); break;
+                    default: decoder.skipValue();
+                }
+            }
+            summary.add(year, month, count);
+        }
+        return summary;
+    }
+
+    /**
+     * read rows with columns day and count (numbers of plans in days of month)
+     *
+     * @param in     response of php script
+     * @param length number of days in month
+     * @return numbers of plans in days of month (index 0 = first day)
+     */
+    static int[] decodeDayCounts(@NotNull InputStream in, int length) throws IOException, ConnectionException {
+        PlanDecoder decoder = new PlanDecoder(in);
+        int[] counts = new int[length];
+        if (!decoder.beginRows()) {
+            return counts;
+        }
+        while (decoder.nextRow()) {
+            int day = 0, count = 0;
+            String field;
+            while ((field = decoder.nextField()) != null) {
+                switch (field) {
+                    case "day": day = decoder.readInt(); break;
+                    case "count": count = decoder.readInt(); break;
+                    default: decoder.skipValue();
+                }
+            }
+            if (day >= 1 && day <= length) {
+                counts[day - 1] = count;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * read changes of plans {"version": n, "changes": [...]} - current version and rows of changes with columns
+     * of calendar table, version of change and flag "deleted" (deleted plan has only id)
+     *
+     * @param in    response of php script
+     * @param epoch identity of log of changes, see {@link PlanChanges#token(long, int)}
+     * @param limit maximal number of returned changes (script sends more when there are more)
+     * @return decoded changes
+     */
+    static PlanChanges decodeChanges(@NotNull InputStream in, long epoch, int limit) throws IOException, ConnectionException {
+        PlanDecoder decoder = new PlanDecoder(in);
+        if (decoder.peek() != '{') {
+            throw new IOException("Invalid response of server: expected '{'");
+        }
+        decoder.expect('{');
+        decoder.first = true;
+        PlanChanges.Builder changes = new PlanChanges.Builder(epoch);
+        int current = -1;
+        String name;
+        while ((name = decoder.nextField()) != null) {
+            switch (name) {
+                case "version": current = decoder.readInt(); break;
+                case "error": throw new ConnectionException(decoder.readString("Failed to read response of server"));
+                case "changes":
+                    if (decoder.peek() == 'n') {
+                        decoder.skipValue();
+                        break;
+                    }
+                    decoder.expect('[');
+                    decoder.first = true;
+                    while (decoder.nextRow()) {
+                        decoder.readChange(changes);
+                    }
+                    decoder.first = false; // next field of response follows
+                    break;
+                default: decoder.skipValue();
+            }
+        }
+        if (current < 0) {
+            throw new ConnectionException("Failed to read changes of plans");
+        }
+        return changes.build(current, limit);
+    }
+
+    /**
+     * read one row of changes (row was started by nextRow)
+     */
+    private void readChange(PlanChanges.Builder changes) throws IOException {
+        int id = 0, version = 0, year = 0, month = 0, day = 0;
+        boolean deleted = false;
+        String name = "", time = "";
+        String field;
+        while ((field = nextField()) != null) {
+            switch (field) {
+                case "id": id = readInt(); break;
+                case "version": version = readInt(); break;
+                case "deleted": deleted = readInt() != 0; break;
+                case "year": year = readInt(); break;
+                case "month": month = readInt(); break;
+                case "day": day = readInt(); break;
+                case "name": name = readString(""); break;
+                case "time": time = readString(""); break;
+                default: skipValue();
+            }
+        }
+        if (deleted) {
+            changes.deleted(id, version);
+        } else {
+            changes.changed(new Plan(id, name, time, year, month, day), version);
+        }
+    }
+
+    /**
+     * read value of one integer column from every row
+     *
+     * @param in     response of php script
+     * @param column name of column
+     * @param values receiver of values
+     */
+    static void decodeInts(@NotNull InputStream in, @NotNull String column, @NotNull IntConsumer values) throws IOException, ConnectionException {
+        PlanDecoder decoder = new PlanDecoder(in);
+        if (!decoder.beginRows()) {
+            return;
+        }
+        while (decoder.nextRow()) {
+            String field;
+            while ((field = decoder.nextField()) != null) {
+                if (field.equals(column) && decoder.peek() != 'n') {
+                    values.accept(decoder.readInt());
+                } else {
+                    decoder.skipValue();
+                }
+            }
+        }
+    }
+
+    /**
+     * read integer field of response containing single object (for example {"MAX(id)": 12})
+     *
+     * @param in           response of php script
+     * @param field        name of field
+     * @param defaultValue value returned when field is missing or null
+     * @return value of field
+     */
+    static int decodeInt(@NotNull InputStream in, @NotNull String field, int defaultValue) throws IOException, ConnectionException {
+        PlanDecoder decoder = new PlanDecoder(in);
+        int c = decoder.peek();
+        if (c != '{') {
+            if (c != -1) {
+                decoder.skipValue();
+            }
+            return defaultValue;
+        }
+        decoder.expect('{');
+        decoder.first = true;
+        int value = defaultValue;
+        String name;
+        while ((name = decoder.nextField()) != null) {
+            if (name.equals(field) && decoder.peek() != 'n') {
+                value = decoder.readInt();
+            } else if (name.equals("error")) {
+                throw new ConnectionException(decoder.readString("Failed to read response of server"));
+            } else {
+                decoder.skipValue();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * read status response {"ok": true} or {"ok": false, "error": "..."}
+     *
+     * @param in response of php script
+     * @throws ConnectionRejectedException if response contains error
+     */
+    static void decodeStatus(@NotNull InputStream in) throws IOException, ConnectionException {
+        PlanDecoder decoder = new PlanDecoder(in);
+        decoder.expect('{');
+        decoder.first = true;
+        String name;
+        while ((name = decoder.nextField()) != null) {
+            if (name.equals("error")) {
+                throw new ConnectionRejectedException(decoder.readString("Failed to read response of server"));
+            }
+            decoder.skipValue();
+        }
+    }
+
+    /**
+     * receiver of primitive int values (java.util.function.IntConsumer can't throw)
+     */
+    interface IntConsumer {
+        void accept(int value) throws ConnectionException;
+    }
+
+    /**
+     * start reading response
+     *
+     * @return true if response contains rows, false if it is empty ("null" or "[]" is empty)
+     * @throws ConnectionException if response is error object
+     */
+    boolean beginRows() throws IOException, ConnectionException {
+        int c = peek();
+        if (c == -1) {
+            return false;
+        } else if (c == 'n') {
+            skipValue();
+            return false;
+        } else if (c == '{') {
+            throw new ConnectionException(readError());
+        }
+        expect('[');
+        first = true;
+        return true;
+    }
+
+    /**
+     * move to next row
+     *
+     * @return false when there are no more rows
+     */
+    boolean nextRow() throws IOException {
+        if (!nextElement(']')) {
+            return false;
+        }
+        expect('{');
+        first = true;
+        return true;
+    }
+
+    /**
+     * move to next field of current row
+     *
+     * @return name of field or null when row has no more fields
+     */
+    String nextField() throws IOException {
+        if (!nextElement('}')) {
+            first = false;
+            return null;
+        }
+        String name = readString(null);
+        expect(':');
+        return name;
+    }
+
+    /**
+     * skip separator before next element of array or object
+     *
+     * @param end character closing array or object
+     * @return true if there is next element
+     */
+    private boolean nextElement(char end) throws IOException {
+        int c = peek();
+        if (c == end) {
+            position++;
+            return false;
+        }
+        if (!first) {
+            expect(',');
+            if (peek() == end) { // trailing comma
+                throw syntaxError("unexpected '" + end + "'");
+            }
+        }
+        first = false;
+        return true;
+    }
+
+    /**
+     * read integer value (php may send numbers also as strings)
+     */
+    int readInt() throws IOException {
+        int c = peek();
+        boolean quoted = c == '"';
+        if (quoted) {
+            position++;
+        }
+        boolean negative = false;
+        if (current() == '-') {
+            negative = true;
+            position++;
+        }
+        long value = 0, limit = (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE);
+        int digits = 0;
+        while (fill() && buffer[position] >= '0' && buffer[position] <= '9') {
+            value = value * 10 + (buffer[position++] - '0');
+            if (value > limit) {
+                throw syntaxError("number out of range of int");
+            }
+            digits++;
+        }
+        if (digits == 0) {
+            throw syntaxError("expected number");
+        }
+        if (quoted) {
+            if (current() != '"') {
+                throw syntaxError("expected number");
+            }
+            position++;
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * read string value
+     *
+     * @param ifNull value returned when json value is null
+     */
+    String readString(String ifNull) throws IOException {
+        int c = peek();
+        if (c == 'n') {
+            skipValue();
+            return ifNull;
+        }
+        expect('"');
+        text.setLength(0);
+        while (true) {
+            if (!fill()) {
+                throw syntaxError("unterminated string");
+            }
+            // copy run of plain characters at once
+            int start = position;
+            while (position < limit && buffer[position] != '"' && buffer[position] != '\\') {
+                position++;
+            }
+            text.append(buffer, start, position - start);
+            if (position == limit) {
+                continue;
+            }
+            if (buffer[position++] == '"') {
+                return text.toString();
+            }
+            text.append(readEscape());
+        }
+    }
+
+    private char readEscape() throws IOException {
+        char c = current();
+        position++;
+        switch (c) {
+            case '"': case '\\': case '/': return c;
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(current(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("invalid unicode escape");
+                    }
+                    value = value * 16 + digit;
+                    position++;
+                }
+                return (char) value;
+            default:
+                throw syntaxError("invalid escape");
+        }
+    }
+
+    /**
+     * skip any json value (including nested objects and arrays)
+     */
+    void skipValue() throws IOException {
+        int c = peek();
+        if (c == '"') {
+            readString(null);
+        } else if (c == '{' || c == '[') {
+            position++;
+            int depth = 1;
+            while (depth > 0) {
+                c = peek();
+                if (c == '"') {
+                    readString(null);
+                    continue;
+                } else if (c == -1) {
+                    throw syntaxError("unexpected end of response");
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+                position++;
+            }
+        } else {
+            // number, true, false or null
+            int count = 0;
+            while (fill() && ",}] \t\r\n".indexOf(buffer[position]) < 0) {
+                position++;
+                count++;
+            }
+            if (count == 0) {
+                throw syntaxError("expected value");
+            }
+        }
+    }
+
+    /**
+     * read error object {"ok": false, "error": "..."}
+     */
+    private String readError() throws IOException {
+        String error = "Failed to read response of server";
+        position++;
+        first = true;
+        String field;
+        while ((field = nextField()) != null) {
+            if (field.equals("error")) {
+                error = readString(error);
+            } else {
+                skipValue();
+            }
+        }
+        return error;
+    }
+
+    /**
+     * skip whitespace
+     * @return next character or -1 at the end of stream
+     */
+    int peek() throws IOException {
+        while (fill()) {
+            char c = buffer[position];
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                return c;
+            }
+            position++;
+        }
+        return -1;
+    }
+
+    private void expect(char expected) throws IOException {
+        if (peek() != expected) {
+            throw syntaxError("expected '" + expected + "'");
+        }
+        position++;
+    }
+
+    private char current() throws IOException {
+        if (!fill()) {
+            throw syntaxError("unexpected end of response");
+        }
+        return buffer[position];
+    }
+
+    /**
+     * @return false if there are no more characters
+     */
+    private boolean fill() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("Invalid response of server: " + message);
+    }
+}
@@ -0,0 +1,60 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * one change of stored plans - adding, updating or deleting of plan
+ * changes are sent to connection together in batch (see {@link Connection#applyBatch(java.util.List)})
+ */
+final class PlanMutation {
+    enum Type { ADD, UPDATE, DELETE }
+
+    private final Type type;
+    private final int id;
+    private final Plan plan; // null for deleting
+
+    private PlanMutation(@NotNull Type type, int id, Plan plan) {
+        this.type = type;
+        this.id = id;
+        this.plan = plan;
+    }
+
+    /**
+     * @param plan new plan, connection sets its id when it is added
+     */
+    static PlanMutation add(@NotNull Plan plan) {
+        return new PlanMutation(Type.ADD, plan.getId(), plan);
+    }
+
+    /**
+     * @param plan changed plan
+     */
+    static PlanMutation update(@NotNull Plan plan) {
+        return new PlanMutation(Type.UPDATE, plan.getId(), plan);
+    }
+
+    /**
+     * @param idPlan id of deleted plan
+     */
+    static PlanMutation delete(int idPlan) {
+        return new PlanMutation(Type.DELETE, idPlan, null);
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    /**
+     * @return id of changed plan (id of new plan when mutation was created)
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * @return added or updated plan, null for deleting
+     */
+    Plan getPlan() {
+        return plan;
+    }
+}
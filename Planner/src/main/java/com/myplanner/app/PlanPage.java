@@ -0,0 +1,153 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * one page of search results ordered by (year, month, day, time, id) - plans without time are first in day
+ * next page is requested by continuation token of this page, which holds key of its last plan (keyset pagination),
+ * so pages stay consistent when plans before them are added or deleted
+ */
+final class PlanPage {
+    private final PlanBatch plans;
+    private final String next; // null when this is the last page
+
+    /**
+     * @param plans plans of page
+     * @param next  continuation token of next page, null when there are no more plans
+     */
+    PlanPage(@NotNull PlanBatch plans, String next) {
+        this.plans = plans;
+        this.next = next;
+    }
+
+    PlanBatch getPlans() {
+        return plans;
+    }
+
+    /**
+     * @return continuation token for next page, null when this is the last page
+     */
+    String getNext() {
+        return next;
+    }
+
+    boolean hasNext() {
+        return next != null;
+    }
+
+    /**
+     * create page from plans loaded by query with limit one bigger than page size
+     *
+     * @param loaded   at most pageSize + 1 plans following previous page
+     * @param pageSize number of plans in page
+     * @return page of first pageSize plans, next page exists when more plans were loaded
+     */
+    static PlanPage of(@NotNull PlanBatch loaded, int pageSize) {
+        if (loaded.size() <= pageSize) {
+            return new PlanPage(loaded, null);
+        }
+        PlanBatch page = loaded.first(pageSize);
+        int last = pageSize - 1;
+        return new PlanPage(page, token(page.epochDay(last), page.minuteOfDay(last), page.id(last)));
+    }
+
+    /**
+     * page of plans which are all in memory (for connections without query language)
+     *
+     * @param all      all plans matching search in any order
+     * @param pageSize number of plans in page
+     * @param after    token of previous page, null for first page
+     */
+    static PlanPage slice(@NotNull PlanBatch all, int pageSize, String after) throws ConnectionException {
+        Key key = (after == null ? null : Key.of(after));
+        int[] order = IntStream.range(0, all.size())
+                .filter(i -> key == null || key.isBefore(all.epochDay(i), all.minuteOfDay(i), all.id(i)))
+                .boxed()
+                .sorted(Comparator.<Integer>comparingInt(all::epochDay)
+                        .thenComparingInt(all::minuteOfDay)
+                        .thenComparingInt(all::id))
+                .limit(pageSize + 1L)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        PlanBatch.Builder loaded = new PlanBatch.Builder(order.length);
+        for (int i : order) {
+            loaded.add(all.id(i), all.name(i), all.epochDay(i), all.minuteOfDay(i));
+        }
+        return of(loaded.build(), pageSize);
+    }
+
+    /**
+     * @param epochDay    day of plan
+     * @param minuteOfDay minute of day of plan or {@link PlanBatch#ALL_DAY}
+     * @param id          id of plan
+     * @return opaque continuation token of page ending by given plan
+     */
+    static String token(int epochDay, int minuteOfDay, int id) {
+        String key = epochDay + ":" + minuteOfDay + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * key of last plan of page - next page contains plans ordered after it
+     */
+    static final class Key {
+        final int year, month, day, minuteOfDay, id;
+        private final int epochDay;
+
+        private Key(int epochDay, int minuteOfDay, int id) {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            this.epochDay = epochDay;
+            this.year = date.getYear();
+            this.month = date.getMonthValue();
+            this.day = date.getDayOfMonth();
+            this.minuteOfDay = minuteOfDay;
+            this.id = id;
+        }
+
+        /**
+         * @param token continuation token given by {@link #getNext()}
+         * @throws ConnectionException if token wasn't created by this class
+         */
+        static Key of(@NotNull String token) throws ConnectionException {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII).split(":");
+                if (parts.length == 3) {
+                    int minute = Integer.parseInt(parts[1]);
+                    if (minute >= PlanBatch.ALL_DAY && minute < 24 * 60) {
+                        return new Key(Integer.parseInt(parts[0]), minute, Integer.parseInt(parts[2]));
+                    }
+                }
+            } catch (IllegalArgumentException | DateTimeException e) {
+                // invalid token
+            }
+            throw new ConnectionException("Invalid continuation token of search");
+        }
+
+        /**
+         * @return true if plan with given key is ordered after this key
+         */
+        boolean isBefore(int epochDay, int minuteOfDay, int id) {
+            if (epochDay != this.epochDay) {
+                return epochDay > this.epochDay;
+            } else if (minuteOfDay != this.minuteOfDay) {
+                return minuteOfDay > this.minuteOfDay;
+            }
+            return id > this.id;
+        }
+
+        /**
+         * @return true if given plan is ordered after this key
+         */
+        boolean isBefore(@NotNull Plan plan) {
+            return isBefore((int) LocalDate.of(plan.getYear(), plan.getMonth(), plan.getDay()).toEpochDay(),
+                    PlanBatch.minuteOfDay(plan.getTime()), plan.getId());
+        }
+    }
+}
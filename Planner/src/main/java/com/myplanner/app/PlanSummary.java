@@ -0,0 +1,91 @@
+package com.myplanner.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * numbers of plans in every month of every year
+ * loaded by one aggregate query (see {@link Connection#getSummary()}) and then changed locally
+ */
+final class PlanSummary {
+    private final TreeMap<Integer, int[]> counts = new TreeMap<>(); // year -> numbers of plans in months (0 = January)
+
+    /**
+     * change number of plans in month
+     *
+     * @param year  year
+     * @param month month (1 - 12)
+     * @param count added number of plans, negative when plans were removed
+     */
+    void add(int year, int month, int count) {
+        if (month < 1 || month > 12) {
+            return;
+        }
+        int[] months = counts.computeIfAbsent(year, k -> new int[12]);
+        months[month - 1] = Math.max(0, months[month - 1] + count);
+        if (count < 0 && count(year) == 0) {
+            counts.remove(year);
+        }
+    }
+
+    /**
+     * @return number of plans in given month
+     */
+    int count(int year, int month) {
+        int[] months = counts.get(year);
+        return (months == null || month < 1 || month > 12) ? 0 : months[month - 1];
+    }
+
+    /**
+     * @return number of plans in given year
+     */
+    int count(int year) {
+        int[] months = counts.get(year);
+        int sum = 0;
+        if (months != null) {
+            for (int count : months) {
+                sum += count;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return years which have at least one plan, sorted
+     */
+    int[] years() {
+        List<Integer> years = new ArrayList<>();
+        for (Map.Entry<Integer, int[]> entry : counts.entrySet()) {
+            if (count(entry.getKey()) > 0) {
+                years.add(entry.getKey());
+            }
+        }
+        return years.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return years in form used by picker of years ("ANY" first)
+     */
+    String[] yearNames() {
+        int[] years = years();
+        String[] names = new String[years.length + 1];
+        names[0] = "ANY";
+        for (int i = 0; i < years.length; i++) {
+            names[i + 1] = String.valueOf(years[i]);
+        }
+        return names;
+    }
+
+    /**
+     * @return independent copy of this summary
+     */
+    PlanSummary copy() {
+        PlanSummary copy = new PlanSummary();
+        for (Map.Entry<Integer, int[]> entry : counts.entrySet()) {
+            copy.counts.put(entry.getKey(), entry.getValue().clone());
+        }
+        return copy;
+    }
+}
@@ -18,6 +18,7 @@ public class PlannerBox extends JPanel implements ActionListener {
     private final JButton buttonEdit = new JButton("Edit");
     private final JButton buttonSave = new JButton("Save");
     private final JButton buttonDelete = new JButton("Delete");
+    private final JLabel label1, label2, label3;
     private final JLabel labelName, labelDate, labelTime;
     private final JTextField fieldName, fieldDate, fieldTime;
     private final Connection connection; // connection to database
@@ -37,9 +38,9 @@ public class PlannerBox extends JPanel implements ActionListener {
         this.display = display;
 
         // set data
-        JLabel label1 = new JLabel("Name: ");
-        JLabel label2 = new JLabel("Date: ");
-        JLabel label3 = new JLabel("Time: ");
+        label1 = new JLabel("Name: ");
+        label2 = new JLabel("Date: ");
+        label3 = new JLabel("Time: ");
         labelName = new JLabel(plan.getName());
         labelDate = new JLabel(plan.getDate());
         labelTime = new JLabel(plan.getTimeText());
@@ -148,12 +149,12 @@ public class PlannerBox extends JPanel implements ActionListener {
                     labelTime.setText(plan.getTimeText());
                     show = true;
 
-                    // save changes in database
-                    try {
-                        connection.updatePlan(plan);
-                    } catch (ConnectionException ex) {
-                        Planner.showWarning(display, ex.getMessage());
-                    }
+                    // save changes in database (in background)
+                    Plan changed = plan.copy();
+                    BackgroundTasks.execute(() -> {
+                        connection.updatePlan(changed);
+                        return null;
+                    }, saved -> {}, this::showWarning);
                 } else {
                     fieldTime.setBackground(Color.RED);
                     return;
@@ -165,11 +166,11 @@ public class PlannerBox extends JPanel implements ActionListener {
 
         } else if (e.getSource() == buttonDelete) {
             removeAll(); //remove box from window
-            try {
-                connection.deletePlan(plan.getId()); // delete plan from database
-            } catch (ConnectionException ex) {
-                Planner.showWarning(display, ex.getMessage());
-            }
+            int id = plan.getId();
+            BackgroundTasks.execute(() -> {
+                connection.deletePlan(id); // delete plan from database
+                return null;
+            }, deleted -> {}, this::showWarning);
         }
 
         // update visibility of components
@@ -187,4 +188,10 @@ public class PlannerBox extends JPanel implements ActionListener {
         this.revalidate();
         this.repaint();
     }
+
+    private void showWarning(ConnectionException ex) {
+        Planner.showWarning(display, ex.getMessage());
+        display.revalidate();
+        display.repaint();
+    }
 }
@@ -0,0 +1,382 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.border.LineBorder;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableCellEditor;
+import javax.swing.table.TableCellRenderer;
+import java.awt.*;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * virtualized list of results of query - table paints only visible rows, so it stays smooth with many plans
+ * results are loaded by pages, next page is loaded when user scrolls near the end of loaded plans
+ * row is switched to editing by double click on cell (changes are validated like in {@link PlannerBox}),
+ * plan is deleted by button in last column
+ */
+class ResultView extends JPanel {
+    private static final int VISIBLE_ROWS = 20; // height of view in rows
+
+    private final PlanTableModel model;
+    private final JTable table;
+    private final JLabel count = new JLabel();
+    private final Pages pages;
+    private final Consumer<ConnectionException> onError;
+    private final BackgroundTasks loading = new BackgroundTasks();
+    private String next; // token of next page, null when all plans are loaded
+    private boolean loadingNext;
+
+    /**
+     * loading of next page of results
+     */
+    interface Pages {
+        /**
+         * @param after continuation token of previous page
+         */
+        PlanPage load(@NotNull String after) throws ConnectionException;
+    }
+
+    /**
+     * @param first      first page of result of query
+     * @param pages      loading of following pages
+     * @param connection connection to database which saves changes
+     * @param display    panel where view is in (warnings are shown there)
+     */
+    ResultView(@NotNull PlanPage first, @NotNull Pages pages, @NotNull Connection connection, @NotNull JPanel display) {
+        this.pages = pages;
+        onError = e -> {
+            Planner.showWarning(display, e.getMessage());
+            display.revalidate();
+            display.repaint();
+        };
+        model = new PlanTableModel(connection, onError);
+        model.append(first.getPlans());
+        next = first.getNext();
+
+        table = new JTable(model);
+        table.getTableHeader().setReorderingAllowed(false);
+        table.setFillsViewportHeight(true);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        for (int column = 0; column < PlanTableModel.DELETE; column++) {
+            table.getColumnModel().getColumn(column).setCellEditor(new PlanCellEditor(model));
+        }
+        table.getColumnModel().getColumn(PlanTableModel.DELETE).setCellRenderer(new DeleteButton(model));
+        table.getColumnModel().getColumn(PlanTableModel.DELETE).setCellEditor(new DeleteButton(model));
+        table.getColumnModel().getColumn(PlanTableModel.DELETE).setMaxWidth(80);
+        table.setPreferredScrollableViewportSize(new Dimension(
+                table.getPreferredScrollableViewportSize().width, table.getRowHeight() * VISIBLE_ROWS));
+
+        JScrollPane scroll = new JScrollPane(table);
+        scroll.getVerticalScrollBar().addAdjustmentListener(e -> loadIfNeeded(scroll.getVerticalScrollBar().getModel()));
+
+        setLayout(new BorderLayout());
+        add(count, BorderLayout.NORTH);
+        add(scroll, BorderLayout.CENTER);
+        setAlignmentX(LEFT_ALIGNMENT);
+        updateCount();
+    }
+
+    /**
+     * load next page in background when less than one screen of loaded rows is left below visible rows
+     */
+    private void loadIfNeeded(BoundedRangeModel scrolled) {
+        if (next == null || loadingNext
+                || scrolled.getValue() + scrolled.getExtent() < scrolled.getMaximum() - table.getRowHeight() * VISIBLE_ROWS) {
+            return;
+        }
+        loadingNext = true;
+        String after = next;
+        loading.replace(() -> pages.load(after), page -> {
+            loadingNext = false;
+            next = page.getNext();
+            model.append(page.getPlans()); // changes scroll bar, so next page is loaded if it is still needed
+            updateCount();
+        }, e -> {
+            loadingNext = false;
+            onError.accept(e);
+        });
+    }
+
+    private void updateCount() {
+        int rows = model.getRowCount();
+        count.setText(rows + (rows == 1 ? " plan" : " plans") + (next != null ? ", more are loaded while scrolling" : ""));
+    }
+}
+
+/**
+ * rows of table backed by columnar batches (pages of result) - plan object is created only for edited row
+ * edited plans are kept aside, deleted plans are left out of shown rows
+ */
+class PlanTableModel extends AbstractTableModel {
+    static final int NAME = 0, DATE = 1, TIME = 2, DELETE = 3;
+    private static final String[] COLUMNS = {"Name", "Date", "Time", ""};
+
+    private final Connection connection;
+    private final Consumer<ConnectionException> onError;
+    private final List<PlanBatch> pages = new ArrayList<>();
+    private int[] starts = new int[8]; // index (among all loaded plans) of first plan of every page
+    private int loaded; // number of loaded plans
+    private final Map<Integer, Plan> changed = new HashMap<>(); // index of loaded plan -> edited plan
+    private int[] rows; // indexes of loaded plans in shown rows, null when no plan was deleted
+    private int size;
+
+    /**
+     * @param connection connection to database which saves changes
+     * @param onError    called on event dispatch thread when change wasn't saved
+     */
+    PlanTableModel(@NotNull Connection connection, @NotNull Consumer<ConnectionException> onError) {
+        this.connection = connection;
+        this.onError = onError;
+    }
+
+    /**
+     * add page of plans to the end of table
+     */
+    void append(@NotNull PlanBatch page) {
+        if (page.isEmpty()) {
+            return;
+        }
+        if (pages.size() == starts.length) {
+            starts = Arrays.copyOf(starts, starts.length * 2);
+        }
+        starts[pages.size()] = loaded;
+        pages.add(page);
+        if (rows != null) {
+            rows = Arrays.copyOf(rows, size + page.size());
+            for (int i = 0; i < page.size(); i++) {
+                rows[size + i] = loaded + i;
+            }
+        }
+        int first = size;
+        loaded += page.size();
+        size += page.size();
+        fireTableRowsInserted(first, size - 1);
+    }
+
+    @Override
+    public int getRowCount() {
+        return size;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return true;
+    }
+
+    /**
+     * values are read from batch without creating plan (only edited rows have plan)
+     */
+    @Override
+    public Object getValueAt(int row, int column) {
+        int index = index(row);
+        Plan plan = changed.get(index);
+        PlanBatch page = pages.get(page(index));
+        int i = index - starts[page(index)];
+        switch (column) {
+            case NAME:
+                return plan != null ? plan.getName() : page.name(i);
+            case DATE:
+                if (plan != null) {
+                    return plan.getDate();
+                }
+                LocalDate date = page.date(i);
+                return date.getDayOfMonth() + "." + date.getMonthValue() + "." + date.getYear();
+            case TIME:
+                return plan != null ? plan.getTimeText() : timeText(page.minuteOfDay(i));
+            default:
+                return "Delete";
+        }
+    }
+
+    /**
+     * @return text which is edited in given cell (time of all day plan is empty)
+     */
+    String editText(int row, int column) {
+        return column == TIME ? plan(row).getTime() : String.valueOf(getValueAt(row, column));
+    }
+
+    /**
+     * @return plan of row with given value of column or null when value isn't valid
+     */
+    Plan edited(int row, int column, String value) {
+        Plan plan = plan(row).copy();
+        String name = plan.getName(), time = plan.getTime();
+        int year = plan.getYear(), month = plan.getMonth(), day = plan.getDay();
+        try {
+            switch (column) {
+                case NAME: name = value; break;
+                case TIME: time = value; break;
+                case DATE:
+                    LocalDate date = AddingNew.getDate(value); // parse to valid date
+                    year = date.getYear();
+                    month = date.getMonthValue();
+                    day = date.getDayOfMonth();
+                    break;
+                default: return null;
+            }
+        } catch (DateTimeException e) {
+            return null;
+        }
+        return plan.setValuesIfValid(name, time, year, month, day) ? plan : null;
+    }
+
+    /**
+     * save valid value of cell (in background)
+     */
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        Plan plan = (value == null ? null : edited(row, column, value.toString()));
+        if (plan == null) {
+            return;
+        }
+        changed.put(index(row), plan);
+        fireTableRowsUpdated(row, row);
+
+        Plan saved = plan.copy();
+        BackgroundTasks.execute(() -> {
+            connection.updatePlan(saved);
+            return null;
+        }, done -> {}, onError::accept);
+    }
+
+    /**
+     * remove plan of row from table and delete it from database (in background)
+     */
+    void delete(int row) {
+        int id = plan(row).getId();
+        if (rows == null) {
+            rows = new int[size];
+            Arrays.setAll(rows, i -> i);
+        }
+        System.arraycopy(rows, row + 1, rows, row, size - row - 1);
+        size--;
+        fireTableRowsDeleted(row, row);
+
+        BackgroundTasks.execute(() -> {
+            connection.deletePlan(id);
+            return null;
+        }, done -> {}, onError::accept);
+    }
+
+    /**
+     * @return plan of row (edited plan or new plan created from batch)
+     */
+    Plan plan(int row) {
+        int index = index(row);
+        Plan plan = changed.get(index);
+        if (plan != null) {
+            return plan;
+        }
+        int page = page(index);
+        return pages.get(page).plan(index - starts[page]);
+    }
+
+    /**
+     * @return index of plan of row among all loaded plans
+     */
+    private int index(int row) {
+        return rows == null ? row : rows[row];
+    }
+
+    /**
+     * @return number of page which contains loaded plan with given index
+     */
+    private int page(int index) {
+        int page = Arrays.binarySearch(starts, 0, pages.size(), index);
+        return page >= 0 ? page : -page - 2;
+    }
+
+    private static String timeText(int minuteOfDay) {
+        if (minuteOfDay == PlanBatch.ALL_DAY) {
+            return "ALL DAY";
+        }
+        int hours = minuteOfDay / 60, minutes = minuteOfDay % 60;
+        return (hours < 10 ? "0" : "") + hours + (minutes < 10 ? ":0" : ":") + minutes;
+    }
+}
+
+/**
+ * editor of name, date and time - editing isn't finished while value is invalid (field is marked red)
+ */
+class PlanCellEditor extends DefaultCellEditor {
+    private final PlanTableModel model;
+    private final JTextField field;
+    private int row, column;
+
+    PlanCellEditor(@NotNull PlanTableModel model) {
+        super(new JTextField());
+        this.model = model;
+        field = (JTextField) getComponent();
+    }
+
+    @Override
+    public Component getTableCellEditorComponent(JTable table, Object value, boolean isSelected, int row, int column) {
+        this.row = row;
+        this.column = column;
+        field.setBorder(new LineBorder(Color.BLACK));
+        return super.getTableCellEditorComponent(table, model.editText(row, column), isSelected, row, column);
+    }
+
+    @Override
+    public boolean stopCellEditing() {
+        if (model.edited(row, column, field.getText()) == null) {
+            field.setBorder(new LineBorder(Color.RED)); // show warning
+            return false;
+        }
+        return super.stopCellEditing();
+    }
+}
+
+/**
+ * button deleting plan of row - renderer and editor of last column
+ */
+class DeleteButton extends AbstractCellEditor implements TableCellRenderer, TableCellEditor {
+    private final JButton button = new JButton("Delete");
+    private final PlanTableModel model;
+    private int row;
+
+    DeleteButton(@NotNull PlanTableModel model) {
+        this.model = model;
+        button.addActionListener(e -> {
+            int deleted = row;
+            fireEditingStopped();
+            model.delete(deleted);
+        });
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus,
+                                                   int row, int column) {
+        return button;
+    }
+
+    @Override
+    public Component getTableCellEditorComponent(JTable table, Object value, boolean isSelected, int row, int column) {
+        this.row = row;
+        return button;
+    }
+
+    @Override
+    public Object getCellEditorValue() {
+        return null;
+    }
+}
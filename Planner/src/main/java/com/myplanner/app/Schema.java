@@ -0,0 +1,248 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * schema of database used by {@link ConnectionToLocalDatabase}, created and migrated when database is first used
+ * applied migrations are recorded in table schema_version, so every migration runs only once in every database
+ * tables and indexes created by hand earlier are kept (migrations check that they exist)
+ */
+final class Schema {
+    private static final Logger LOG = Logger.getLogger("com.myplanner.app.schema");
+
+    static final String DATE_INDEX = "calendar_date"; // (year, month, day, time) - lookups of days and ranges
+    static final String NAME_INDEX = "calendar_name"; // full-text (ngram) index of names, only in MySQL
+    static final String VERSION_INDEX = "calendar_version"; // (version) - changes after given version
+    static final String DELETED_INDEX = "calendar_deleted_version"; // (version) of deleted plans
+
+    private static final int MIGRATION_ATTEMPTS = 3;
+    private static final long RETRY_DELAY = 100; // milliseconds
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "calendar table", con -> execute(con,
+                    "CREATE TABLE IF NOT EXISTS calendar (id INT PRIMARY KEY, name VARCHAR(255) NOT NULL,"
+                            + " year INT NOT NULL, month INT NOT NULL, day INT NOT NULL, time TIME NULL)")),
+            new Migration(2, "sequence of ids", con -> {
+                execute(con, "CREATE TABLE IF NOT EXISTS id_sequence (name VARCHAR(32) PRIMARY KEY, next_id INT NOT NULL)");
+                // counter starts after ids which are already used
+                execute(con, "INSERT IGNORE INTO id_sequence (name, next_id)"
+                        + " SELECT 'calendar', COALESCE(MAX(id), 0) + 1 FROM calendar");
+            }),
+            new Migration(3, "index of dates", con -> {
+                if (!hasIndex(con, "calendar", DATE_INDEX)) {
+                    execute(con, "CREATE INDEX " + DATE_INDEX + " ON calendar (year, month, day, time)");
+                }
+            }),
+            new Migration(4, "index of names", con -> {
+                // LOCATE can't use ordinary index - only full-text index split to pairs of letters finds parts of names
+                if (isMySQL(con) && !hasIndex(con, "calendar", NAME_INDEX)) {
+                    execute(con, "SET SESSION innodb_ft_enable_stopword = OFF"); // "a", "i", ... are in names too
+                    execute(con, "CREATE FULLTEXT INDEX " + NAME_INDEX + " ON calendar (name) WITH PARSER ngram");
+                }
+            }),
+            new Migration(5, "log of changes", con -> {
+                // every change gets next version from counter, deleted plans are kept as tombstones with version
+                // of deleting - rows existing before have version 0, they are older than any token of changes
+                if (!hasColumn(con, "calendar", "version")) {
+                    execute(con, "ALTER TABLE calendar ADD COLUMN version INT NOT NULL DEFAULT 0");
+                }
+                if (!hasIndex(con, "calendar", VERSION_INDEX)) {
+                    execute(con, "CREATE INDEX " + VERSION_INDEX + " ON calendar (version)");
+                }
+                execute(con, "CREATE TABLE IF NOT EXISTS calendar_deleted (id INT PRIMARY KEY, version INT NOT NULL)");
+                if (!hasIndex(con, "calendar_deleted", DELETED_INDEX)) {
+                    execute(con, "CREATE INDEX " + DELETED_INDEX + " ON calendar_deleted (version)");
+                }
+                execute(con, "INSERT IGNORE INTO id_sequence (name, next_id) VALUES ('calendar_version', 1)");
+            })
+    );
+
+    private Schema() {
+    }
+
+    private interface Step {
+        void apply(java.sql.Connection con) throws SQLException;
+    }
+
+    private static final class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    /**
+     * @return version which database has after all migrations
+     */
+    static int latest() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    /**
+     * apply migrations which weren't applied to database yet
+     * when other client migrates the same database at the same time, its migrations are accepted
+     *
+     * @param con connection to database (auto-commit)
+     * @return version of schema
+     */
+    static int migrate(@NotNull java.sql.Connection con) throws SQLException {
+        execute(con, "CREATE TABLE IF NOT EXISTS schema_version (version INT PRIMARY KEY,"
+                + " description VARCHAR(255) NOT NULL, applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        int current = version(con);
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version <= current) {
+                continue;
+            }
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    migration.step.apply(con);
+                    try (PreparedStatement applied = con.prepareStatement(
+                            "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                        applied.setInt(1, migration.version);
+                        applied.setString(2, migration.description);
+                        applied.executeUpdate();
+                    }
+                    LOG.info("schema: applied migration " + migration.version + " (" + migration.description + ")");
+                    break;
+                } catch (SQLException e) {
+                    if (attempt == MIGRATION_ATTEMPTS) {
+                        throw e;
+                    }
+                    // other client may be applying it just now - it is given time to record it,
+                    // otherwise migration runs again (steps skip what exists)
+                    pause(RETRY_DELAY * attempt);
+                    if (version(con) >= migration.version) {
+                        break;
+                    }
+                }
+            }
+            current = migration.version;
+        }
+        return current;
+    }
+
+    /**
+     * @return the last applied migration, 0 for new database
+     */
+    static int version(@NotNull java.sql.Connection con) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    static boolean isMySQL(@NotNull java.sql.Connection con) throws SQLException {
+        return con.getMetaData().getDatabaseProductName().equalsIgnoreCase("MySQL");
+    }
+
+    static boolean hasIndex(@NotNull java.sql.Connection con, String table, String index) throws SQLException {
+        DatabaseMetaData meta = con.getMetaData();
+        // names are stored in upper or lower case depending on database
+        for (String name : new String[]{table, table.toUpperCase(Locale.ROOT)}) {
+            try (ResultSet rs = meta.getIndexInfo(con.getCatalog(), null, name, false, true)) {
+                while (rs.next()) {
+                    if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    static boolean hasColumn(@NotNull java.sql.Connection con, String table, String column) throws SQLException {
+        DatabaseMetaData meta = con.getMetaData();
+        for (String name : new String[]{table, table.toUpperCase(Locale.ROOT)}) {
+            try (ResultSet rs = meta.getColumns(con.getCatalog(), null, name, null)) {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param query      query with parameters
+     * @param parameters values of parameters
+     * @return plan of query given by EXPLAIN, columns of all rows (format depends on database)
+     */
+    static String explain(@NotNull java.sql.Connection con, @NotNull String query, Object... parameters)
+            throws SQLException {
+        try (PreparedStatement explain = con.prepareStatement("EXPLAIN " + query)) {
+            for (int i = 0; i < parameters.length; i++) {
+                explain.setObject(i + 1, parameters[i]);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = explain.executeQuery()) {
+                ResultSetMetaData columns = rs.getMetaData();
+                while (rs.next()) {
+                    for (int i = 1; i <= columns.getColumnCount(); i++) {
+                        if (columns.getColumnLabel(i).equalsIgnoreCase("possible_keys")) {
+                            continue; // indexes which MySQL considered, not the one it reads
+                        }
+                        plan.append(columns.getColumnLabel(i)).append('=').append(rs.getString(i)).append(' ');
+                    }
+                    plan.append('\n');
+                }
+            }
+            return plan.toString();
+        }
+    }
+
+    /**
+     * @return whether plan given by {@link #explain} reads given index
+     */
+    static boolean uses(@NotNull String plan, @NotNull String index) {
+        return plan.toLowerCase(Locale.ROOT).contains(index.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * check by EXPLAIN that query reads given index, warning with plan of query is logged when it doesn't
+     * (database may choose full scan of small table, so warning matters when table is large)
+     *
+     * @return whether query reads index
+     */
+    static boolean verify(@NotNull java.sql.Connection con, @NotNull String query, @NotNull String index,
+                          Object... parameters) throws SQLException {
+        String plan = explain(con, query, parameters);
+        if (!uses(plan, index)) {
+            LOG.warning("schema: query doesn't use index " + index + ": " + query + System.lineSeparator() + plan);
+            return false;
+        }
+        return true;
+    }
+
+    private static void pause(long millis) throws SQLException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while migrating schema");
+        }
+    }
+
+    private static void execute(java.sql.Connection con, String sql) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.executeUpdate(sql);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * plans loaded so far by one search (pages in order of search) with token of the page which follows them
+ * narrower search (longer part of name, the same or chosen year, month and day) is answered from them -
+ * only plans after loaded ones are requested, they are searched on server with the narrower parameters
+ * loaded plans aren't used after any plan was changed by this application (see {@link ChangeWatcher})
+ * or when they are older than given time (plans could be changed by other clients)
+ */
+final class SearchResult {
+    private static final AtomicLong CHANGES = new AtomicLong(); // changes of plans made through any planner
+
+    private final String name;
+    private final int year, month, day;
+    private final long changes;  // CHANGES when plans started loading
+    private final long loadedAt; // System.nanoTime() when plans started loading
+    private final List<PlanBatch> pages = new ArrayList<>(); // guarded by this
+    private String next; // guarded by this, null when all plans are loaded
+
+    /**
+     * start new search with given parameters (no plans are loaded yet)
+     */
+    SearchResult(@NotNull String name, int year, int month, int day) {
+        this(name, year, month, day, CHANGES.get(), System.nanoTime());
+    }
+
+    private SearchResult(String name, int year, int month, int day, long changes, long loadedAt) {
+        this.name = name;
+        this.year = year;
+        this.month = month;
+        this.day = day;
+        this.changes = changes;
+        this.loadedAt = loadedAt;
+    }
+
+    /**
+     * plans were changed - all results loaded before are stale
+     */
+    static void changed() {
+        CHANGES.incrementAndGet();
+    }
+
+    /**
+     * @param maxAge how long loaded plans can be used
+     * @return whether all plans of search with given parameters are among loaded plans or after them
+     */
+    synchronized boolean covers(@NotNull String name, int year, int month, int day, @NotNull Duration maxAge) {
+        return !pages.isEmpty() && changes == CHANGES.get() && System.nanoTime() - loadedAt < maxAge.toNanos()
+                && name.toLowerCase(Locale.ROOT).contains(this.name.toLowerCase(Locale.ROOT))
+                && narrows(this.year, year) && narrows(this.month, month) && narrows(this.day, day);
+    }
+
+    private static boolean narrows(int previous, int current) {
+        return previous == -1 || previous == current;
+    }
+
+    /**
+     * @return result of narrower search (see {@link #covers}) made from loaded plans, it follows the same token
+     */
+    synchronized SearchResult narrow(@NotNull String name, int year, int month, int day) {
+        SearchResult narrower = new SearchResult(name, year, month, day, changes, loadedAt);
+        PlanBatch.Builder builder = new PlanBatch.Builder();
+        for (PlanBatch page : pages) {
+            page.matching(name, year, month, day).forEach(builder::add);
+        }
+        narrower.add(new PlanPage(builder.build(), next));
+        return narrower;
+    }
+
+    /**
+     * add next page of this search
+     *
+     * @return given page
+     */
+    synchronized PlanPage add(@NotNull PlanPage page) {
+        pages.add(page.getPlans());
+        next = page.getNext();
+        return page;
+    }
+
+    /**
+     * @return all loaded plans as one page with token of following page (token is null before first page is added)
+     */
+    synchronized PlanPage loaded() {
+        if (pages.size() == 1) {
+            return new PlanPage(pages.get(0), next);
+        }
+        PlanBatch.Builder builder = new PlanBatch.Builder();
+        for (PlanBatch page : pages) {
+            page.forEach(builder::add);
+        }
+        return new PlanPage(builder.build(), next);
+    }
+}
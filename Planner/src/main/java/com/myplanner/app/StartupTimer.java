@@ -0,0 +1,59 @@
+package com.myplanner.app;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * measures startup of application: start of JVM -> main -> frame visible -> data ready
+ * every milestone is logged once (logger "com.myplanner.app.startup"), so regressions of startup can be tracked
+ */
+final class StartupTimer {
+    private static final Logger LOG = Logger.getLogger("com.myplanner.app.startup");
+
+    private static final AtomicLong MAIN = new AtomicLong();         // System.currentTimeMillis() of milestones, 0 = not yet
+    private static final AtomicLong FRAME_VISIBLE = new AtomicLong();
+    private static final AtomicLong DATA_READY = new AtomicLong();
+
+    private StartupTimer() {
+    }
+
+    /**
+     * main method was entered
+     */
+    static void mainStarted() {
+        MAIN.compareAndSet(0, System.currentTimeMillis());
+    }
+
+    /**
+     * first window was shown
+     */
+    static void frameVisible() {
+        if (FRAME_VISIBLE.compareAndSet(0, System.currentTimeMillis())) {
+            log("frame visible", FRAME_VISIBLE.get());
+        }
+    }
+
+    /**
+     * first data (years of plans) were loaded and shown
+     */
+    static void dataReady() {
+        if (DATA_READY.compareAndSet(0, System.currentTimeMillis())) {
+            log("data ready", DATA_READY.get());
+        }
+    }
+
+    private static void log(String milestone, long time) {
+        // management bean is loaded in background, so it doesn't delay window
+        CompletableFuture.runAsync(() -> {
+            long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+            LOG.info(String.format("startup: %s %d ms after JVM start (main at %d ms, frame at %d ms)",
+                    milestone, time - jvmStart, since(jvmStart, MAIN.get()), since(jvmStart, FRAME_VISIBLE.get())));
+        });
+    }
+
+    private static long since(long jvmStart, long time) {
+        return time == 0 ? -1 : time - jvmStart;
+    }
+}
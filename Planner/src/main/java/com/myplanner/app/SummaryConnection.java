@@ -0,0 +1,254 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * connection which keeps numbers of plans in every month (see {@link PlanSummary}) and in days of shown months
+ * summary and day counts of month are loaded once by one aggregate request and then changed locally by adding,
+ * updating and deleting of plans, so years and counts are answered without any request
+ * day of updated or deleted plan is known from plans which were read recently - when it isn't known,
+ * summary and day counts are loaded again next time they are needed
+ */
+class SummaryConnection extends ForwardingConnection {
+    private PlanSummary summary; // null when it wasn't loaded yet or is stale, guarded by this
+    private long changes; // guarded by this, summary loaded while plans were changed isn't kept
+    private final Map<YearMonth, int[]> dayCounts = new HashMap<>(); // numbers of plans in days of months, guarded by this
+    private final Map<Integer, Integer> planDays; // id of plan -> day (see dayOf), guarded by this
+
+    private static final int MAX_PLAN_DAYS = 10000; // days of plans read the longest time ago are forgotten
+
+    /**
+     * @param delegate connection which loads summary and plans
+     */
+    SummaryConnection(@NotNull Connection delegate) {
+        super(delegate);
+        planDays = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                return size() > MAX_PLAN_DAYS;
+            }
+        };
+    }
+
+    @Override
+    public Plan[] getPlans(@NotNull String name, int year, int month, int day) throws ConnectionException {
+        return remember(super.getPlans(name, year, month, day));
+    }
+
+    @Override
+    public Plan[] getPlansOnDay(int y, int m, int d) throws ConnectionException {
+        return remember(super.getPlansOnDay(y, m, d));
+    }
+
+    @Override
+    public Plan[] getPlansInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        return remember(super.getPlansInRange(from, to));
+    }
+
+    @Override
+    public PlanBatch getPlanBatch(@NotNull String name, int year, int month, int day) throws ConnectionException {
+        return remember(super.getPlanBatch(name, year, month, day));
+    }
+
+    @Override
+    public PlanPage getPlanPage(@NotNull String name, int year, int month, int day, int pageSize, String after)
+            throws ConnectionException {
+        PlanPage page = super.getPlanPage(name, year, month, day, pageSize, after);
+        remember(page.getPlans());
+        return page;
+    }
+
+    @Override
+    public PlanBatch getPlanBatchInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        return remember(super.getPlanBatchInRange(from, to));
+    }
+
+    /**
+     * years are taken from summary
+     */
+    @Override
+    public String[] getYears() throws ConnectionException {
+        return getSummary().yearNames();
+    }
+
+    /**
+     * @return copy of summary, it is loaded only when it wasn't loaded yet or is stale
+     */
+    @Override
+    public PlanSummary getSummary() throws ConnectionException {
+        long loadedAfter;
+        synchronized (this) {
+            if (summary != null) {
+                return summary.copy();
+            }
+            loadedAfter = changes;
+        }
+        PlanSummary loaded = super.getSummary();
+        synchronized (this) {
+            if (loadedAfter == changes) {
+                summary = loaded.copy();
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * @return copy of counts, they are loaded only when month wasn't loaded yet or is stale
+     */
+    @Override
+    public int[] getDayCounts(int year, int month) throws ConnectionException {
+        YearMonth key = YearMonth.of(year, month);
+        long loadedAfter;
+        synchronized (this) {
+            int[] counts = dayCounts.get(key);
+            if (counts != null) {
+                return counts.clone();
+            }
+            loadedAfter = changes;
+        }
+        int[] loaded = super.getDayCounts(year, month);
+        synchronized (this) {
+            if (loadedAfter == changes) {
+                dayCounts.put(key, loaded.clone());
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * changes made by other clients aren't counted - summary and counts are loaded again when there are any changes
+     */
+    @Override
+    public PlanChanges getChangesSince(String since) throws ConnectionException {
+        PlanChanges changed = super.getChangesSince(since);
+        if (!changed.isEmpty()) {
+            synchronized (this) {
+                changes++;
+                forget();
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public void addNew(@NotNull Plan item) throws ConnectionException {
+        super.addNew(item);
+        added(item);
+    }
+
+    @Override
+    public void updatePlan(@NotNull Plan item) throws ConnectionException {
+        super.updatePlan(item);
+        updated(item);
+    }
+
+    @Override
+    public void deletePlan(int idPlan) throws ConnectionException {
+        super.deletePlan(idPlan);
+        deleted(idPlan);
+    }
+
+    @Override
+    public void applyBatch(@NotNull List<PlanMutation> mutations) throws ConnectionException {
+        super.applyBatch(mutations);
+        for (PlanMutation mutation : mutations) {
+            switch (mutation.getType()) {
+                case ADD: added(mutation.getPlan()); break;
+                case UPDATE: updated(mutation.getPlan()); break;
+                case DELETE: deleted(mutation.getId()); break;
+            }
+        }
+    }
+
+    private synchronized void added(Plan item) {
+        changes++;
+        int day = dayOf(item);
+        planDays.put(item.getId(), day);
+        count(day, 1);
+    }
+
+    private synchronized void updated(Plan item) {
+        changes++;
+        int day = dayOf(item);
+        Integer previous = planDays.put(item.getId(), day);
+        if (previous == null) {
+            forget(); // day where plan was is unknown
+            return;
+        }
+        count(previous, -1);
+        count(day, 1);
+    }
+
+    private synchronized void deleted(int idPlan) {
+        changes++;
+        Integer previous = planDays.remove(idPlan);
+        if (previous == null) {
+            forget(); // day where plan was is unknown
+            return;
+        }
+        count(previous, -1);
+    }
+
+    /**
+     * change numbers of plans in summary and in loaded month by given number of plans on given day (see dayOf)
+     */
+    private void count(int day, int count) {
+        int month = day / 31;
+        if (summary != null) {
+            summary.add(month / 12, month % 12 + 1, count);
+        }
+        int[] counts = dayCounts.get(YearMonth.of(month / 12, month % 12 + 1));
+        if (counts != null && day % 31 < counts.length) {
+            counts[day % 31] = Math.max(0, counts[day % 31] + count);
+        }
+    }
+
+    /**
+     * drop summary and counts, they are loaded again next time they are needed
+     */
+    synchronized void clear() {
+        changes++;
+        forget();
+    }
+
+    private void forget() {
+        summary = null;
+        dayCounts.clear();
+    }
+
+    /**
+     * remember days of given plans, so summary and counts can be changed when plan is moved or deleted
+     */
+    private synchronized Plan[] remember(Plan[] plans) {
+        for (Plan plan : plans) {
+            planDays.put(plan.getId(), dayOf(plan));
+        }
+        return plans;
+    }
+
+    private synchronized PlanBatch remember(PlanBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            LocalDate date = batch.date(i);
+            planDays.put(batch.id(i), dayOf(date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+        }
+        return batch;
+    }
+
+    private static int dayOf(Plan plan) {
+        return dayOf(plan.getYear(), plan.getMonth(), plan.getDay());
+    }
+
+    /**
+     * @return day as one number - (year * 12 + month - 1) * 31 + day - 1
+     */
+    private static int dayOf(int year, int month, int day) {
+        return (year * 12 + month - 1) * 31 + day - 1;
+    }
+}
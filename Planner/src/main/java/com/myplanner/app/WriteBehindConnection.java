@@ -0,0 +1,511 @@
+package com.myplanner.app;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * connection which applies adding, updating and deleting of plans at once and saves them by given connection later
+ * - changes wait in queue where changes of one plan are merged
+ *   (several updates become one update, adding and deleting of new plan disappear)
+ * - queue is sent in batches (see {@link Connection#applyBatch(List)}), failed batch is sent again later
+ * - batch which was rejected several times (see {@link ConnectionRejectedException}) is sent change by change,
+ *   changes rejected alone
+ *   are given up (see {@link #rejected()}) and reported to listener (see {@link #setOnFailure(Consumer)})
+ * - plans read through this connection already contain changes waiting in queue
+ * - changes waiting in queue are sent when application exits
+ * new plans get id at once from block of ids reserved by given connection (see {@link IdAllocator})
+ */
+class WriteBehindConnection extends ForwardingConnection {
+    private static final int MAX_PENDING = 1000;       // changed plans in queue, change waits when queue is full
+    private static final int MAX_BATCH = 100;          // changes sent in one request
+    private static final long FLUSH_DELAY = 500;       // milliseconds, changes made shortly after each other are sent together
+    private static final long MAX_RETRY_DELAY = 30000; // milliseconds
+    private static final long WAIT_FOR_SPACE = 5000;   // milliseconds
+    private static final long SHUTDOWN_TIMEOUT = 5000; // milliseconds
+    private static final int ID_BLOCK = 50;            // ids reserved at once
+    private static final int MAX_REJECTIONS = 5;       // rejected attempts to send batch before its changes are sent alone
+
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "write-behind");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final Set<WriteBehindConnection> DIRTY = ConcurrentHashMap.newKeySet(); // connections with unsaved changes
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (WriteBehindConnection connection : DIRTY) {
+                if (!connection.flush(SHUTDOWN_TIMEOUT)) {
+                    System.err.println("Some changes of plans were not saved");
+                }
+            }
+        }, "write-behind-shutdown"));
+    }
+
+    // plans ordered by date, time and id
+    private static final Comparator<Plan> ORDER = Comparator.comparingInt(Plan::getYear)
+            .thenComparingInt(Plan::getMonth)
+            .thenComparingInt(Plan::getDay)
+            .thenComparing(Plan::getTime)
+            .thenComparingInt(Plan::getId);
+
+    private final Object sending = new Object(); // only one batch of this connection is sent at once
+    private final IdAllocator ids;
+
+    private final LinkedHashMap<Integer, PlanMutation> pending = new LinkedHashMap<>(); // id -> merged change, guarded by this
+    private List<PlanMutation> inFlight = Collections.emptyList(); // batch being sent, guarded by this
+    private boolean scheduled; // guarded by this
+    private int failures; // failed attempts to send current batch, guarded by this
+    private boolean errorReported; // unexpected error of current batch was reported, guarded by this
+    private int rejections; // attempts to send current batch which were rejected by connection, guarded by this
+    private final List<PlanMutation> rejected = new ArrayList<>(); // changes which were given up, guarded by this
+    private volatile Consumer<ConnectionException> onFailure = e -> {};
+
+    /**
+     * @param delegate connection which saves changes
+     */
+    WriteBehindConnection(@NotNull Connection delegate) {
+        super(delegate);
+        ids = new IdAllocator(delegate::reserveIds, ID_BLOCK);
+    }
+
+    @Override
+    public Plan[] getPlans(@NotNull String name, int year, int month, int day) throws ConnectionException {
+        Map<Integer, PlanMutation> changes = changes();
+        return overlay(super.getPlans(name, year, month, day), changes, matching(name, year, month, day));
+    }
+
+    @Override
+    public PlanBatch getPlanBatch(@NotNull String name, int year, int month, int day) throws ConnectionException {
+        Map<Integer, PlanMutation> changes = changes();
+        PlanBatch stored = super.getPlanBatch(name, year, month, day);
+        return changes.isEmpty() ? stored
+                : PlanBatch.of(overlay(stored.toPlans(), changes, matching(name, year, month, day)));
+    }
+
+    /**
+     * waiting plans are put to page which covers their place in order (last page takes all following plans)
+     */
+    @Override
+    public PlanPage getPlanPage(@NotNull String name, int year, int month, int day, int pageSize, String after)
+            throws ConnectionException {
+        Map<Integer, PlanMutation> changes = changes();
+        PlanPage stored = super.getPlanPage(name, year, month, day, pageSize, after);
+        if (changes.isEmpty()) {
+            return stored;
+        }
+        PlanPage.Key from = (after == null ? null : PlanPage.Key.of(after));
+        PlanPage.Key to = (stored.hasNext() ? PlanPage.Key.of(stored.getNext()) : null);
+        Predicate<Plan> inPage = plan -> (from == null || from.isBefore(plan)) && (to == null || !to.isBefore(plan));
+        return new PlanPage(PlanBatch.of(overlay(stored.getPlans().toPlans(), changes,
+                matching(name, year, month, day).and(inPage))), stored.getNext());
+    }
+
+    @Override
+    public Plan[] getPlansOnDay(int y, int m, int d) throws ConnectionException {
+        Map<Integer, PlanMutation> changes = changes();
+        return overlay(super.getPlansOnDay(y, m, d), changes, plan -> isOn(plan, y, m, d));
+    }
+
+    @Override
+    public Plan[] getPlansInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        Map<Integer, PlanMutation> changes = changes();
+        return overlay(super.getPlansInRange(from, to), changes, inRange(from, to));
+    }
+
+    @Override
+    public PlanBatch getPlanBatchInRange(@NotNull LocalDate from, @NotNull LocalDate to) throws ConnectionException {
+        Map<Integer, PlanMutation> changes = changes();
+        PlanBatch stored = super.getPlanBatchInRange(from, to);
+        return changes.isEmpty() ? stored : PlanBatch.of(overlay(stored.toPlans(), changes, inRange(from, to)));
+    }
+
+    private static Predicate<Plan> matching(String name, int year, int month, int day) {
+        String key = name.toLowerCase(Locale.ROOT);
+        return plan -> plan.getName().toLowerCase(Locale.ROOT).contains(key) && isOn(plan, year, month, day);
+    }
+
+    private static Predicate<Plan> inRange(LocalDate from, LocalDate to) {
+        return plan -> {
+            LocalDate date = LocalDate.of(plan.getYear(), plan.getMonth(), plan.getDay());
+            return !date.isBefore(from) && !date.isAfter(to);
+        };
+    }
+
+    /**
+     * years of database and years of plans waiting in queue
+     */
+    @Override
+    public String[] getYears() throws ConnectionException {
+        Map<Integer, PlanMutation> changes = changes();
+        String[] stored = super.getYears();
+        if (changes.isEmpty()) {
+            return stored;
+        }
+        SortedSet<Integer> years = new TreeSet<>();
+        for (String year : stored) {
+            if (!year.equals("ANY")) {
+                years.add(Integer.parseInt(year));
+            }
+        }
+        for (PlanMutation change : changes.values()) {
+            if (change.getType() != PlanMutation.Type.DELETE) {
+                years.add(change.getPlan().getYear());
+            }
+        }
+        List<String> result = new ArrayList<>();
+        result.add("ANY");
+        for (int year : years) {
+            result.add(String.valueOf(year));
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /**
+     * changes waiting in queue are sent first - summary can't be changed by them without knowing previous state of plans
+     */
+    @Override
+    public PlanSummary getSummary() throws ConnectionException {
+        if (!flush(WAIT_FOR_SPACE)) {
+            throw new ConnectionTimeoutException("Changes of plans are still waiting to be saved");
+        }
+        return super.getSummary();
+    }
+
+    /**
+     * changes waiting in queue are sent first (like for {@link #getSummary()})
+     */
+    @Override
+    public int[] getDayCounts(int year, int month) throws ConnectionException {
+        if (!flush(WAIT_FOR_SPACE)) {
+            throw new ConnectionTimeoutException("Changes of plans are still waiting to be saved");
+        }
+        return super.getDayCounts(year, month);
+    }
+
+    /**
+     * plan gets id and is put to queue
+     */
+    @Override
+    public void addNew(@NotNull Plan item) throws ConnectionException {
+        if (item.getId() <= 0) {
+            item.setId(ids.next());
+        }
+        enqueue(PlanMutation.add(item.copy()));
+    }
+
+    @Override
+    public void updatePlan(@NotNull Plan item) throws ConnectionException {
+        enqueue(PlanMutation.update(item.copy()));
+    }
+
+    @Override
+    public void deletePlan(int idPlan) throws ConnectionException {
+        enqueue(PlanMutation.delete(idPlan));
+    }
+
+    @Override
+    public void applyBatch(@NotNull List<PlanMutation> mutations) throws ConnectionException {
+        for (PlanMutation mutation : mutations) {
+            switch (mutation.getType()) {
+                case ADD: addNew(mutation.getPlan()); break;
+                case UPDATE: updatePlan(mutation.getPlan()); break;
+                case DELETE: deletePlan(mutation.getId()); break;
+            }
+        }
+    }
+
+    /**
+     * reserve block of ids for new plans in background
+     */
+    void prefetchIds() {
+        ids.prefetch();
+    }
+
+    /**
+     * @param listener called on thread which sends changes when change was given up (it isn't saved)
+     *                 or when batch first fails by unexpected error (changes are kept and sent again)
+     */
+    void setOnFailure(@NotNull Consumer<ConnectionException> listener) {
+        onFailure = listener;
+    }
+
+    /**
+     * @return changes which were rejected by connection and given up, the oldest first
+     */
+    synchronized List<PlanMutation> rejected() {
+        return new ArrayList<>(rejected);
+    }
+
+    /**
+     * send all changes waiting in queue
+     *
+     * @param timeoutMillis time for sending
+     * @return true if all changes were saved
+     */
+    boolean flush(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            synchronized (this) {
+                if (pending.isEmpty() && inFlight.isEmpty()) {
+                    return true;
+                }
+            }
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                return false;
+            }
+            if (!sendBatch()) {
+                try {
+                    Thread.sleep(Math.min(left, FLUSH_DELAY));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of changed plans waiting in queue (including batch being sent)
+     */
+    synchronized int pending() {
+        return pending.size() + inFlight.size();
+    }
+
+    /**
+     * merge change to queue, wait when queue is full
+     */
+    private synchronized void enqueue(PlanMutation mutation) throws ConnectionException {
+        int id = mutation.getId();
+
+        long deadline = System.currentTimeMillis() + WAIT_FOR_SPACE;
+        while (pending.size() >= MAX_PENDING && !pending.containsKey(id)) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                throw new ConnectionTimeoutException("Too many changes are waiting to be saved");
+            }
+            try {
+                wait(left);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConnectionException("Interrupted while waiting to save change");
+            }
+        }
+
+        PlanMutation merged = merge(pending.get(id), mutation);
+        if (merged == null) {
+            pending.remove(id);
+        } else {
+            pending.put(id, merged);
+        }
+        DIRTY.add(this);
+        schedule(pending.size() >= MAX_BATCH ? 0 : FLUSH_DELAY);
+    }
+
+    /**
+     * @param older change waiting in queue or null
+     * @param newer following change of the same plan
+     * @return one change with the same effect as both changes, null when they cancel each other
+     */
+    private static PlanMutation merge(PlanMutation older, PlanMutation newer) {
+        if (older == null) {
+            return newer;
+        }
+        switch (newer.getType()) {
+            case ADD:
+                // plan was deleted and added again with the same id - its row still exists
+                return older.getType() == PlanMutation.Type.DELETE ? PlanMutation.update(newer.getPlan()) : newer;
+            case UPDATE:
+                // new plan which wasn't saved yet is added with changed values
+                return older.getType() == PlanMutation.Type.ADD ? PlanMutation.add(newer.getPlan()) : newer;
+            default:
+                // new plan which wasn't saved yet doesn't have to be saved at all
+                return older.getType() == PlanMutation.Type.ADD ? null : newer;
+        }
+    }
+
+    /**
+     * schedule sending of next batch (caller holds lock)
+     */
+    private void schedule(long delay) {
+        if (!scheduled) {
+            scheduled = true;
+            FLUSHER.schedule(this::flushScheduled, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushScheduled() {
+        synchronized (this) {
+            scheduled = false;
+        }
+        boolean sent = sendBatch();
+        synchronized (this) {
+            if (!sent) {
+                failures++;
+                schedule(Math.min(FLUSH_DELAY << Math.min(failures, 10), MAX_RETRY_DELAY));
+            } else if (!pending.isEmpty()) {
+                schedule(pending.size() >= MAX_BATCH ? 0 : FLUSH_DELAY);
+            }
+        }
+    }
+
+    /**
+     * send batch which failed last time or next batch from queue
+     *
+     * @return false if sending failed (batch will be sent again)
+     */
+    private boolean sendBatch() {
+        synchronized (sending) {
+            List<PlanMutation> batch;
+            synchronized (this) {
+                if (inFlight.isEmpty()) {
+                    inFlight = takeBatch();
+                }
+                batch = inFlight;
+            }
+            if (batch.isEmpty()) {
+                return true;
+            }
+            try {
+                delegate.applyBatch(batch);
+            } catch (ConnectionException | RuntimeException e) {
+                e.printStackTrace();
+                boolean retry, report;
+                synchronized (this) {
+                    if (isRejected(e)) {
+                        rejections++;
+                    }
+                    retry = rejections < MAX_REJECTIONS;
+                    report = e instanceof RuntimeException && !errorReported;
+                    errorReported |= report;
+                }
+                if (report) {
+                    // error of program isn't waited out like lost connection - changes are kept and sent again
+                    onFailure.accept(new ConnectionException("Changes of plans are not saved yet: " + e));
+                }
+                if (retry) {
+                    return false;
+                }
+                // one rejected change mustn't block the others and all changes after them
+                if (!sendAlone(batch)) {
+                    return false;
+                }
+            }
+            synchronized (this) {
+                inFlight = Collections.emptyList();
+                failures = 0;
+                rejections = 0;
+                errorReported = false;
+                if (pending.isEmpty()) {
+                    DIRTY.remove(this);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * send every change of batch alone, changes which are rejected are given up
+     *
+     * @return false if sending failed for other reason than rejection (the rest of batch will be sent again)
+     */
+    private boolean sendAlone(List<PlanMutation> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            PlanMutation mutation = batch.get(i);
+            try {
+                delegate.applyBatch(List.of(mutation));
+            } catch (ConnectionException | RuntimeException e) {
+                e.printStackTrace();
+                if (!isRejected(e)) {
+                    synchronized (this) {
+                        inFlight = new ArrayList<>(batch.subList(i, batch.size()));
+                    }
+                    return false;
+                }
+                synchronized (this) {
+                    rejected.add(mutation);
+                }
+                onFailure.accept(new ConnectionException("Change of plan " + mutation.getId()
+                        + " was not saved: " + e.getMessage()));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if changes were refused - sending them again gives the same result (lost connection, timeout
+     * or unexpected error of connection is only waited out, changes are never given up because of it)
+     */
+    private static boolean isRejected(Exception e) {
+        return e instanceof ConnectionRejectedException;
+    }
+
+    /**
+     * take first changes from queue (caller holds lock)
+     */
+    private List<PlanMutation> takeBatch() {
+        List<PlanMutation> batch = new ArrayList<>();
+        Iterator<PlanMutation> iterator = pending.values().iterator();
+        while (iterator.hasNext() && batch.size() < MAX_BATCH) {
+            batch.add(iterator.next());
+            iterator.remove();
+        }
+        notifyAll(); // there is space in queue
+        return batch;
+    }
+
+    /**
+     * @return latest change of every plan which isn't saved yet (id -> change)
+     */
+    private synchronized Map<Integer, PlanMutation> changes() {
+        if (pending.isEmpty() && inFlight.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Integer, PlanMutation> changes = new HashMap<>();
+        for (PlanMutation mutation : inFlight) {
+            changes.put(mutation.getId(), mutation);
+        }
+        changes.putAll(pending);
+        return changes;
+    }
+
+    /**
+     * apply changes to plans read from connection
+     *
+     * @param stored  plans read from connection
+     * @param changes changes taken before plans were read
+     * @param matches query whose result is changed
+     * @return plans with changes ordered by date and time
+     */
+    private Plan[] overlay(Plan[] stored, Map<Integer, PlanMutation> changes, Predicate<Plan> matches) {
+        if (changes.isEmpty()) {
+            return stored;
+        }
+        List<Plan> result = new ArrayList<>();
+        for (Plan plan : stored) {
+            if (!changes.containsKey(plan.getId())) {
+                result.add(plan);
+            }
+        }
+        for (PlanMutation mutation : changes.values()) {
+            if (mutation.getType() != PlanMutation.Type.DELETE && matches.test(mutation.getPlan())) {
+                result.add(mutation.getPlan().copy());
+            }
+        }
+        result.sort(ORDER);
+        return result.toArray(new Plan[0]);
+    }
+
+    private static boolean isOn(Plan plan, int y, int m, int d) {
+        return (y == -1 || plan.getYear() == y) && (m == -1 || plan.getMonth() == m) && (d == -1 || plan.getDay() == d);
+    }
+}
@@ -0,0 +1,96 @@
+<?php
+
+require_once __DIR__ . '/changeLog.php';
+
+function json_response($error = '')
+{
+	header('Content-Type: application/json');
+	$res = [ 'ok' => !$error ];
+	if ($error) $res['error'] = $error;
+	echo json_encode($res);
+	exit;
+}
+
+function handle_error($connection) {
+  $connection->rollback();
+  json_response("Query error: " . $connection->error);
+}
+
+function valid_plan($change) {
+  return isset($change['name'], $change['year'], $change['month'], $change['day'], $change['time'])
+      && is_string($change['name']) && $change['name'] !== ''
+      && is_int($change['year']) && is_int($change['month']) && is_int($change['day'])
+      && preg_match('/^([0-9]+:[0-9]+)?$/', $change['time']);
+}
+
+// changes are applied in given order in one transaction - all or nothing
+// every change gets its own version, deleted plans leave tombstones (see changeLog.php)
+function apply_changes($changes) {
+  $config = include __DIR__ . '/db_config.php';
+  $connection = new mysqli($config['server'], $config['login'], $config['password'], $config['database']);
+  if ($connection->connect_error) {
+    // not an error of changes - client sends them again later
+    http_response_code(503);
+    json_response("Could not connect to the database");
+  }
+
+  $insert = $connection->prepare("INSERT INTO calendar (id, name, year, month, day, time, version) VALUES (?, ?, ?, ?, ?, ?, ?)") or handle_error($connection);
+  $update = $connection->prepare("UPDATE calendar SET name = ?, year = ?, month = ?, day = ?, time = ?, version = ? WHERE id = ?") or handle_error($connection);
+  $delete = $connection->prepare("DELETE FROM calendar WHERE id = ?") or handle_error($connection);
+
+  $connection->begin_transaction();
+  $version = reserve_versions($connection, count($changes));
+  foreach ($changes as $change) {
+    $id = $change['id'];
+    $change_version = $version++;
+    if ($change['type'] === 'delete') {
+      $delete->bind_param("i", $id);
+      $delete->execute() or handle_error($connection);
+      record_deleted($connection, $id, $change_version);
+      continue;
+    }
+    $name = $change['name'];
+    $year = $change['year'];
+    $month = $change['month'];
+    $day = $change['day'];
+    $time = ($change['time'] === '' ? null : $change['time'] . ':00');
+    if ($change['type'] === 'add') {
+      $insert->bind_param("isiiisi", $id, $name, $year, $month, $day, $time, $change_version);
+      $insert->execute() or handle_error($connection);
+    } else {
+      $update->bind_param("siiisii", $name, $year, $month, $day, $time, $change_version, $id);
+      $update->execute() or handle_error($connection);
+    }
+  }
+  $connection->commit();
+  $connection->close();
+
+  json_response();
+}
+
+function run() {
+  $changes = json_decode(file_get_contents('php://input'), true);
+  if (!is_array($changes)) {
+    json_response("Changes were invalid.");
+  }
+  foreach ($changes as $change) {
+    $type = $change['type'] ?? '';
+    if (!isset($change['id']) || !is_int($change['id'])
+        || !in_array($type, ['add', 'update', 'delete'], true)
+        || ($type !== 'delete' && !valid_plan($change))) {
+      json_response("Changes were invalid.");
+    }
+  }
+
+  apply_changes($changes);
+}
+
+
+try {
+	run();
+}
+catch (Exception $e) {
+	http_response_code(500);
+	header('Content-Type: text/plain');
+	echo $e->getMessage();
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+<?php
+
+// log of changes read by getChanges.php - every change of calendar gets next version from counter in id_sequence,
+// deleted plans are kept in calendar_deleted with version of deleting
+// row of counter stays locked until transaction which moved it ends, so versions are committed in their order
+// column, table and counter of versions are created by migrate.php
+
+function query_or_fail($connection, $sql) {
+  $result = $connection->query($sql);
+  if ($result === false) {
+    throw new Exception("Query error: " . $connection->error);
+  }
+  return $result;
+}
+
+// reserve versions for given number of changes (inside of transaction), returns the first of them
+function reserve_versions($connection, $count) {
+  $stmt = $connection->prepare("UPDATE id_sequence SET next_id = LAST_INSERT_ID(next_id + ?) WHERE name = 'calendar_version'");
+  if (!$stmt) {
+    throw new Exception("Query error: " . $connection->error);
+  }
+  $stmt->bind_param("i", $count);
+  if (!$stmt->execute()) {
+    throw new Exception("Query error: " . $connection->error);
+  }
+  if ($stmt->affected_rows === 0) {
+    throw new Exception("Counter of versions is missing - run migrate.php");
+  }
+  $result = query_or_fail($connection, "SELECT LAST_INSERT_ID() AS next_version");
+  return $result->fetch_assoc()['next_version'] - $count;
+}
+
+// keep tombstone of deleted plan (inside of transaction which deletes it)
+function record_deleted($connection, $id, $version) {
+  $stmt = $connection->prepare("REPLACE INTO calendar_deleted (id, version) VALUES (?, ?)");
+  if (!$stmt) {
+    throw new Exception("Query error: " . $connection->error);
+  }
+  $stmt->bind_param("ii", $id, $version);
+  if (!$stmt->execute()) {
+    throw new Exception("Query error: " . $connection->error);
+  }
+}
\ No newline at end of file
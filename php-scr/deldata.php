@@ -1,5 +1,7 @@
 <?php
 
+require_once __DIR__ . '/changeLog.php';
+
 function safe_get(array $params, string $name, $default = null, $regexCheck = null)
 {
 	if (!array_key_exists($name, $params)) return $default;
@@ -22,11 +24,18 @@ if ($connection->connect_error) {
 
 $sql = "DELETE FROM calendar WHERE id = '" . $connection->real_escape_string($new_id) . "'";
 
-if ($connection->query($sql) === TRUE) {
+// tombstone is kept with version of deleting, so other clients learn about it from getChanges.php
+try {
+  $connection->begin_transaction();
+  $version = reserve_versions($connection, 1);
+  query_or_fail($connection, $sql);
+  record_deleted($connection, (int) $new_id, $version);
+  $connection->commit();
   echo "Record deleted successfully";
-} else {
+} catch (Exception $e) {
+  $connection->rollback();
   http_response_code(500);
-  echo "Error deleting record: " . $connection->error;
+  echo "Error deleting record: " . $e->getMessage();
 }
 
 $connection->close();
\ No newline at end of file
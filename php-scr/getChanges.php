@@ -0,0 +1,82 @@
+<?php
+
+require_once __DIR__ . '/changeLog.php';
+
+// current version with plans changed after given version and ids of plans deleted after it
+// (each of them up to limit, client orders them by version), only current version when no version is given
+function read_changes($since, $limit) {
+  $config = include __DIR__ . '/db_config.php';
+  $connection = new mysqli($config['server'], $config['login'], $config['password'], $config['database']);
+  if ($connection->connect_error) {
+    json_response("Could not connect to the database");
+  }
+
+  // every version up to current one is committed, later changes are read next time
+  $counter = query_or_fail($connection, "SELECT next_id - 1 AS version FROM id_sequence WHERE name = 'calendar_version'")
+      ->fetch_assoc();
+  if ($counter === null) {
+    json_response("Counter of versions is missing - run migrate.php");
+  }
+  $current = (int) $counter['version'];
+  $changes = [];
+  if ($since !== null) {
+    $queries = [
+      "SELECT id, version, 0 AS deleted, name, year, month, day, time FROM calendar"
+          . " WHERE version > ? AND version <= ? ORDER BY version LIMIT ?",
+      "SELECT id, version, 1 AS deleted FROM calendar_deleted WHERE version > ? AND version <= ? ORDER BY version LIMIT ?",
+    ];
+    foreach ($queries as $query) {
+      $stmt = $connection->prepare($query) or handle_error($connection);
+      $stmt->bind_param("iii", $since, $current, $limit);
+      $stmt->execute() or handle_error($connection);
+      $stmt_result = $stmt->get_result() or handle_error($connection);
+      while ($row = $stmt_result->fetch_assoc()) {
+        $changes[] = $row;
+      }
+    }
+  }
+  $connection->close();
+
+  header('Content-Type: application/json');
+  echo json_encode([ 'version' => $current, 'changes' => $changes ]);
+}
+
+function json_response($error = '')
+{
+	header('Content-Type: application/json');
+	$res = [ 'ok' => !$error ];
+	if ($error) $res['error'] = $error;
+	echo json_encode($res);
+	exit;
+}
+
+function handle_error($connection) {
+  json_response("Query error: " . $connection->error);
+}
+
+function safe_get(array $params, string $name, $default = null, $regexCheck = null)
+{
+	if (!array_key_exists($name, $params)) return $default;
+	if ($regexCheck && !preg_match($regexCheck, $params[$name])) return $default;
+	return $params[$name];
+}
+
+function run() {
+  $since = safe_get($_GET, 'since', '', '/^[0-9]+$/');
+  $limit = safe_get($_GET, 'limit', '1001', '/^[0-9]+$/');
+  if ($limit < 1 || $limit > 10000) {
+    json_response("Limit of changes was invalid.");
+  }
+
+  read_changes($since === '' ? null : (int) $since, (int) $limit);
+}
+
+
+try {
+	run();
+}
+catch (Exception $e) {
+	http_response_code(500);
+	header('Content-Type: text/plain');
+	echo $e->getMessage();
+}
\ No newline at end of file
@@ -9,9 +9,10 @@ function load_plans($name, $year, $month, $day) {
 
   $stmt_string = "SELECT * FROM calendar WHERE LOCATE('"
       . mysqli_real_escape_string($connection, $name) . "', name) > 0"
-      . ($year === '' ? "" : " AND year=" . mysqli_real_escape_string($connection, $year) . "'")
-      . ($month === '' ? "" : " AND month=" . mysqli_real_escape_string($connection, $month) . "'")
-      . ($day === '' ? "" : " AND day=" . mysqli_real_escape_string($connection, $day) . "'");
+      . ($year === '' ? "" : " AND year=" . mysqli_real_escape_string($connection, $year))
+      . ($month === '' ? "" : " AND month=" . mysqli_real_escape_string($connection, $month))
+      . ($day === '' ? "" : " AND day=" . mysqli_real_escape_string($connection, $day))
+      . " ORDER BY year, month, day, time, id";
 
   $stmt = $connection->prepare($stmt_string) or handle_error($connection);
   $stmt->execute() or handle_error($connection);
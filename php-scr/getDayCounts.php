@@ -0,0 +1,68 @@
+<?php
+
+// numbers of plans in every day of given month
+function count_days($year, $month) {
+  $config = include __DIR__ . '/db_config.php';
+  $connection = new mysqli($config['server'], $config['login'], $config['password'], $config['database']);
+  if ($connection->connect_error) {
+    json_response("Could not connect to the database");
+  }
+
+  // counted from index of dates only (year and month are its prefix)
+  $stmt_string = "SELECT day, COUNT(*) AS count FROM calendar WHERE year = ? AND month = ? GROUP BY day ORDER BY day";
+
+  $stmt = $connection->prepare($stmt_string) or handle_error($connection);
+  $stmt->bind_param("ii", $year, $month);
+  $stmt->execute() or handle_error($connection);
+  $stmt_result = $stmt->get_result() or handle_error($connection);
+  $result = null;
+  $number = 0;
+  while ($row = $stmt_result->fetch_assoc()) {
+      $result[$number] = $row;
+      $number += 1;
+  }
+  $connection->close();
+
+  echo json_encode($result);
+}
+
+function json_response($error = '')
+{
+	header('Content-Type: application/json');
+	$res = [ 'ok' => !$error ];
+	if ($error) $res['error'] = $error;
+	echo json_encode($res);
+	exit;
+}
+
+function handle_error($connection) {
+  json_response("Query error: " . $connection->error);
+}
+
+function safe_get(array $params, string $name, $default = null, $regexCheck = null)
+{
+	if (!array_key_exists($name, $params)) return $default;
+	if ($regexCheck && !preg_match($regexCheck, $params[$name])) return $default;
+	return $params[$name];
+}
+
+function run() {
+  $year = safe_get($_GET, 'year', '', '/^[0-9]+$/');
+  $month = safe_get($_GET, 'month', '', '/^[0-9]+$/');
+
+  if ($year === '' || $month === '') {
+    json_response("Year and month are required.");
+  }
+
+  count_days(intval($year), intval($month));
+}
+
+
+try {
+	run();
+}
+catch (Exception $e) {
+	http_response_code(500);
+	header('Content-Type: text/plain');
+	echo $e->getMessage();
+}
\ No newline at end of file
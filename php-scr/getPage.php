@@ -0,0 +1,93 @@
+<?php
+
+// one page of search - plans ordered by date, time and id which follow key of last plan of previous page
+function load_page($name, $year, $month, $day, $limit, $after) {
+  $config = include __DIR__ . '/db_config.php';
+  $connection = new mysqli($config['server'], $config['login'], $config['password'], $config['database']);
+  if ($connection->connect_error) {
+    json_response("Could not connect to the database");
+  }
+
+  $minute = "IFNULL(HOUR(time) * 60 + MINUTE(time), -1)";
+  $stmt_string = "SELECT * FROM calendar WHERE LOCATE(?, name) > 0";
+  $types = "s";
+  $params = [$name];
+  foreach (['year' => $year, 'month' => $month, 'day' => $day] as $column => $value) {
+    if ($value !== '') {
+      $stmt_string .= " AND $column = ?";
+      $types .= "i";
+      $params[] = intval($value);
+    }
+  }
+  if ($after !== '') {
+    // key of last plan of previous page: year, month, day, minute of day, id
+    // compared by columns - comparison of rows isn't read by index
+    $stmt_string .= " AND year >= ? AND (year > ? OR (year = ? AND (month > ? OR (month = ?"
+        . " AND (day > ? OR (day = ? AND ($minute > ? OR ($minute = ? AND id > ?))))))))";
+    $types .= "iiiiiiiiii";
+    list($y, $m, $d, $min, $id) = array_map('intval', explode(',', $after));
+    $params = array_merge($params, [$y, $y, $y, $m, $m, $d, $d, $min, $min, $id]);
+  }
+  $stmt_string .= " ORDER BY year, month, day, $minute, id LIMIT ?";
+  $types .= "i";
+  $params[] = intval($limit);
+
+  $stmt = $connection->prepare($stmt_string) or handle_error($connection);
+  $stmt->bind_param($types, ...$params);
+  $stmt->execute() or handle_error($connection);
+  $stmt_result = $stmt->get_result() or handle_error($connection);
+  $result = null;
+  $number = 0;
+  while ($row = $stmt_result->fetch_assoc()) {
+      $result[$number] = $row;
+      $number += 1;
+  }
+  $connection->close();
+
+  echo json_encode($result);
+}
+
+function json_response($error = '')
+{
+	header('Content-Type: application/json');
+	$res = [ 'ok' => !$error ];
+	if ($error) $res['error'] = $error;
+	echo json_encode($res);
+	exit;
+}
+
+function handle_error($connection) {
+  json_response("Query error: " . $connection->error);
+}
+
+function safe_get(array $params, string $name, $default = null, $regexCheck = null)
+{
+	if (!array_key_exists($name, $params)) return $default;
+	if ($regexCheck && !preg_match($regexCheck, $params[$name])) return $default;
+	return $params[$name];
+}
+
+function run() {
+  $name = safe_get($_GET, 'name', '');
+  $year = safe_get($_GET, 'year', '', '/^[0-9]+$/');
+  $month = safe_get($_GET, 'month', '', '/^[0-9]+$/');
+  $day = safe_get($_GET, 'day', '', '/^[0-9]+$/');
+  $limit = safe_get($_GET, 'limit', '', '/^[0-9]{1,4}$/');
+  $after = safe_get($_GET, 'after', '', '/^-?[0-9]+(,-?[0-9]+){4}$/');
+
+  if ($limit === '' || intval($limit) < 1) {
+    json_response("Size of page was invalid.");
+  }
+
+  load_page($name, $year, $month, $day, $limit, $after);
+}
+
+
+try {
+	run();
+}
+catch (Exception $e) {
+	http_response_code(500);
+	header('Content-Type: text/plain');
+	echo $e->getMessage();
+}
\ No newline at end of file
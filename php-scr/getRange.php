@@ -0,0 +1,74 @@
+<?php
+
+function load_range($from, $to) {
+  $config = include __DIR__ . '/db_config.php';
+  $connection = new mysqli($config['server'], $config['login'], $config['password'], $config['database']);
+  if ($connection->connect_error) {
+    json_response("Could not connect to the database");
+  }
+
+  // comparisons of rows aren't read by index, so dates are compared by columns
+  $stmt_string = "SELECT * FROM calendar"
+      . " WHERE year BETWEEN ? AND ?"
+      . " AND (year > ? OR (year = ? AND (month > ? OR (month = ? AND day >= ?))))"
+      . " AND (year < ? OR (year = ? AND (month < ? OR (month = ? AND day <= ?))))"
+      . " ORDER BY year, month, day, time, id";
+
+  $stmt = $connection->prepare($stmt_string) or handle_error($connection);
+  $stmt->bind_param("iiiiiiiiiiii", $from[0], $to[0],
+      $from[0], $from[0], $from[1], $from[1], $from[2],
+      $to[0], $to[0], $to[1], $to[1], $to[2]);
+  $stmt->execute() or handle_error($connection);
+  $stmt_result = $stmt->get_result() or handle_error($connection);
+  $result = null;
+  $number = 0;
+  while ($row = $stmt_result->fetch_assoc()) {
+      $result[$number] = $row;
+      $number += 1;
+  }
+  $connection->close();
+
+  echo json_encode($result);
+}
+
+function json_response($error = '')
+{
+	header('Content-Type: application/json');
+	$res = [ 'ok' => !$error ];
+	if ($error) $res['error'] = $error;
+	echo json_encode($res);
+	exit;
+}
+
+function handle_error($connection) {
+  json_response("Query error: " . $connection->error);
+}
+
+function safe_get(array $params, string $name, $default = null, $regexCheck = null)
+{
+	if (!array_key_exists($name, $params)) return $default;
+	if ($regexCheck && !preg_match($regexCheck, $params[$name])) return $default;
+	return $params[$name];
+}
+
+function run() {
+  // dates in format yyyy-mm-dd, both are included in range
+  $from = safe_get($_GET, 'from', '', '/^[0-9]{4}-[0-9]{2}-[0-9]{2}$/');
+  $to = safe_get($_GET, 'to', '', '/^[0-9]{4}-[0-9]{2}-[0-9]{2}$/');
+
+  if ($from === '' || $to === '') {
+    json_response("Range of dates was invalid.");
+  }
+
+  load_range(array_map('intval', explode('-', $from)), array_map('intval', explode('-', $to)));
+}
+
+
+try {
+	run();
+}
+catch (Exception $e) {
+	http_response_code(500);
+	header('Content-Type: text/plain');
+	echo $e->getMessage();
+}
\ No newline at end of file
@@ -0,0 +1,48 @@
+<?php
+
+function json_response($error = '')
+{
+	header('Content-Type: application/json');
+	$res = [ 'ok' => !$error ];
+	if ($error) $res['error'] = $error;
+	echo json_encode($res);
+	exit;
+}
+
+function handle_error($connection) {
+  json_response("Query error: " . $connection->error);
+}
+
+// numbers of plans in every month of every year
+function run() {
+  $config = include __DIR__ . '/db_config.php';
+  $connection = new mysqli($config['server'], $config['login'], $config['password'], $config['database']);
+  if ($connection->connect_error) {
+    json_response("Could not connect to the database");
+  }
+
+  $stmt_string = "SELECT year, month, COUNT(*) AS count FROM calendar GROUP BY year, month ORDER BY year, month";
+
+  $stmt = $connection->prepare($stmt_string) or handle_error($connection);
+  $stmt->execute() or handle_error($connection);
+  $stmt_result = $stmt->get_result() or handle_error($connection);
+  $result = null;
+  $number = 0;
+  while ($row = $stmt_result->fetch_assoc()) {
+      $result[$number] = $row;
+      $number += 1;
+  }
+  $connection->close();
+
+  echo json_encode($result);
+}
+
+
+try {
+	run();
+}
+catch (Exception $e) {
+	http_response_code(500);
+	header('Content-Type: text/plain');
+	echo $e->getMessage();
+}
\ No newline at end of file
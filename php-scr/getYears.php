@@ -11,7 +11,7 @@ function run() {
     json_response("Could not connect to the database");
   }
 
-  $stmt_string = "SELECT DISTINCT year FROM calendar";
+  $stmt_string = "SELECT DISTINCT year FROM calendar ORDER BY year";
 
   $stmt = $connection->prepare($stmt_string) or handle_error($connection);
   $stmt->execute() or handle_error($connection);
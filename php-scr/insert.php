@@ -1,5 +1,7 @@
 <?php
 
+require_once __DIR__ . '/changeLog.php';
+
 function json_response($error = '')
 {
 	header('Content-Type: application/json');
@@ -19,15 +21,19 @@ function set_new($new_id, $name, $year, $month, $day, $time) {
   if ($connection->connect_error) {
     json_response("Could not connect to the database");
   }
-  $stmt_string = "INSERT INTO calendar (id, name, year, month, day, time) VALUES ('" 
+  $connection->begin_transaction();
+  $version = reserve_versions($connection, 1);
+  $stmt_string = "INSERT INTO calendar (id, name, year, month, day, time, version) VALUES ('" 
         . mysqli_real_escape_string($connection, $new_id) . "', '" 
         . mysqli_real_escape_string($connection, $name) . "', '" 
         . mysqli_real_escape_string($connection, $year) . "', '" 
         . mysqli_real_escape_string($connection, $month) . "', '" 
         . mysqli_real_escape_string($connection, $day) . "', " 
-        . ($time === 'NULL' ? $time : ("'" .  mysqli_real_escape_string($connection, $time) . "'")) . ")";
+        . ($time === 'NULL' ? $time : ("'" .  mysqli_real_escape_string($connection, $time) . "'")) . ", "
+        . intval($version) . ")";
   $stmt = $connection->prepare($stmt_string) or handle_error($connection);
   $stmt->execute() or handle_error($connection);
+  $connection->commit();
 
   $connection->close();
 
@@ -0,0 +1,113 @@
+<?php
+
+require_once __DIR__ . '/changeLog.php';
+
+// schema of database used by php scripts - the same migrations as Schema.java applies to local database
+// run once after scripts are deployed or updated (php migrate.php, or request to migrate.php),
+// applied migrations are recorded in table schema_version, so every migration runs only once
+// tables and indexes created by hand earlier are kept (migrations check that they exist)
+
+function json_response($error = '')
+{
+	header('Content-Type: application/json');
+	$res = [ 'ok' => !$error ];
+	if ($error) $res['error'] = $error;
+	echo json_encode($res);
+	exit;
+}
+
+function has_column($connection, $table, $column) {
+  return query_or_fail($connection, "SHOW COLUMNS FROM $table LIKE '$column'")->num_rows > 0;
+}
+
+function has_index($connection, $table, $index) {
+  return query_or_fail($connection, "SHOW INDEX FROM $table WHERE Key_name = '$index'")->num_rows > 0;
+}
+
+// version => [description, step]
+function migrations() {
+  return [
+    1 => ['calendar table', function ($connection) {
+      query_or_fail($connection, "CREATE TABLE IF NOT EXISTS calendar (id INT PRIMARY KEY, name VARCHAR(255) NOT NULL,"
+          . " year INT NOT NULL, month INT NOT NULL, day INT NOT NULL, time TIME NULL)");
+    }],
+    2 => ['sequence of ids', function ($connection) {
+      query_or_fail($connection, "CREATE TABLE IF NOT EXISTS id_sequence (name VARCHAR(32) PRIMARY KEY, next_id INT NOT NULL)");
+      // counter starts after ids which are already used
+      query_or_fail($connection, "INSERT IGNORE INTO id_sequence (name, next_id) SELECT 'calendar', COALESCE(MAX(id), 0) + 1 FROM calendar");
+    }],
+    3 => ['index of dates', function ($connection) {
+      if (!has_index($connection, 'calendar', 'calendar_date')) {
+        query_or_fail($connection, "CREATE INDEX calendar_date ON calendar (year, month, day, time)");
+      }
+    }],
+    4 => ['index of names', function ($connection) {
+      if (!has_index($connection, 'calendar', 'calendar_name')) {
+        query_or_fail($connection, "SET SESSION innodb_ft_enable_stopword = OFF");
+        query_or_fail($connection, "CREATE FULLTEXT INDEX calendar_name ON calendar (name) WITH PARSER ngram");
+      }
+    }],
+    5 => ['log of changes', function ($connection) {
+      // rows existing before have version 0, they are older than any token of changes
+      if (!has_column($connection, 'calendar', 'version')) {
+        query_or_fail($connection, "ALTER TABLE calendar ADD COLUMN version INT NOT NULL DEFAULT 0");
+      }
+      if (!has_index($connection, 'calendar', 'calendar_version')) {
+        query_or_fail($connection, "CREATE INDEX calendar_version ON calendar (version)");
+      }
+      query_or_fail($connection, "CREATE TABLE IF NOT EXISTS calendar_deleted (id INT PRIMARY KEY, version INT NOT NULL)");
+      if (!has_index($connection, 'calendar_deleted', 'calendar_deleted_version')) {
+        query_or_fail($connection, "CREATE INDEX calendar_deleted_version ON calendar_deleted (version)");
+      }
+      query_or_fail($connection, "INSERT IGNORE INTO id_sequence (name, next_id) VALUES ('calendar_version', 1)");
+    }],
+  ];
+}
+
+// apply migrations which weren't applied yet, returns version of schema
+function migrate($connection) {
+  query_or_fail($connection, "CREATE TABLE IF NOT EXISTS schema_version (version INT PRIMARY KEY,"
+      . " description VARCHAR(255) NOT NULL, applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+  $current = (int) query_or_fail($connection, "SELECT COALESCE(MAX(version), 0) AS version FROM schema_version")
+      ->fetch_assoc()['version'];
+  foreach (migrations() as $version => $migration) {
+    if ($version <= $current) {
+      continue;
+    }
+    list($description, $step) = $migration;
+    $step($connection);
+    $stmt = $connection->prepare("INSERT INTO schema_version (version, description) VALUES (?, ?)");
+    if (!$stmt) {
+      throw new Exception("Query error: " . $connection->error);
+    }
+    $stmt->bind_param("is", $version, $description);
+    if (!$stmt->execute()) {
+      throw new Exception("Query error: " . $connection->error);
+    }
+    $current = $version;
+  }
+  return $current;
+}
+
+function run() {
+  $config = include __DIR__ . '/db_config.php';
+  $connection = new mysqli($config['server'], $config['login'], $config['password'], $config['database']);
+  if ($connection->connect_error) {
+    json_response("Could not connect to the database");
+  }
+  $version = migrate($connection);
+  $connection->close();
+
+  header('Content-Type: application/json');
+  echo json_encode([ 'ok' => true, 'version' => $version ]);
+}
+
+
+try {
+	run();
+}
+catch (Exception $e) {
+	http_response_code(500);
+	header('Content-Type: text/plain');
+	echo $e->getMessage();
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+<?php
+
+function json_response($error = '')
+{
+	header('Content-Type: application/json');
+	$res = [ 'ok' => !$error ];
+	if ($error) $res['error'] = $error;
+	echo json_encode($res);
+	exit;
+}
+
+function handle_error($connection) {
+  json_response("Query error: " . $connection->error);
+}
+
+function safe_get(array $params, string $name, $default = null, $regexCheck = null)
+{
+	if (!array_key_exists($name, $params)) return $default;
+	if ($regexCheck && !preg_match($regexCheck, $params[$name])) return $default;
+	return $params[$name];
+}
+
+// counter of ids is moved by one update, so clients running at the same time never get the same ids
+function reserve($count) {
+  $config = include __DIR__ . '/db_config.php';
+  $connection = new mysqli($config['server'], $config['login'], $config['password'], $config['database']);
+  if ($connection->connect_error) {
+    json_response("Could not connect to the database");
+  }
+
+  // counter is created by migrate.php
+  $stmt = $connection->prepare("UPDATE id_sequence SET next_id = LAST_INSERT_ID(next_id + ?) WHERE name = 'calendar'")
+      or handle_error($connection);
+  $stmt->bind_param("i", $count);
+  $stmt->execute() or handle_error($connection);
+  if ($stmt->affected_rows === 0) {
+    json_response("Counter of ids is missing - run migrate.php");
+  }
+  $stmt_result = $connection->query("SELECT LAST_INSERT_ID() AS next_id") or handle_error($connection);
+  $next = $stmt_result->fetch_assoc()['next_id'];
+  $connection->close();
+
+  header('Content-Type: application/json');
+  echo json_encode([ 'first' => $next - $count ]);
+}
+
+function run() {
+  $count = safe_get($_GET, 'count', '', '/^[0-9]+$/');
+  if ($count === '' || $count < 1 || $count > 1000) {
+    json_response("Count of ids was invalid.");
+  }
+
+  reserve((int) $count);
+}
+
+
+try {
+	run();
+}
+catch (Exception $e) {
+	http_response_code(500);
+	header('Content-Type: text/plain');
+	echo $e->getMessage();
+}
\ No newline at end of file
@@ -1,5 +1,7 @@
 <?php
 
+require_once __DIR__ . '/changeLog.php';
+
 function safe_get(array $params, string $name, $regexCheck = null, $default = null)
 {
 	if (!array_key_exists($name, $params)) return $default;
@@ -20,18 +22,28 @@ $day = safe_get($_GET, 'day');
 $time = safe_get($_GET, 'time');
 $id = safe_get($_GET, 'id', '/^[0-9]+$/');
 
+try {
+    $connection->begin_transaction();
+    $version = reserve_versions($connection, 1);
+} catch (Exception $e) {
+    die("Error updating record: " . $e->getMessage());
+}
+
 $sql = 'UPDATE calendar SET name="'
     . mysqli_real_escape_string($connection, $name) . '", year="'
     . mysqli_real_escape_string($connection, $year) . '", month="'
     . mysqli_real_escape_string($connection, $month) . '", day="'
     . mysqli_real_escape_string($connection, $day) . '", time='
-    . ($time === '' ? 'NULL' : ('"' .  mysqli_real_escape_string($connection, $time) . '"')) . ' WHERE id = "'
+    . ($time === '' ? 'NULL' : ('"' .  mysqli_real_escape_string($connection, $time) . '"')) . ', version='
+    . intval($version) . ' WHERE id = "'
     . mysqli_real_escape_string($connection, $id) . '"';
 
 if ($connection->query($sql) === TRUE) {
+    $connection->commit();
     echo "Done";
 } else {
     echo "Error updating record: " . $connection->error;
+    $connection->rollback();
 }
 
 $connection->close();
\ No newline at end of file